@@ -0,0 +1,81 @@
+package com.example;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Measures backfilling about 50k cached messages: decoding a complete poll response
+ * in one piece vs. in parallel chunks, and the whole poll over HTTP against a local
+ * WireMock server. Scores are per backfill.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BackfillBenchmark {
+
+    /** Lines of the poll response; one in ten is a keepalive, so about 50k messages. */
+    static final int LINES = 55_000;
+
+    private WireMockServer server;
+    private NtfyConnectionImpl connection;
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String stream = NdjsonSamples.stream(LINES);
+        body = stream.getBytes(StandardCharsets.UTF_8);
+        server = new WireMockServer(options().dynamicPort().disableRequestJournal());
+        server.start();
+        server.stubFor(get(urlPathEqualTo("/bench/json")).willReturn(ok(stream)));
+        connection = new NtfyConnectionImpl("http://localhost:" + server.port());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    /** Decodes the response on one thread. */
+    @Benchmark
+    public List<NtfyMessageDto> decodeSequential() {
+        return NdjsonDecoder.decodeAll(body, Runnable::run, 1, () -> {
+        }).join();
+    }
+
+    /** Decodes the response in chunks on the common pool, as {@link NtfyConnectionImpl#poll} does. */
+    @Benchmark
+    public List<NtfyMessageDto> decodeParallel() {
+        return NdjsonDecoder.decodeAll(body, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism(), () -> {
+        }).join();
+    }
+
+    /** Fetches and decodes the response over HTTP. */
+    @Benchmark
+    public List<NtfyMessageDto> poll() {
+        return connection.poll("bench", "all").join();
+    }
+}
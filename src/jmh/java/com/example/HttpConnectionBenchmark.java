@@ -0,0 +1,85 @@
+package com.example;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Measures {@link NtfyConnectionImpl} against a local WireMock stand-in for ntfy.
+ * The numbers include WireMock's own overhead and a loopback round trip; they are
+ * meant for comparing commits, not for predicting latency to a real server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HttpConnectionBenchmark {
+
+    static final int BURST = 100;
+    static final int STREAM_LINES = 1_000;
+
+    private WireMockServer server;
+    private NtfyConnectionImpl connection;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new WireMockServer(options().dynamicPort().disableRequestJournal());
+        server.start();
+        server.stubFor(post("/bench").willReturn(ok()));
+        server.stubFor(get("/bench/json").willReturn(ok(NdjsonSamples.stream(STREAM_LINES))));
+        connection = new NtfyConnectionImpl("http://localhost:" + server.port());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    /** One blocking POST per operation. */
+    @Benchmark
+    public void send() throws IOException {
+        connection.send("bench", "Disk usage on host-1 reached 90% on /var");
+    }
+
+    /** A burst of asynchronous POSTs, pipelined up to the connection's concurrency limit. */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void sendAsyncBurst() {
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            sends[i] = connection.sendAsync("bench", "Disk usage on host-" + i + " reached 90% on /var");
+        }
+        CompletableFuture.allOf(sends).join();
+    }
+
+    /** Opens a subscription and reads a finite NDJSON stream to its end. */
+    @Benchmark
+    public void receiveStream(Blackhole bh) throws IOException {
+        try (NtfyConnection.Subscription subscription = connection.receive("bench", bh::consume)) {
+            subscription.whenClosed().join();
+        }
+    }
+}
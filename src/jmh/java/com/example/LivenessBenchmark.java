@@ -0,0 +1,63 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-event and per-stream costs of {@link LivenessMonitor} while it watches many
+ * subscriptions: recording an event and starting and stopping a watch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LivenessBenchmark {
+
+    @Param({"10000"})
+    int streams;
+
+    private LivenessMonitor monitor;
+    private final List<LivenessMonitor.Handle> handles = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        monitor = new LivenessMonitor();
+        for (int i = 0; i < streams; i++) {
+            handles.add(monitor.watch(silence -> { }));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        monitor.close();
+    }
+
+    /** What a stream pays for every chunk it reads. */
+    @Benchmark
+    public void touch() {
+        handles.get(next++ % streams).touch();
+    }
+
+    /** What a subscription pays to be watched over its lifetime, excluding the periodic check. */
+    @Benchmark
+    public void watchAndCancel() {
+        monitor.watch(silence -> { }).cancel();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Measures the heap retained per message in history: a list of decoded
+ * {@link NtfyMessageDto} records, as the history kept them before, vs. the compact
+ * columns of {@link MessageHistory}. The {@code bytesPerMessage} counter is the
+ * growth of the used heap after a full GC, divided by the number of messages. With the
+ * serial collector it is stable to a byte between runs, so it is taken from a single
+ * measurement; JMH would add it up over several. The time score is only the cost of
+ * building the history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:+UseSerialGC")
+public class MessageMemoryBenchmark {
+
+    /** Lines of the sample stream; one in ten is a keepalive, so about 100k messages. */
+    static final int LINES = 110_000;
+
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        body = NdjsonSamples.stream(LINES).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Heap retained per message, reported next to the time score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+        public double bytesPerMessage;
+    }
+
+    /** Decoded records in a list, as the history kept them before. */
+    @Benchmark
+    public Object records(Footprint footprint) {
+        return measure(footprint, ArrayList::new);
+    }
+
+    /** The same messages in a {@link MessageHistory}. */
+    @Benchmark
+    public Object compact(Footprint footprint) {
+        return measure(footprint, messages -> {
+            MessageHistory history = new MessageHistory(RetentionPolicy.UNBOUNDED);
+            history.addAll(messages);
+            return history;
+        });
+    }
+
+    private Object measure(Footprint footprint, Function<List<NtfyMessageDto>, List<NtfyMessageDto>> retain) {
+        long before = usedHeapAfterGc();
+        List<NtfyMessageDto> retained = retain.apply(decode());
+        long after = usedHeapAfterGc();
+        footprint.bytesPerMessage = (double) (after - before) / retained.size();
+        return retained;
+    }
+
+    /**
+     * Decodes the messages of the sample stream, each with its own strings as when
+     * they arrive over the network.
+     */
+    private List<NtfyMessageDto> decode() {
+        return NdjsonDecoder.decodeAll(body, Runnable::run, 1, () -> {
+        }).join().stream().filter(m -> "message".equals(m.event())).toList();
+    }
+
+    private static long usedHeapAfterGc() {
+        var memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
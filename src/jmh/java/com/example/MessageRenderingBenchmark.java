@@ -0,0 +1,193 @@
+package com.example;
+
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.stage.Stage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.ZoneId;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures rendering of a {@link ListView} with 100,000 messages held in a
+ * {@link MessageHistory}, as in the app, which decodes a new record on every access.
+ * <p>
+ * {@code scrollPage*} scroll one page and run CSS and layout on the JavaFX thread,
+ * which is the work of one frame; at 60 fps each must stay well below 16.7 ms, so
+ * compare the {@code SampleTime} p99 against that budget. These need the JavaFX
+ * toolkit: run them on a desktop, under {@code xvfb-run}, or with JavaFX's headless
+ * platform ({@code -Djmh.args="-jvmArgsAppend -Dglass.platform=Headless ..."}) where available.
+ * <p>
+ * {@code displayForm*} compare formatting every visible message with looking it up in a
+ * {@link MessageDisplayCache} and run without a toolkit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageRenderingBenchmark {
+
+    static final int MESSAGES = 100_000;
+    static final int VISIBLE_ROWS = 30;
+
+    private MessageHistory messages;
+    private MessageDisplayCache displayCache;
+    /** Holds a single entry, so a screen of distinct messages is always formatted again. */
+    private MessageDisplayCache uncached;
+    private int firstVisible;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        messages = new MessageHistory(RetentionPolicy.ofCount(MESSAGES));
+        for (int i = 0; i < MESSAGES; i++) {
+            messages.add(new NtfyMessageDto("m" + i, 1_700_000_000L + i, "message", "alerts" + i % 4,
+                    "Disk usage on host-" + i % 97 + " reached " + (50 + i % 50) + "% on /var"));
+        }
+        displayCache = new MessageDisplayCache(MessageDisplayCache.DEFAULT_CAPACITY, ZoneId.systemDefault());
+        uncached = new MessageDisplayCache(1, ZoneId.systemDefault());
+    }
+
+    /** Formats every message of a screen as an uncached cell would, scrolling back and forth. */
+    @Benchmark
+    public int displayFormUncached() {
+        int length = 0;
+        int first = nextRow();
+        for (int i = 0; i < VISIBLE_ROWS; i++) {
+            length += uncached.get(messages.get(first + i)).body().length();
+        }
+        return length;
+    }
+
+    /** Looks up every message of a screen in the shared cache, scrolling back and forth. */
+    @Benchmark
+    public int displayFormCached() {
+        int length = 0;
+        int first = nextRow();
+        for (int i = 0; i < VISIBLE_ROWS; i++) {
+            length += displayCache.get(messages.get(first + i)).body().length();
+        }
+        return length;
+    }
+
+    /** Moves the visible window within a few thousand rows, like a user scrolling around. */
+    private int nextRow() {
+        firstVisible = (firstVisible + 7) % 2_000;
+        return firstVisible;
+    }
+
+    /**
+     * A list in a window on the JavaFX thread, with either the cached {@link MessageCell}
+     * or the default cell that renders {@code toString()}.
+     */
+    @State(Scope.Benchmark)
+    public static class FxList {
+        private Stage stage;
+        private ListView<NtfyMessageDto> listView;
+        private int page;
+
+        @Setup(Level.Trial)
+        public void setUp(MessageRenderingBenchmark data) throws Exception {
+            CountDownLatch started = new CountDownLatch(1);
+            try {
+                Platform.startup(started::countDown);
+            } catch (IllegalStateException alreadyStarted) {
+                started.countDown();
+            }
+            started.await();
+            onFx(() -> {
+                listView = new ListView<>();
+                listView.getItems().setAll(data.messages);
+                listView.setFixedCellSize(MessageCell.HEIGHT);
+                stage = new Stage();
+                stage.setScene(new Scene(listView, 600, VISIBLE_ROWS * MessageCell.HEIGHT));
+                stage.show();
+            });
+        }
+
+        void useMessageCell(MessageDisplayCache cache) throws Exception {
+            onFx(() -> {
+                listView.setCellFactory(list -> new MessageCell(cache, message -> null));
+                listView.layout();
+            });
+        }
+
+        void useDefaultCell() throws Exception {
+            onFx(() -> {
+                listView.setFixedCellSize(-1);
+                listView.layout();
+            });
+        }
+
+        /** Scrolls one page further, wrapping around, and lays the list out. */
+        void scrollPage() throws Exception {
+            onFx(() -> {
+                page = (page + 1) % (MESSAGES / VISIBLE_ROWS);
+                listView.scrollTo(page * VISIBLE_ROWS);
+                listView.applyCss();
+                listView.layout();
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            onFx(() -> stage.close());
+        }
+
+        private static void onFx(Runnable task) throws Exception {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            Platform.runLater(() -> {
+                try {
+                    task.run();
+                    done.complete(null);
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            });
+            done.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public void scrollPageMessageCell(FxList list, CellSetup setup) throws Exception {
+        list.scrollPage();
+    }
+
+    @Benchmark
+    public void scrollPageDefaultCell(FxList list, DefaultCellSetup setup) throws Exception {
+        list.scrollPage();
+    }
+
+    /** Installs {@link MessageCell} with the shared cache before the trial. */
+    @State(Scope.Benchmark)
+    public static class CellSetup {
+        @Setup(Level.Trial)
+        public void setUp(FxList list, MessageRenderingBenchmark data) throws Exception {
+            list.useMessageCell(data.displayCache);
+        }
+    }
+
+    /** Keeps the default cell and variable cell height before the trial. */
+    @State(Scope.Benchmark)
+    public static class DefaultCellSetup {
+        @Setup(Level.Trial)
+        public void setUp(FxList list) throws Exception {
+            list.useDefaultCell();
+        }
+    }
+}
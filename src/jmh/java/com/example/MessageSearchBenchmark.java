@@ -0,0 +1,69 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares answering a search keystroke with {@link MessageSearchIndex} against
+ * the scan a {@code FilteredList} predicate performs over the whole history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSearchBenchmark {
+
+    @Param({"50000"})
+    int messages;
+
+    /** A selective word plus a prefix being typed. */
+    @Param({"host-42 reach"})
+    String query;
+
+    private MessageHistory history;
+    private MessageSearchIndex index;
+
+    @Setup
+    public void setUp() {
+        history = new MessageHistory(RetentionPolicy.ofCount(messages));
+        index = new MessageSearchIndex(history);
+        for (int i = 0; i < messages; i++) {
+            history.add(new NtfyMessageDto("m" + i, 1_700_000_000L + i, "message", "alerts" + i % 4,
+                    "Disk usage on host-" + i % 97 + " reached " + (50 + i % 50) + "% on /var"));
+        }
+    }
+
+    @Benchmark
+    public List<NtfyMessageDto> index() {
+        return index.search(query);
+    }
+
+    @Benchmark
+    public List<NtfyMessageDto> scan() {
+        String[] words = query.toLowerCase(Locale.ROOT).split("\\s+");
+        return history.stream()
+                .filter(m -> {
+                    String text = m.message().toLowerCase(Locale.ROOT);
+                    for (String word : words) {
+                        if (!text.contains(word)) return false;
+                    }
+                    return true;
+                })
+                .toList();
+    }
+}
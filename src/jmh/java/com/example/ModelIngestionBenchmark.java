@@ -0,0 +1,83 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Measures how fast {@link HelloModel} takes messages from a subscription into its
+ * message list, headless: without a JavaFX toolkit {@code runOnFx} runs tasks
+ * directly, so this covers batching and the {@link MessageHistory} updates but
+ * not the JavaFX pulse. Scores are per message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelIngestionBenchmark {
+
+    static final int MESSAGES = 1_000;
+
+    private HelloModel model;
+    private Consumer<NtfyMessageDto> handler;
+    private NtfyMessageDto[] messages;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        model = new HelloModel(new NtfyConnection() {
+            @Override
+            public void send(String topic, String message) {
+            }
+
+            @Override
+            public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+                handler = messageHandler;
+                return new Subscription() {
+                    @Override
+                    public void close() {
+                    }
+
+                    @Override
+                    public boolean isOpen() {
+                        return true;
+                    }
+                };
+            }
+        });
+        model.connectToTopic();
+        messages = new NtfyMessageDto[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            messages[i] = new NtfyMessageDto("m" + i, 1_700_000_000L + i, "message", "mytopic",
+                    "Disk usage on host-" + i % 97 + " reached " + (50 + i % 50) + "% on /var");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        model.disconnect();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int receive() {
+        for (NtfyMessageDto message : messages) {
+            handler.accept(message);
+        }
+        return model.getMessages().size();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the original line-based decoding of a subscription stream
+ * ({@code BodyHandlers.ofLines()} + {@code ObjectMapper.readValue} per line)
+ * with {@link NdjsonDecoder}. Scores are per NDJSON line; run with
+ * {@code -prof gc} to compare bytes allocated per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NdjsonDecodingBenchmark {
+
+    static final int LINES = 10_000;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private byte[] stream;
+
+    @Setup
+    public void setUp() {
+        stream = NdjsonSamples.stream(LINES).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void linesAndReadValue(Blackhole bh) throws IOException {
+        try (var reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(stream), StandardCharsets.UTF_8))) {
+            reader.lines()
+                    .map(s -> {
+                        try {
+                            return mapper.readValue(s, NtfyMessageDto.class);
+                        } catch (Exception e) {
+                            return null;
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .filter(message -> "message".equals(message.event()))
+                    .forEach(bh::consume);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void streamingDecoder(Blackhole bh) throws IOException {
+        new NdjsonDecoder(bh::consume).decode(new ByteArrayInputStream(stream));
+    }
+}
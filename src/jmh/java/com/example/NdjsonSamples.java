@@ -0,0 +1,38 @@
+package com.example;
+
+/**
+ * Generates realistic ntfy NDJSON streams for benchmarks.
+ */
+final class NdjsonSamples {
+
+    private NdjsonSamples() {
+    }
+
+    /**
+     * Builds a stream that starts with an {@code open} event and contains one
+     * {@code keepalive} for every nine messages, spread over a few topics.
+     *
+     * @param lines total number of lines
+     * @return the stream, one JSON object per line
+     */
+    static String stream(int lines) {
+        StringBuilder sb = new StringBuilder(lines * 160);
+        long time = 1_700_000_000L;
+        sb.append("{\"id\":\"open00000000\",\"time\":").append(time)
+                .append(",\"event\":\"open\",\"topic\":\"alerts\"}\n");
+        for (int i = 1; i < lines; i++) {
+            String topic = "alerts" + (i % 4);
+            if (i % 10 == 0) {
+                sb.append("{\"id\":\"ka").append(String.format("%010d", i)).append("\",\"time\":").append(time + i)
+                        .append(",\"event\":\"keepalive\",\"topic\":\"").append(topic).append("\"}\n");
+            } else {
+                sb.append("{\"id\":\"m").append(String.format("%011d", i)).append("\",\"time\":").append(time + i)
+                        .append(",\"expires\":").append(time + i + 43_200)
+                        .append(",\"event\":\"message\",\"topic\":\"").append(topic)
+                        .append("\",\"message\":\"Disk usage on host-").append(i % 97)
+                        .append(" reached ").append(50 + i % 50).append("% on /var\"}\n");
+            }
+        }
+        return sb.toString();
+    }
+}
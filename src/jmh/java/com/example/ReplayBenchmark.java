@@ -0,0 +1,74 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a capture into a fresh, headless {@link HelloModel} as fast as possible,
+ * through {@link NdjsonDecoder} and the model's batching and history. Scores are per
+ * whole capture.
+ * <p>
+ * Pass a file written by {@link RecordingNtfyConnection} and the topic it was recorded
+ * on with {@code -p recording=<file> -p topic=<topic>}; without one, a synthetic
+ * capture of {@value #SYNTHETIC_LINES} lines from {@link NdjsonSamples} is used.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+    static final int SYNTHETIC_LINES = 10_000;
+
+    @Param({""})
+    public String recording;
+
+    @Param({"alerts"})
+    public String topic;
+
+    private List<StreamRecording.Line> lines;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (!recording.isEmpty()) {
+            lines = StreamRecording.read(Path.of(recording));
+            return;
+        }
+        lines = new ArrayList<>();
+        long offset = 0;
+        for (String line : NdjsonSamples.stream(SYNTHETIC_LINES).split("\n")) {
+            lines.add(new StreamRecording.Line(offset, topic, line.getBytes(StandardCharsets.UTF_8)));
+            offset += 100_000;
+        }
+    }
+
+    /** Decodes the capture on the calling thread and returns the number of messages in the model. */
+    @Benchmark
+    public int replay() {
+        HelloModel model = new HelloModel(new ReplayNtfyConnection(lines, ReplayNtfyConnection.AS_FAST_AS_POSSIBLE, Runnable::run));
+        model.setTopic(topic);
+        model.connectToTopic();
+        int size = model.getMessages().size();
+        model.disconnect();
+        return size;
+    }
+}
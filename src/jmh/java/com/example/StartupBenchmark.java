@@ -0,0 +1,77 @@
+package com.example;
+
+import javafx.application.Platform;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the part of startup that blocks the first frame: creating the model and
+ * connecting it to the initial topic, until its message list can be rendered.
+ * <p>
+ * Every measurement runs once in a fresh JVM, so class loading and initialization of
+ * the HTTP client and Jackson are included, as on a real start. The JavaFX toolkit
+ * and FXML loading cost the same in both variants and are left out; the application
+ * prints the full timeline with {@code -Dchat.startupTimings=true}.
+ * The server is a socket that accepts connections and never answers, so the
+ * subscription stays pending without errors or reconnects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, jvmArgsAppend = "-Dprism.order=sw")
+public class StartupBenchmark {
+
+    private static final Executor BACKGROUND = task -> Thread.ofVirtual().start(task);
+
+    private ServerSocket server;
+    private String host;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new ServerSocket(0);
+        host = "http://localhost:" + server.getLocalPort();
+        // In the application the JavaFX toolkit is up before the model is created
+        Platform.isFxApplicationThread();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    /** The previous startup: the connection is built and subscribed on the critical path. */
+    @Benchmark
+    public HelloModel eager() {
+        HelloModel model = new HelloModel(new NtfyConnectionImpl(host));
+        model.connectToTopic();
+        return model;
+    }
+
+    /** Staged startup: connection and Jackson are initialized on background threads. */
+    @Benchmark
+    public HelloModel staged() {
+        CompletableFuture.runAsync(NdjsonDecoder::warmUp, BACKGROUND);
+        var connection = CompletableFuture.supplyAsync(() -> new NtfyConnectionImpl(host), BACKGROUND);
+        HelloModel model = new HelloModel(new LazyNtfyConnection(connection));
+        model.connectToTopic();
+        return model;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares receiving over HTTP streaming and over WebSockets against the in-process
+ * {@link LocalNtfyServer}: a message is published over HTTP and timed until the open
+ * subscription hands it to its handler. Both transports publish the same way, so the
+ * difference is framing, decoding and dispatch on the receiving side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    static final int BURST = 100;
+
+    @Param({"HTTP", "WEBSOCKET"})
+    public Transport transport;
+
+    private LocalNtfyServer server;
+    private NtfyConnection connection;
+    private NtfyConnection.Subscription subscription;
+    private final AtomicInteger received = new AtomicInteger();
+    private volatile int awaited = Integer.MAX_VALUE;
+    private volatile CompletableFuture<Void> arrived = new CompletableFuture<>();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new LocalNtfyServer();
+        NtfyConnectionImpl http = new NtfyConnectionImpl(server.url());
+        connection = transport == Transport.HTTP ? http : new NtfyWebSocketConnection(http, server.webSocketUrl());
+        subscription = connection.receive("bench", message -> {
+            if (received.incrementAndGet() >= awaited) arrived.complete(null);
+        });
+        // Wait until the subscription is registered with the server
+        while (received.get() == 0) {
+            connection.send("bench", "Warm-up");
+            Thread.sleep(50);
+        }
+        // Let stray warm-up messages arrive before counting
+        Thread.sleep(200);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        subscription.close();
+        server.close();
+    }
+
+    private CompletableFuture<Void> expect(int count) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        arrived = future;
+        awaited = received.get() + count;
+        return future;
+    }
+
+    /** Publishes one message and waits until the subscription delivers it. */
+    @Benchmark
+    public void roundTrip() {
+        CompletableFuture<Void> delivered = expect(1);
+        connection.sendAsync("bench", "Disk usage on host-1 reached 90% on /var").join();
+        delivered.join();
+    }
+
+    /** Publishes a burst of messages and waits until the subscription has delivered all of them. */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void burst() {
+        CompletableFuture<Void> delivered = expect(BURST);
+        CompletableFuture<?>[] sends = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            sends[i] = connection.sendAsync("bench", "Disk usage on host-" + i + " reached 90% on /var");
+        }
+        CompletableFuture.allOf(sends).join();
+        delivered.join();
+    }
+}
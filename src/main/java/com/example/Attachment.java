@@ -0,0 +1,17 @@
+package com.example;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * File attached to a ntfy message, as described by the {@code attachment} field.
+ * Unknown JSON fields are ignored during deserialization.
+ *
+ * @param name    file name
+ * @param type    MIME type, or {@code null} if unknown
+ * @param size    size in bytes, or 0 if unknown
+ * @param expires Unix time after which the server deletes the file, or 0 if unknown
+ * @param url     download URL, or {@code null} for a file not uploaded yet
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Attachment(String name, String type, long size, long expires, String url) {
+}
@@ -0,0 +1,293 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Size-capped on-disk cache of downloaded attachments.
+ * <p>
+ * Attachments are downloaded once, streamed straight into a file, and served from
+ * disk on later opens, also after the server has expired them. When the cached files
+ * exceed {@code maxBytes}, the least recently opened ones are deleted. The access
+ * order is kept in the files' modification times, so it survives restarts.
+ * Concurrent opens of the same attachment share one download.
+ */
+public class AttachmentCache {
+
+    /** Default size cap of all cached files. */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final int MAX_NAME_LENGTH = 64;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final HttpClient http;
+    /** Cached file names and sizes, least recently used first. Guarded by {@code this}. */
+    private final LinkedHashMap<String, Long> files = new LinkedHashMap<>(16, 0.75f, true);
+    /** Downloads in flight by file name. Guarded by {@code this}. */
+    private final Map<String, Transfer<Path>> downloads = new HashMap<>();
+    private long totalBytes;
+    private long hits;
+    private long misses;
+
+    /**
+     * Opens a cache with the default size cap.
+     *
+     * @param directory directory holding the cached files; created if missing
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public AttachmentCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Opens a cache.
+     *
+     * @param directory directory holding the cached files; created if missing
+     * @param maxBytes  total size of cached files above which the least recently used are deleted
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public AttachmentCache(Path directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build());
+    }
+
+    /**
+     * Opens a cache that downloads with the given client.
+     *
+     * @param directory directory holding the cached files; created if missing
+     * @param maxBytes  total size of cached files above which the least recently used are deleted
+     * @param http      client used for downloads
+     * @throws IOException if the directory cannot be created or listed
+     */
+    public AttachmentCache(Path directory, long maxBytes, HttpClient http) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.http = http;
+        load();
+    }
+
+    /**
+     * @return the default cache location in the user's home directory
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".javafx-chat-app", "attachments");
+    }
+
+    /**
+     * Returns the cached file of an attachment, downloading it first if needed.
+     * A cached file is returned as an already completed transfer.
+     *
+     * @param attachment the attachment to open; must have a URL
+     * @param listener   receives download progress on a background thread; not called
+     *                   if the attachment is cached or already being downloaded
+     * @return the transfer, completed with the local file
+     */
+    public synchronized Transfer<Path> open(Attachment attachment, Transfer.Listener listener) {
+        if (attachment.url() == null) {
+            return Transfer.failed(new IllegalArgumentException("Attachment has no URL"));
+        }
+        String name = fileName(attachment);
+        Long size = files.get(name);
+        if (size != null) {
+            hits++;
+            Path file = directory.resolve(name);
+            touch(file);
+            return Transfer.completed(file, size);
+        }
+        Transfer<Path> running = downloads.get(name);
+        if (running != null) return running;
+        misses++;
+        return download(attachment, name, listener);
+    }
+
+    /**
+     * Returns the cached file of an attachment without downloading it, e.g. for previews.
+     *
+     * @param attachment the attachment
+     * @return the cached file, or {@code null} if it is not cached
+     */
+    public synchronized Path cached(Attachment attachment) {
+        if (attachment.url() == null) return null;
+        String name = fileName(attachment);
+        if (files.get(name) == null) return null;
+        Path file = directory.resolve(name);
+        touch(file);
+        return file;
+    }
+
+    /** @return total size of the cached files in bytes */
+    public synchronized long size() {
+        return totalBytes;
+    }
+
+    /** @return number of cached files */
+    public synchronized int fileCount() {
+        return files.size();
+    }
+
+    /**
+     * Returns cache hits and misses since the cache was opened.
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, files.size(), totalBytes);
+    }
+
+    private Transfer<Path> download(Attachment attachment, String name, Transfer.Listener listener) {
+        Transfer<Path> transfer = new Transfer<>(attachment.size() > 0 ? attachment.size() : -1, listener);
+        Path part = directory.resolve(name + PART_SUFFIX);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(attachment.url())).GET().build();
+        downloads.put(name, transfer);
+        var exchange = http.sendAsync(request, info -> {
+            if (info.statusCode() / 100 != 2) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            info.headers().firstValueAsLong("Content-Length").ifPresent(transfer::setTotal);
+            return transfer.counting(HttpResponse.BodySubscribers.ofFile(part));
+        });
+        transfer.attach(exchange);
+        exchange.whenComplete((response, throwable) -> {
+            synchronized (this) {
+                downloads.remove(name, transfer);
+            }
+            if (throwable == null && response.statusCode() / 100 != 2) {
+                throwable = new IOException("Failed to download " + attachment.name() + ": HTTP " + response.statusCode());
+            }
+            try {
+                if (throwable != null) {
+                    Files.deleteIfExists(part);
+                    transfer.fail(throwable);
+                } else {
+                    transfer.complete(store(name, part));
+                }
+            } catch (IOException e) {
+                transfer.fail(e);
+            }
+        });
+        return transfer;
+    }
+
+    /**
+     * Moves a completed download into place and evicts older files beyond the size cap.
+     */
+    private Path store(String name, Path part) throws IOException {
+        Path file = directory.resolve(name);
+        Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long size = Files.size(file);
+        synchronized (this) {
+            Long previous = files.put(name, size);
+            totalBytes += size - (previous == null ? 0 : previous);
+            evict(name);
+        }
+        return file;
+    }
+
+    /**
+     * Deletes the least recently used files until the cache fits its cap; never the
+     * file just added, which is still returned even if it alone exceeds the cap.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> it = files.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(keep)) continue;
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            } catch (IOException e) {
+                System.err.println("Failed to delete cached attachment: " + e.getMessage());
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * Indexes the files left by an earlier run, oldest first, and drops partial downloads.
+     */
+    private void load() throws IOException {
+        List<Path> existing;
+        try (Stream<Path> list = Files.list(directory)) {
+            existing = list.filter(Files::isRegularFile).toList();
+        }
+        Map<Path, FileTime> modified = new HashMap<>();
+        List<Path> cached = new ArrayList<>();
+        for (Path path : existing) {
+            if (path.getFileName().toString().endsWith(PART_SUFFIX)) {
+                Files.delete(path);
+            } else {
+                modified.put(path, Files.getLastModifiedTime(path));
+                cached.add(path);
+            }
+        }
+        cached.sort(Comparator.comparing(modified::get));
+        for (Path path : cached) {
+            long size = Files.size(path);
+            files.put(path.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        evict(null);
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            System.err.println("Failed to update cached attachment: " + e.getMessage());
+        }
+    }
+
+    /**
+     * File name of an attachment: a hash of its URL, which ntfy makes unique per upload,
+     * followed by the sanitized original name so the file keeps its extension.
+     */
+    static String fileName(Attachment attachment) {
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(attachment.url().getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String name = attachment.name() == null ? "file" : attachment.name().replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > MAX_NAME_LENGTH) {
+            name = name.substring(name.length() - MAX_NAME_LENGTH);
+        }
+        return HexFormat.of().formatHex(hash, 0, 12) + "-" + name;
+    }
+
+    /**
+     * Cache usage counters.
+     *
+     * @param hits   opens served from disk
+     * @param misses opens that started a download
+     * @param files  number of cached files
+     * @param bytes  total size of cached files
+     */
+    public record Stats(long hits, long misses, int files, long bytes) {
+
+        /** @return fraction of opens served from disk */
+        public double hitRate() {
+            long opens = hits + misses;
+            return opens == 0 ? 0 : (double) hits / opens;
+        }
+    }
+}
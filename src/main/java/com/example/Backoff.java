@@ -0,0 +1,40 @@
+package com.example;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Jittered exponential backoff between reconnect attempts.
+ * The delay for attempt {@code n} is {@code initial * multiplier^n}, capped at {@code max},
+ * and then reduced by a random fraction of up to {@code jitter} so that many clients
+ * losing the same server do not reconnect in lockstep.
+ *
+ * @param initial    delay before the first retry
+ * @param max        upper bound for the delay
+ * @param multiplier growth factor per failed attempt
+ * @param jitter     fraction of the delay that is randomized, between 0 and 1
+ */
+public record Backoff(Duration initial, Duration max, double multiplier, double jitter) {
+
+    /** 1 s doubling up to 1 min, with up to 50 % jitter. */
+    public static final Backoff DEFAULT = new Backoff(Duration.ofSeconds(1), Duration.ofMinutes(1), 2.0, 0.5);
+
+    public Backoff {
+        if (initial.isNegative() || max.compareTo(initial) < 0) {
+            throw new IllegalArgumentException("Require 0 <= initial <= max");
+        }
+        if (multiplier < 1.0 || jitter < 0.0 || jitter > 1.0) {
+            throw new IllegalArgumentException("Require multiplier >= 1 and 0 <= jitter <= 1");
+        }
+    }
+
+    /**
+     * @param attempt number of consecutive failed attempts so far, starting at 0
+     * @return how long to wait before the next attempt, in milliseconds
+     */
+    public long delayMillis(int attempt) {
+        double base = Math.min(max.toMillis(), initial.toMillis() * Math.pow(multiplier, attempt));
+        double randomized = base * (1.0 - jitter * ThreadLocalRandom.current().nextDouble());
+        return Math.round(randomized);
+    }
+}
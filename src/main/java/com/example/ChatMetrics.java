@@ -0,0 +1,79 @@
+package com.example;
+
+/**
+ * Receives measurements from the connection and model hot paths.
+ * <p>
+ * Methods are called on the thread where the event happened, often a network or
+ * subscription thread, and must be cheap and thread-safe. {@link #NOOP} ignores
+ * everything; {@link JfrChatMetrics} emits JFR events and {@link InMemoryChatMetrics}
+ * keeps counters and latency histograms.
+ */
+public interface ChatMetrics {
+
+    /** Metrics that record nothing. */
+    ChatMetrics NOOP = new ChatMetrics() {
+    };
+
+    /**
+     * A send to the server has finished.
+     *
+     * @param topic        the topic the message was sent to
+     * @param latencyNanos time from starting the send until it completed
+     * @param success      false if the send failed
+     */
+    default void sendCompleted(String topic, long latencyNanos, boolean success) {
+    }
+
+    /**
+     * A message arrived from a subscription.
+     *
+     * @param message               the received message
+     * @param endToEndLatencyMillis arrival time minus the server's publish time; ntfy reports
+     *                              the publish time in whole seconds, so this is accurate to a second
+     */
+    default void messageReceived(NtfyMessageDto message, long endToEndLatencyMillis) {
+    }
+
+    /**
+     * A line of a subscription stream could not be decoded.
+     *
+     * @param topic the topic of the stream
+     */
+    default void parseFailure(String topic) {
+    }
+
+    /**
+     * A subscription stream was lost and is being reopened.
+     *
+     * @param topic the topic of the stream
+     */
+    default void reconnecting(String topic) {
+    }
+
+    /**
+     * A subscription stream received nothing, not even a keepalive, for longer than
+     * the {@link LivenessMonitor}'s timeout and is being torn down.
+     *
+     * @param topic        the topic of the stream
+     * @param silenceNanos time since the stream last received anything
+     */
+    default void streamStale(String topic, long silenceNanos) {
+    }
+
+    /**
+     * A batch of incoming messages was handed to the JavaFX thread.
+     *
+     * @param batchSize  number of messages in the batch
+     * @param queueDepth number of messages still waiting for a later batch
+     */
+    default void fxBatchDelivered(int batchSize, int queueDepth) {
+    }
+
+    /**
+     * The number of messages waiting in the {@link Outbox} changed.
+     *
+     * @param depth number of queued messages not yet accepted by the server
+     */
+    default void outboxDepth(int depth) {
+    }
+}
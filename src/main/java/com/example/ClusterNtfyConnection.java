@@ -0,0 +1,476 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * {@link NtfyConnection} spread over several ntfy nodes that share their topics.
+ * <p>
+ * Every node's {@code GET /v1/health} is probed periodically; the round-trip times
+ * are smoothed, and a node that fails a probe or a request counts as unhealthy until
+ * it answers a probe again. Sends, attachments, polls and new subscriptions go to the
+ * healthy node with the lowest round-trip time:
+ * <ul>
+ *     <li>A send that fails with a network error or a retryable status is tried on the
+ *     next node; other rejections are not retried.</li>
+ *     <li>With {@link Hedging}, a send still running after the node's recent send
+ *     latency percentile is also started on the next node, and the first success
+ *     wins. Both nodes may then publish the message, so hedging is off by default.</li>
+ *     <li>A subscription whose stream ends, or whose node becomes unhealthy, moves to
+ *     the next healthy node and resumes with {@code since=<last id>}; it ends when
+ *     no other node is healthy, or when it has moved once per node without
+ *     receiving a message, leaving further retries and their backoff to a
+ *     {@link ReconnectingSubscription}.</li>
+ * </ul>
+ * Message ids are only meaningful across nodes that replicate each other's cache;
+ * otherwise the new node replays everything it has cached for the topic, and the
+ * model drops the ids it has already seen.
+ */
+public class ClusterNtfyConnection implements NtfyConnection, Closeable {
+
+    /** Default interval between health probes. */
+    public static final Duration DEFAULT_PROBE_INTERVAL = Duration.ofSeconds(5);
+    /** Weight of a new probe in the smoothed round-trip time. */
+    private static final double RTT_SMOOTHING = 0.3;
+    /** Send latencies a node needs before its percentile is trusted for hedging. */
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ntfy-cluster");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final List<Node> nodes;
+    private final Duration probeInterval;
+    private final Hedging hedging;
+    private final HttpClient probeClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final Set<ClusterSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final ScheduledFuture<?> probes;
+
+    /**
+     * Per-host send latency threshold for starting a second copy of a send.
+     *
+     * @param percentile percentile of the node's send latencies, between 0 and 100
+     * @param minDelay   lower bound for the threshold
+     */
+    public record Hedging(double percentile, Duration minDelay) {
+
+        /** Hedges sends slower than 95 % of the node's sends, but not before 20 ms. */
+        public static final Hedging P95 = new Hedging(95, Duration.ofMillis(20));
+
+        public Hedging {
+            if (percentile <= 0 || percentile >= 100) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100");
+            }
+            if (minDelay.isNegative()) {
+                throw new IllegalArgumentException("minDelay must not be negative");
+            }
+        }
+    }
+
+    /**
+     * A node as last seen by the probes.
+     *
+     * @param hostName  base URL of the node
+     * @param healthy   whether the node answered its last probe and request
+     * @param roundTrip smoothed probe round-trip time, or {@code null} before the first answer
+     */
+    public record NodeStatus(String hostName, boolean healthy, Duration roundTrip) {
+    }
+
+    /**
+     * Connects to the given hosts over HTTP, without hedging.
+     *
+     * @param hostNames base URLs of the nodes, in order of preference until probed
+     */
+    public ClusterNtfyConnection(List<String> hostNames) {
+        this(hostNames, NtfyConnectionImpl::new, DEFAULT_PROBE_INTERVAL, null);
+    }
+
+    /**
+     * Connects to the given hosts and starts probing them.
+     *
+     * @param hostNames     base URLs of the nodes, in order of preference until probed
+     * @param connector     creates the connection to one node from its base URL
+     * @param probeInterval time between health probes, also their timeout
+     * @param hedging       when to hedge sends, or {@code null} to never hedge
+     */
+    public ClusterNtfyConnection(List<String> hostNames, Function<String, ? extends NtfyConnection> connector,
+                                 Duration probeInterval, Hedging hedging) {
+        if (hostNames.isEmpty()) {
+            throw new IllegalArgumentException("At least one host is required");
+        }
+        if (probeInterval.isNegative() || probeInterval.isZero()) {
+            throw new IllegalArgumentException("probeInterval must be positive");
+        }
+        List<Node> created = new ArrayList<>();
+        for (String hostName : hostNames) {
+            created.add(new Node(hostName, connector.apply(hostName)));
+        }
+        this.nodes = List.copyOf(created);
+        this.probeInterval = probeInterval;
+        this.hedging = hedging;
+        this.probes = SCHEDULER.scheduleWithFixedDelay(this::probe, 0, probeInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Probes every node once, then moves subscriptions off nodes that turned unhealthy.
+     *
+     * @return a future completed when all probes have been answered or timed out
+     */
+    public CompletableFuture<Void> probe() {
+        CompletableFuture<?>[] answers = new CompletableFuture<?>[nodes.size()];
+        for (int i = 0; i < answers.length; i++) {
+            Node node = nodes.get(i);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create(node.hostName + "/v1/health"))
+                    .timeout(probeInterval)
+                    .build();
+            long start = System.nanoTime();
+            answers[i] = probeClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .handle((response, throwable) -> {
+                        boolean healthy = throwable == null && response.statusCode() / 100 == 2
+                                && !response.body().contains("\"healthy\":false");
+                        node.probed(healthy, System.nanoTime() - start);
+                        return null;
+                    });
+        }
+        return CompletableFuture.allOf(answers).thenRun(() -> subscriptions.forEach(ClusterSubscription::leaveIfUnhealthy));
+    }
+
+    /** @return the nodes in configuration order, with their last probe results */
+    public List<NodeStatus> status() {
+        return nodes.stream().map(Node::status).toList();
+    }
+
+    /**
+     * Stops probing. Open subscriptions keep their current node.
+     */
+    @Override
+    public void close() {
+        probes.cancel(false);
+    }
+
+    @Override
+    public void send(String topic, String message) throws IOException {
+        try {
+            sendAsync(topic, message).get();
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e.getCause());
+            if (cause instanceof IOException io) throw io;
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while sending message", e);
+        }
+    }
+
+    /**
+     * Sends through the fastest healthy node, hedging and failing over as described above.
+     *
+     * @return a future completed when one node accepted the message, or completed
+     *         exceptionally with the first node's failure if all nodes failed
+     */
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        new SendAttempt(topic, message, candidates(null), result).next();
+        return result;
+    }
+
+    @Override
+    public Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        return candidates(null).getFirst().connection.sendFile(topic, file, message, listener);
+    }
+
+    /**
+     * Polls the fastest healthy node, falling back to the others in order if it fails.
+     */
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        List<Node> candidates = candidates(null);
+        CompletableFuture<List<NtfyMessageDto>> result = candidates.getFirst().connection.poll(topic, since);
+        for (Node node : candidates.subList(1, candidates.size())) {
+            result = result.exceptionallyCompose(throwable -> node.connection.poll(topic, since));
+        }
+        return result;
+    }
+
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    /**
+     * Subscribes on the fastest healthy node; the subscription follows the cluster
+     * as described above and ends once no other node is healthy.
+     */
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        ClusterSubscription subscription = new ClusterSubscription(topic, since, messageHandler);
+        subscriptions.add(subscription);
+        subscription.moveTo(candidates(null).getFirst());
+        return subscription;
+    }
+
+    /**
+     * @param exclude node to leave out, or {@code null}
+     * @return healthy nodes by round-trip time, followed by the unhealthy ones, so
+     *         that requests are still attempted when every node looks down
+     */
+    private List<Node> candidates(Node exclude) {
+        List<Node> ordered = new ArrayList<>(nodes);
+        ordered.remove(exclude);
+        ordered.sort(Comparator.comparing((Node node) -> !node.healthy).thenComparingLong(node -> node.rttNanos));
+        return ordered;
+    }
+
+    /** @return the fastest healthy node other than {@code exclude}, or {@code null} */
+    private Node nextHealthy(Node exclude) {
+        Node next = candidates(exclude).stream().findFirst().orElse(null);
+        return next != null && next.healthy ? next : null;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    private static boolean worthRetrying(Throwable throwable) {
+        return !(unwrap(throwable) instanceof NtfyHttpException http) || http.isRetryable();
+    }
+
+    /**
+     * One node of the cluster.
+     */
+    private static final class Node {
+        final String hostName;
+        final NtfyConnection connection;
+        final InMemoryChatMetrics.LatencyHistogram sendLatency = new InMemoryChatMetrics.LatencyHistogram();
+        /** Optimistic until the first probe, so requests can start right away. */
+        volatile boolean healthy = true;
+        /** Smoothed probe round trip; unprobed nodes sort last, in configuration order. */
+        volatile long rttNanos = Long.MAX_VALUE;
+        volatile boolean probedOnce;
+
+        Node(String hostName, NtfyConnection connection) {
+            this.hostName = Objects.requireNonNull(hostName);
+            this.connection = Objects.requireNonNull(connection);
+        }
+
+        synchronized void probed(boolean ok, long elapsedNanos) {
+            healthy = ok;
+            if (!ok) return;
+            rttNanos = probedOnce ? Math.round(rttNanos * (1 - RTT_SMOOTHING) + elapsedNanos * RTT_SMOOTHING) : elapsedNanos;
+            probedOnce = true;
+        }
+
+        /** @return delay after which a send on this node is hedged, or -1 while there are too few samples */
+        long hedgeDelayNanos(Hedging hedging) {
+            if (sendLatency.count() < MIN_HEDGE_SAMPLES) return -1;
+            return Math.max(hedging.minDelay().toNanos(), sendLatency.percentileNanos(hedging.percentile()));
+        }
+
+        NodeStatus status() {
+            return new NodeStatus(hostName, healthy, probedOnce ? Duration.ofNanos(rttNanos) : null);
+        }
+    }
+
+    /**
+     * Tries the candidate nodes one after another until one accepts the message,
+     * hedging each attempt if enabled.
+     */
+    private final class SendAttempt {
+        private final String topic;
+        private final String message;
+        private final List<Node> candidates;
+        private final CompletableFuture<Void> result;
+        private int nextCandidate;
+        private int running;
+        private Throwable firstFailure;
+
+        SendAttempt(String topic, String message, List<Node> candidates, CompletableFuture<Void> result) {
+            this.topic = topic;
+            this.message = message;
+            this.candidates = candidates;
+            this.result = result;
+        }
+
+        /** Starts the send on the next candidate, or fails the result if there is none. */
+        synchronized void next() {
+            if (result.isDone()) return;
+            if (nextCandidate == candidates.size()) {
+                if (running == 0) result.completeExceptionally(firstFailure);
+                return;
+            }
+            Node node = candidates.get(nextCandidate++);
+            running++;
+            long start = System.nanoTime();
+            CompletableFuture<Void> send;
+            try {
+                send = node.connection.sendAsync(topic, message);
+            } catch (RuntimeException e) {
+                send = CompletableFuture.failedFuture(e);
+            }
+            send.whenComplete((v, throwable) -> completed(node, start, throwable));
+            if (hedging != null && nextCandidate < candidates.size() && candidates.get(nextCandidate).healthy) {
+                long delay = node.hedgeDelayNanos(hedging);
+                if (delay >= 0) {
+                    SCHEDULER.schedule(this::hedge, delay, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private synchronized void hedge() {
+            if (!result.isDone() && running > 0) next();
+        }
+
+        private synchronized void completed(Node node, long start, Throwable throwable) {
+            running--;
+            if (throwable == null) {
+                node.sendLatency.record(System.nanoTime() - start);
+                result.complete(null);
+                return;
+            }
+            if (firstFailure == null) firstFailure = throwable;
+            if (!worthRetrying(throwable)) {
+                result.completeExceptionally(throwable);
+                return;
+            }
+            node.healthy = false;
+            if (running == 0) next();
+        }
+    }
+
+    /**
+     * Subscription that is moved between nodes, resuming from the last delivered id.
+     */
+    private final class ClusterSubscription implements Subscription {
+        private final String topic;
+        private final Consumer<NtfyMessageDto> messageHandler;
+        private final CompletableFuture<Void> closedFuture = new CompletableFuture<>();
+        /** Resume point for the next stream: last message id, or a Unix timestamp. */
+        private volatile String resumeFrom;
+        private volatile boolean closed;
+        /** Incremented per stream, so that a replaced stream can no longer deliver. */
+        private volatile int generation;
+        /** Moves since the last delivered message; bounds streams that end right away on every node. */
+        private volatile int failoversWithoutDelivery;
+        private Node node;
+        private Subscription current;
+
+        ClusterSubscription(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+            this.topic = topic;
+            this.messageHandler = messageHandler;
+            this.resumeFrom = since;
+        }
+
+        synchronized void moveTo(Node target) {
+            if (closed) return;
+            int streamGeneration = ++generation;
+            String since = resumeFrom;
+            if (since == null) {
+                // Nothing received yet: a later stream resumes from the time of this one
+                resumeFrom = String.valueOf(Instant.now().getEpochSecond());
+            }
+            Subscription subscription;
+            try {
+                subscription = target.connection.receive(topic, since, message -> deliver(streamGeneration, message));
+            } catch (RuntimeException e) {
+                System.err.println("Failed to subscribe to " + topic + " on " + target.hostName + ": " + e.getMessage());
+                target.healthy = false;
+                failOver(target);
+                return;
+            }
+            node = target;
+            current = subscription;
+            subscription.whenClosed().whenComplete((v, t) -> streamEnded(subscription));
+        }
+
+        private void deliver(int streamGeneration, NtfyMessageDto message) {
+            if (closed || streamGeneration != generation) return;
+            if (message.id() != null) resumeFrom = message.id();
+            failoversWithoutDelivery = 0;
+            messageHandler.accept(message);
+        }
+
+        private synchronized void streamEnded(Subscription subscription) {
+            if (closed || subscription != current) return;
+            current = null;
+            failOver(node);
+        }
+
+        /** Closes the stream of a node that failed its probe and moves to another one. */
+        synchronized void leaveIfUnhealthy() {
+            if (closed || current == null || node.healthy) return;
+            Subscription stale = current;
+            current = null;
+            try {
+                stale.close();
+            } catch (IOException e) {
+                // Node is already considered down
+            }
+            failOver(node);
+        }
+
+        private void failOver(Node failed) {
+            Node next = nextHealthy(failed);
+            if (next == null || ++failoversWithoutDelivery >= nodes.size()) {
+                end();
+            } else {
+                moveTo(next);
+            }
+        }
+
+        private void end() {
+            closed = true;
+            subscriptions.remove(this);
+            closedFuture.complete(null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            Subscription toClose;
+            synchronized (this) {
+                if (closed) return;
+                toClose = current;
+                current = null;
+                end();
+            }
+            if (toClose != null) toClose.close();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public CompletableFuture<Void> whenClosed() {
+            return closedFuture.copy();
+        }
+    }
+}
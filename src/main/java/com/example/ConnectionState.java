@@ -0,0 +1,13 @@
+package com.example;
+
+/**
+ * Lifecycle of a topic subscription as seen by the model.
+ */
+public enum ConnectionState {
+    /** No subscription is active. */
+    DISCONNECTED,
+    /** The subscription stream is open. */
+    CONNECTED,
+    /** The stream was lost and a reconnect is scheduled or in progress. */
+    RECONNECTING
+}
@@ -0,0 +1,13 @@
+package com.example;
+
+/**
+ * Delivery state of a message sent from this client, shown next to its local echo.
+ */
+public enum DeliveryStatus {
+    /** The message is being sent. */
+    PENDING,
+    /** The server accepted the message. */
+    DELIVERED,
+    /** Sending failed; the message was not published. */
+    FAILED
+}
@@ -0,0 +1,45 @@
+package com.example;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Threads used by {@link NtfyConnectionImpl}.
+ * <p>
+ * The HttpClient's own threads only perform network I/O and complete futures.
+ * Each subscription gets a task on the {@code subscriptionExecutor} that reads
+ * the response body and runs the message handler, so a slow handler only delays
+ * its own stream and never an HTTP I/O thread or another subscription.
+ *
+ * @param httpExecutor         executor for the HttpClient's asynchronous tasks, or
+ *                             {@code null} to use the client's default
+ * @param subscriptionExecutor runs one long-lived task per subscription; must not
+ *                             limit the number of concurrent tasks
+ */
+public record ExecutorStrategy(Executor httpExecutor, Executor subscriptionExecutor) {
+
+    /** One virtual thread per subscription; the HttpClient keeps its default executor. */
+    public static final ExecutorStrategy DEFAULT = virtualThreads();
+
+    public ExecutorStrategy {
+        Objects.requireNonNull(subscriptionExecutor, "subscriptionExecutor");
+    }
+
+    /**
+     * Runs every subscription on its own virtual thread, so hundreds of mostly idle
+     * streams do not hold on to platform threads.
+     */
+    public static ExecutorStrategy virtualThreads() {
+        return new ExecutorStrategy(null,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ntfy-subscription-", 0).factory()));
+    }
+
+    /**
+     * Runs every subscription on a daemon platform thread from a cached pool.
+     */
+    public static ExecutorStrategy platformThreads() {
+        return new ExecutorStrategy(null, Executors.newCachedThreadPool(
+                Thread.ofPlatform().name("ntfy-subscription-", 0).daemon(true).factory()));
+    }
+}
@@ -1,12 +1,25 @@
 package com.example;
 
+import io.github.cdimascio.dotenv.Dotenv;
+import javafx.application.HostServices;
+import javafx.application.Platform;
+import javafx.collections.MapChangeListener;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextField;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.stage.FileChooser;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Controller layer: mediates between the view (FXML) and the model.
@@ -15,15 +28,101 @@ import java.io.IOException;
  */
 public class HelloController {
 
+    /** Runs startup work that is not needed for the first frame. */
+    private static final Executor STARTUP_EXECUTOR = task -> Thread.ofVirtual().name("startup").start(task);
+
     /** The application model injected by the framework or calling code. */
     private final HelloModel model;
+    /** Opens downloaded attachments; set by the application. */
+    private HostServices hostServices;
 
     /**
      * Default constructor used by the JavaFX runtime.
-     * Creates a model with a production {@link NtfyConnectionImpl}.
+     * Equivalent to {@code new HelloController(new StartupTimer())}.
      */
     public HelloController() {
-        this(new HelloModel(new NtfyConnectionImpl()));
+        this(new StartupTimer());
+    }
+
+    /**
+     * Creates the production controller without blocking on anything the first frame
+     * does not need. Persistent history in {@link MessageStore#defaultDirectory()} is
+     * opened right away so it can be shown immediately. The instrumented
+     * {@link NtfyConnectionImpl}, whose {@code .env} file and HTTP client are slow to
+     * load, the Jackson parser, the outbox and the attachment cache in
+     * {@link AttachmentCache#defaultDirectory()} are created in parallel on background
+     * threads, and reported as phases of the startup timer.
+     *
+     * @param startupTimer records the startup phases
+     */
+    public HelloController(StartupTimer startupTimer) {
+        this(createModel(startupTimer));
+        try {
+            model.setMessageStore(new MessageStore(MessageStore.defaultDirectory()));
+        } catch (IOException e) {
+            System.err.println("Persistent history disabled: " + e.getMessage());
+        }
+        startupTimer.background("attachment cache", () -> {
+            try {
+                model.setAttachmentCache(new AttachmentCache(AttachmentCache.defaultDirectory()));
+            } catch (IOException e) {
+                System.err.println("Attachment cache disabled: " + e.getMessage());
+            }
+            return null;
+        }, STARTUP_EXECUTOR);
+    }
+
+    /**
+     * Creates the production model around a {@link LazyNtfyConnection} that receives
+     * over the {@link Transport} named by the optional {@code TRANSPORT} variable of the
+     * {@code .env} file, HTTP streaming by default. If {@code RECORD_STREAMS} names a file,
+     * the raw subscription streams are recorded to it for a {@link ReplayNtfyConnection}.
+     * Subscriptions that miss ntfy's keepalives are reopened by a {@link LivenessMonitor}.
+     * It sends through an {@link Outbox} in {@link Outbox#defaultDirectory()}, which
+     * recovers its log on a background thread and is handed to the model on the JavaFX
+     * thread; until then messages are sent directly. Connection, outbox and
+     * model report to {@link JfrChatMetrics}, so a running client can be profiled with
+     * {@code jcmd <pid> JFR.start}.
+     */
+    private static HelloModel createModel(StartupTimer startupTimer) {
+        ChatMetrics metrics = new JfrChatMetrics();
+        startupTimer.background("jackson", NdjsonDecoder::warmUp, STARTUP_EXECUTOR);
+        CompletableFuture<NtfyConnection> connection = startupTimer.background("connection", () -> {
+            Dotenv env = Dotenv.load();
+            NtfyConnection created = Transport.parse(env.get("TRANSPORT", null))
+                    .connect(Objects.requireNonNull(env.get("HOST_NAME")), metrics, new LivenessMonitor());
+            String recording = env.get("RECORD_STREAMS", null);
+            return recording == null ? created : recordStreams(created, Path.of(recording));
+        }, STARTUP_EXECUTOR);
+        NtfyConnection instrumented = new InstrumentedNtfyConnection(new LazyNtfyConnection(connection), metrics);
+        HelloModel model = new HelloModel(instrumented);
+        model.setMetrics(metrics);
+        startupTimer.background("outbox", () -> {
+            try {
+                Outbox outbox = new Outbox(Outbox.defaultDirectory(), instrumented);
+                outbox.setMetrics(metrics);
+                return outbox;
+            } catch (IOException e) {
+                System.err.println("Offline outbox disabled: " + e.getMessage());
+                return null;
+            }
+        }, STARTUP_EXECUTOR).thenAccept(outbox -> {
+            if (outbox != null) Platform.runLater(() -> model.setOutbox(outbox));
+        });
+        return model;
+    }
+
+    private static NtfyConnection recordStreams(NtfyConnection connection, Path file) {
+        if (!(connection instanceof NtfyConnectionImpl http)) {
+            System.err.println("Stream recording needs the HTTP transport and a single host");
+            return connection;
+        }
+        try {
+            return new RecordingNtfyConnection(http, file);
+        } catch (IOException e) {
+            System.err.println("Stream recording disabled: " + e.getMessage());
+            return connection;
+        }
     }
 
     /**
@@ -50,10 +149,29 @@ public class HelloController {
     @FXML
     private TextField topicField;
 
+    @FXML
+    private TextField searchField;
+
+    @FXML
+    private HBox transferBox;
+
+    @FXML
+    private ProgressBar transferProgress;
+
+    /**
+     * Sets the services used to open downloaded attachments with the desktop's default application.
+     *
+     * @param hostServices the application's host services
+     */
+    public void setHostServices(HostServices hostServices) {
+        this.hostServices = hostServices;
+    }
+
     /**
      * Called automatically by JavaFX after FXML fields are injected.
      * Sets up UI bindings, listens for connection status changes,
-     * and triggers the initial topic connection.
+     * and connects to the initial topic. Its stored history is shown right away;
+     * the subscription starts streaming once the background connection is ready.
      */
     @FXML
     private void initialize() {
@@ -64,34 +182,96 @@ public class HelloController {
         // Bind input fields to model state
         inputField.textProperty().bindBidirectional(model.messageToSendProperty());
         topicField.textProperty().bindBidirectional(model.topicProperty());
-        messageView.setItems(model.getMessages());
+        showMessages();
+        // Switching to a pooled topic swaps the model's list
+        model.messagesProperty().addListener((obs, oldMessages, messages) -> showMessages());
+
+        // Live search: show the index's results while a query is entered
+        searchField.textProperty().bindBidirectional(model.searchQueryProperty());
+        model.searchQueryProperty().addListener((obs, oldQuery, query) -> showMessages());
+
+        // Cached one-line cells with a fixed height keep scrolling large histories cheap
+        MessageDisplayCache displayCache = new MessageDisplayCache();
+        messageView.setFixedCellSize(MessageCell.HEIGHT);
+        messageView.setCellFactory(list -> new MessageCell(displayCache, model::getDeliveryStatus));
+        model.getDeliveryStatuses().addListener(
+                (MapChangeListener<String, DeliveryStatus>) change -> messageView.refresh());
+
+        // Double-click opens an attachment, from the cache if it was opened before
+        messageView.setOnMouseClicked(event -> {
+            NtfyMessageDto selected = messageView.getSelectionModel().getSelectedItem();
+            if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2
+                    && selected != null && selected.attachment() != null) {
+                openAttachment(selected);
+            }
+        });
+
+        // Upload and download progress, shown only while a transfer runs
+        transferProgress.progressProperty().bind(model.transferProgressProperty());
+        transferBox.visibleProperty().bind(model.transferringProperty());
+        transferBox.managedProperty().bind(model.transferringProperty());
 
         // Update connection status indicator
-        model.connectedProperty().addListener((obs, wasConnected, isConnected) -> {
-            statusLabel.setText(isConnected ? "🟢 Connected" : "🔴 Disconnected");
+        model.connectionStateProperty().addListener((obs, oldState, state) -> {
+            statusLabel.setText(switch (state) {
+                case CONNECTED -> "🟢 Connected";
+                case RECONNECTING -> "🟡 Reconnecting…";
+                case DISCONNECTED -> "🔴 Disconnected";
+            });
         });
 
         model.connectToTopic();
     }
 
+    /**
+     * Shows the search results while searching, otherwise the messages of the current topic.
+     */
+    private void showMessages() {
+        messageView.setItems(model.isSearching() ? model.getSearchResults() : model.getMessages());
+    }
+
     /**
      * Handles clicking the "Send" button.
-     * Sends the message via the model and clears the input field.
+     * Sends the message via the model without waiting for the server; the model
+     * clears the input field and tracks delivery of the echoed message.
      */
     public void sendMessage(ActionEvent actionEvent) {
         if (!inputField.getText().trim().isEmpty()) {
-            try {
-                model.sendMessage();
-                inputField.clear();
-            } catch (IOException e) {
-                System.err.println("Failed to send message: " + e.getMessage());
-            }
+            model.sendMessage();
         }
     }
 
+    /**
+     * Handles clicking the "Attach…" button.
+     * Lets the user pick a file and uploads it with the typed text as its message.
+     */
+    public void sendFile(ActionEvent actionEvent) {
+        File file = new FileChooser().showOpenDialog(messageView.getScene().getWindow());
+        if (file != null) {
+            model.sendFile(file.toPath());
+        }
+    }
+
+    /**
+     * Handles clicking the "Cancel" button next to the transfer progress.
+     */
+    public void cancelTransfer(ActionEvent actionEvent) {
+        model.cancelTransfer();
+    }
+
+    private void openAttachment(NtfyMessageDto message) {
+        model.openAttachment(message).result().whenComplete((file, throwable) -> {
+            if (throwable != null) {
+                System.err.println("Failed to open attachment: " + throwable.getMessage());
+            } else if (hostServices != null) {
+                Platform.runLater(() -> hostServices.showDocument(file.toUri().toString()));
+            }
+        });
+    }
+
     /**
      * Handles clicking the "Connect" button.
-     * Reconnects the model to the current topic.
+     * Switches the model to the current topic, reusing its pooled subscription if any.
      */
     public void connectToTopic(ActionEvent actionEvent) {
         model.connectToTopic();
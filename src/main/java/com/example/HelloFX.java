@@ -9,17 +9,37 @@ import javafx.stage.Stage;
 /**
  * JavaFX application entry point.
  * Loads the FXML view and displays the main window.
+ * <p>
+ * Only the view and the stored history are loaded before the window is shown; the
+ * connection is created in the background. Start with
+ * {@code -Dchat.startupTimings=true} to print how long each startup phase took.
  */
 public class HelloFX extends Application {
 
+    private final StartupTimer startupTimer = new StartupTimer();
+
     /**
      * Initializes and shows the primary JavaFX stage.
      */
     @Override
     public void start(Stage stage) throws Exception {
+        startupTimer.mark("toolkit");
         FXMLLoader fxmlLoader = new FXMLLoader(HelloFX.class.getResource("hello-view.fxml"));
+        fxmlLoader.setControllerFactory(type -> new HelloController(startupTimer));
         Parent root = fxmlLoader.load();
+        fxmlLoader.<HelloController>getController().setHostServices(getHostServices());
+        startupTimer.mark("view");
         Scene scene = new Scene(root, 740, 480);
+        scene.addPostLayoutPulseListener(new Runnable() {
+            @Override
+            public void run() {
+                scene.removePostLayoutPulseListener(this);
+                startupTimer.mark("first frame");
+                if (Boolean.getBoolean(StartupTimer.REPORT_PROPERTY)) {
+                    startupTimer.whenSettled().thenRun(() -> System.out.print(startupTimer.report()));
+                }
+            }
+        });
         stage.setTitle("JavaFX Chat App \uD83D\uDCAC");
         stage.setScene(scene);
         stage.show();
@@ -3,45 +3,312 @@ package com.example;
 import javafx.application.Platform;
 import javafx.beans.property.ReadOnlyBooleanProperty;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
+import javafx.beans.property.ReadOnlyDoubleProperty;
+import javafx.beans.property.ReadOnlyDoubleWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.ObservableMap;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Model layer: encapsulates application data and business logic.
  * Manages the active topic subscription, incoming messages, and
  * message sending through an {@link NtfyConnection}.
+ * <p>
+ * Subscriptions of recently used topics stay open in a {@link SubscriptionPool} and
+ * keep collecting messages in the background, so switching back to such a topic
+ * swaps the shown list without reconnecting or missing messages.
  */
 public class HelloModel {
 
+    /** Maximum number of stored messages shown when connecting to a topic. */
+    private static final int MAX_STORED_HISTORY = 1_000;
+    /** Number of recent message ids remembered to drop duplicates. */
+    private static final int DEDUP_CAPACITY = 8_192;
+    /** How long a message id is remembered to drop duplicates. */
+    private static final Duration DEDUP_WINDOW = Duration.ofHours(1);
+    /** Default limit for the messages kept of pooled topics that are not shown. */
+    public static final RetentionPolicy DEFAULT_BACKGROUND_RETENTION = RetentionPolicy.ofCount(1_000);
+    /** Default number of received messages per topic that may wait for the JavaFX thread. */
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    /** Event of the marker shown in place of messages skipped under {@link OverflowPolicy#COLLAPSE}. */
+    public static final String SKIPPED_EVENT = "skipped";
+    /** Default history fetched when joining a topic without stored history: all cached messages. */
+    public static final String DEFAULT_BACKFILL_SINCE = "all";
+    /** Source of skipped-marker ids; markers are created on subscription threads. */
+    private static final AtomicLong SKIPPED_IDS = new AtomicLong();
+
     /** Underlying connection for sending and receiving messages. */
     private final NtfyConnection connection;
-    /** Observable list of received messages for UI binding. */
-    private final ObservableList<NtfyMessageDto> messages = FXCollections.observableArrayList();
+    /** Recently used topics, kept subscribed in the background. */
+    private final SubscriptionPool<TopicChannel> pool = new SubscriptionPool<>();
+    /** Channel of the shown topic; not pooled until {@link #connectToTopic()} is called. */
+    private TopicChannel current;
+    /** The shown message list: the list of {@link #current}. */
+    private final ReadOnlyObjectWrapper<ObservableList<NtfyMessageDto>> messages = new ReadOnlyObjectWrapper<>();
+    /** Limit for the messages of the shown topic. */
+    private RetentionPolicy retentionPolicy = RetentionPolicy.DEFAULT;
+    /** Limit for the messages of pooled topics while they are not shown. */
+    private RetentionPolicy backgroundRetention = DEFAULT_BACKGROUND_RETENTION;
+    /** Keeps {@link #searchResults} in step with the shown list. */
+    private final ListChangeListener<NtfyMessageDto> searchResultsUpdater = this::updateSearchResults;
+    /** Current search text; blank shows all messages. */
+    private final StringProperty searchQuery = new SimpleStringProperty("");
+    /** Messages matching {@link #searchQuery}, in arrival order. */
+    private final ObservableList<NtfyMessageDto> searchResults = FXCollections.observableArrayList();
+    private final ObservableList<NtfyMessageDto> readOnlySearchResults =
+            FXCollections.unmodifiableObservableList(searchResults);
+    private MessageSearchIndex.Query currentQuery = MessageSearchIndex.parse("");
     /** Text the user intends to send. */
     private final StringProperty messageToSend = new SimpleStringProperty();
     /** Currently selected topic. */
     private final StringProperty topic = new SimpleStringProperty("mytopic");
-    /** Handle for the active subscription, if any. */
-    private NtfyConnection.Subscription currentSubscription;
     /** Indicates whether the model is currently connected to a topic. */
     private final ReadOnlyBooleanWrapper connected = new ReadOnlyBooleanWrapper(false);
+    /** Detailed state of the subscription, including reconnect attempts. */
+    private final ReadOnlyObjectWrapper<ConnectionState> connectionState =
+            new ReadOnlyObjectWrapper<>(ConnectionState.DISCONNECTED);
+    /** Delay policy used when the subscription stream is lost. */
+    private Backoff reconnectBackoff = Backoff.DEFAULT;
+    /** Optional on-disk history; {@code null} keeps history in memory only. */
+    private MessageStore store;
+    /** Optional durable queue for sent messages; {@code null} sends directly. Set on the JavaFX thread. */
+    private volatile Outbox outbox;
+    /** History fetched when joining a topic without stored history; {@code null} disables backfill. */
+    private String backfillSince = DEFAULT_BACKFILL_SINCE;
+    /** Flush interval and batch size of the per-topic {@link MessageBatcher}s. */
+    private final Duration flushInterval;
+    private final int maxBatchSize;
+    /** Bound and overflow handling of the queues between subscriptions and the JavaFX thread. */
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+    /** Delivery status of locally echoed messages, keyed by their local id. */
+    private final ObservableMap<String, DeliveryStatus> deliveryStatuses = FXCollections.observableHashMap();
+    /** Created once: the view only weakly listens to the map, so a new one per call could lose its listeners. */
+    private final ObservableMap<String, DeliveryStatus> readOnlyDeliveryStatuses =
+            FXCollections.unmodifiableObservableMap(deliveryStatuses);
+    /** Local echoes not yet replaced by the server's copy, in send order. */
+    private final Map<String, NtfyMessageDto> pendingEchoes = new LinkedHashMap<>();
+    /** Source of local echo ids. */
+    private long localIdCounter;
+    /** Optional cache for downloaded attachments; {@code null} disables opening them. May be set from any thread. */
+    private volatile AttachmentCache attachmentCache;
+    /** The upload or download shown in {@link #transferProgress}, if any. */
+    private Transfer<?> activeTransfer;
+    /** Progress of {@link #activeTransfer} from 0 to 1, or -1 if its size is unknown. */
+    private final ReadOnlyDoubleWrapper transferProgress = new ReadOnlyDoubleWrapper(0);
+    private final ReadOnlyBooleanWrapper transferring = new ReadOnlyBooleanWrapper(false);
+    /** Receives reconnects and JavaFX queue depth. */
+    private volatile ChatMetrics metrics = ChatMetrics.NOOP;
 
     /**
      * Creates a new model using the provided {@link NtfyConnection}.
+     * Incoming messages are flushed to {@link #messages} once per JavaFX pulse.
      *
      * @param connection the message connection backend
      */
     public HelloModel(NtfyConnection connection) {
+        this(connection, Duration.ZERO, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a new model with explicit batching of incoming messages.
+     *
+     * @param connection    the message connection backend
+     * @param flushInterval how long to collect incoming messages before updating the list;
+     *                      zero updates once per JavaFX pulse
+     * @param maxBatchSize  maximum number of messages added to the list in one update
+     */
+    public HelloModel(NtfyConnection connection, Duration flushInterval, int maxBatchSize) {
         this.connection = connection;
+        this.flushInterval = flushInterval;
+        this.maxBatchSize = maxBatchSize;
+        searchQuery.addListener((obs, oldQuery, query) -> {
+            currentQuery = MessageSearchIndex.parse(query);
+            if (currentQuery.isEmpty()) {
+                searchResults.clear();
+            } else {
+                searchResults.setAll(current.searchIndex.search(currentQuery));
+            }
+        });
+        show(new TopicChannel(topic.get()));
     }
 
-    /** @return observable list of received messages */
+    /**
+     * Returns the received messages of the shown topic. The list is replaced when
+     * switching topics; bind to {@link #messagesProperty()} to follow it.
+     */
     public ObservableList<NtfyMessageDto> getMessages() {
-        return messages;
+        return messages.get();
+    }
+
+    /**
+     * Read-only property holding the message list of the shown topic.
+     */
+    public ReadOnlyObjectProperty<ObservableList<NtfyMessageDto>> messagesProperty() {
+        return messages.getReadOnlyProperty();
+    }
+
+    /**
+     * Text of the live search over the received messages, see {@link MessageSearchIndex#parse(String)}.
+     */
+    public StringProperty searchQueryProperty() {
+        return searchQuery;
+    }
+
+    public void setSearchQuery(String query) {
+        searchQuery.set(query);
+    }
+
+    /**
+     * @return true if a search query is entered and {@link #getSearchResults()} should be shown
+     */
+    public boolean isSearching() {
+        return !currentQuery.isEmpty();
+    }
+
+    /**
+     * Returns the messages matching the search query, in arrival order. The list is
+     * updated when the query changes and as messages arrive or are evicted.
+     */
+    public ObservableList<NtfyMessageDto> getSearchResults() {
+        return readOnlySearchResults;
+    }
+
+    /** @return the policy limiting how many messages are kept in {@link #getMessages()} */
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Changes the retention policy; messages that no longer fit are evicted immediately.
+     *
+     * @param policy the new retention policy
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        retentionPolicy = Objects.requireNonNull(policy);
+        current.messages.setPolicy(policy);
+    }
+
+    /** @return the policy limiting the messages kept of pooled topics that are not shown */
+    public RetentionPolicy getBackgroundRetention() {
+        return backgroundRetention;
+    }
+
+    /**
+     * Changes the limit for pooled topics that are not shown. It bounds the memory used
+     * by the pool; a topic is trimmed to it when another topic is shown.
+     *
+     * @param policy the retention policy for background topics
+     */
+    public void setBackgroundRetention(RetentionPolicy policy) {
+        backgroundRetention = Objects.requireNonNull(policy);
+        for (TopicChannel channel : pool.channels()) {
+            if (channel != current) channel.messages.setPolicy(policy);
+        }
+    }
+
+    /**
+     * Sets how many recently used topics stay subscribed, including the shown one.
+     * Topics beyond the limit are disconnected, least recently used first.
+     *
+     * @param maxTopics number of pooled topics, at least 1
+     */
+    public void setSubscriptionPoolSize(int maxTopics) {
+        pool.setMaxSize(maxTopics).forEach(this::evicted);
+    }
+
+    /**
+     * Returns hit, miss and eviction counts of topic switches.
+     */
+    public SubscriptionPool.Stats getSubscriptionPoolStats() {
+        return pool.stats();
+    }
+
+    /** @return topics with an open subscription, least recently used first */
+    public List<String> getPooledTopics() {
+        return pool.topics();
+    }
+
+    /**
+     * Enables persistent history. Received messages are appended to the store, and
+     * connecting to a topic first shows its stored history and then resumes the live
+     * subscription after the newest stored message.
+     *
+     * @param store the store to use, or {@code null} to keep history in memory only
+     */
+    public void setMessageStore(MessageStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Enables the offline outbox. Sent messages are queued on disk and delivered in
+     * order and within the server's rate limit, so messages typed while the server is
+     * unreachable are kept, also across restarts. Their echoes stay pending until
+     * delivered. A subscription that becomes connected ends a pause after network errors.
+     *
+     * @param outbox the outbox to use, or {@code null} to send directly
+     */
+    public void setOutbox(Outbox outbox) {
+        this.outbox = outbox;
+    }
+
+    /**
+     * Sets the metrics that receive reconnects of the subscription and the depth of
+     * the queue of messages waiting for the JavaFX thread.
+     *
+     * @param metrics the metrics to report to
+     */
+    public void setMetrics(ChatMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Enables opening attachments of received messages through the given cache.
+     * May be called from any thread, e.g. once the cache has been opened in the background.
+     *
+     * @param cache the cache to download into, or {@code null} to disable opening attachments
+     */
+    public void setAttachmentCache(AttachmentCache cache) {
+        this.attachmentCache = cache;
+    }
+
+    /**
+     * Progress of the current upload or download from 0 to 1, or -1 while its size is unknown.
+     */
+    public ReadOnlyDoubleProperty transferProgressProperty() {
+        return transferProgress.getReadOnlyProperty();
+    }
+
+    /**
+     * Read-only property indicating whether an upload or download is running.
+     */
+    public ReadOnlyBooleanProperty transferringProperty() {
+        return transferring.getReadOnlyProperty();
     }
 
     public StringProperty messageToSendProperty() {
@@ -75,6 +342,61 @@ public class HelloModel {
         return connected.getReadOnlyProperty();
     }
 
+    /**
+     * Read-only property with the detailed subscription state.
+     * {@link ConnectionState#RECONNECTING} means the stream was lost and is being restored.
+     */
+    public ReadOnlyObjectProperty<ConnectionState> connectionStateProperty() {
+        return connectionState.getReadOnlyProperty();
+    }
+
+    public ConnectionState getConnectionState() {
+        return connectionState.get();
+    }
+
+    /**
+     * Sets the delay policy used to reconnect after the subscription stream is lost.
+     * Applies to subscriptions created afterwards.
+     *
+     * @param backoff the reconnect backoff
+     */
+    public void setReconnectBackoff(Backoff backoff) {
+        this.reconnectBackoff = backoff;
+    }
+
+    /**
+     * Sets how much history is fetched in bulk when joining a topic, before the live
+     * subscription starts. Topics with stored history fetch what was published after
+     * it instead. The default, {@value #DEFAULT_BACKFILL_SINCE}, fetches everything the
+     * server has cached.
+     *
+     * @param since a duration such as {@code 1h}, a Unix timestamp or {@code all};
+     *              {@code null} disables backfill, so the live stream replays missed
+     *              stored history and otherwise starts with new messages
+     */
+    public void setBackfillSince(String since) {
+        this.backfillSince = since;
+    }
+
+    /**
+     * Bounds the number of received messages per topic that wait for the JavaFX thread,
+     * so a bursty topic cannot exhaust the heap while the thread is stalled. The default
+     * is {@value #DEFAULT_QUEUE_CAPACITY} messages with {@link OverflowPolicy#BLOCK},
+     * which stops reading the stream until the list has caught up. Messages dropped by
+     * the other policies are still written to the message store, if any.
+     * Applies to subscriptions created afterwards.
+     *
+     * @param policy   what happens to messages arriving while the queue is full
+     * @param capacity messages per topic that may wait, at least 1
+     */
+    public void setOverflowPolicy(OverflowPolicy policy, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.overflowPolicy = Objects.requireNonNull(policy);
+        this.queueCapacity = capacity;
+    }
+
     /**
      * @return true if a subscription is active and open
      */
@@ -82,6 +404,36 @@ public class HelloModel {
         return connected.get();
     }
 
+    /**
+     * Returns flush rate, batch size and overflow statistics for incoming messages of the shown topic.
+     */
+    public MessageBatcher.Stats getDeliveryStats() {
+        return current.incoming.stats();
+    }
+
+    /**
+     * Returns how many received messages of the shown topic were dropped as duplicates.
+     */
+    public MessageDeduplicator.Stats getDeduplicationStats() {
+        return current.deduplicator.stats();
+    }
+
+    /**
+     * Returns the delivery status of messages sent from this client, keyed by the id of
+     * their local echo. An entry is removed once the server's copy replaces the echo.
+     */
+    public ObservableMap<String, DeliveryStatus> getDeliveryStatuses() {
+        return readOnlyDeliveryStatuses;
+    }
+
+    /**
+     * @param message a message from {@link #getMessages()}
+     * @return the delivery status of a local echo, or {@code null} for messages received from the server
+     */
+    public DeliveryStatus getDeliveryStatus(NtfyMessageDto message) {
+        return message.id() == null ? null : deliveryStatuses.get(message.id());
+    }
+
     /**
      * Returns a greeting based on the current Java and JavaFX versions.
      */
@@ -92,58 +444,471 @@ public class HelloModel {
     }
 
     /**
-     * Sends the value of {@link #messageToSend} to the current topic.
+     * Sends the value of {@link #messageToSend} to the shown topic without blocking,
+     * even if {@link #topicProperty()} has been edited since connecting to it.
+     * <p>
+     * The message is echoed into {@link #getMessages()} right away with a local id and
+     * {@link DeliveryStatus#PENDING}, which changes to {@code DELIVERED} or {@code FAILED}
+     * when the send completes. When the server's copy arrives on the subscription it
+     * replaces the echo. With an {@link Outbox} the message is queued and its echo stays
+     * pending until it is delivered; it only fails if the server rejects it.
+     * Must be called on the JavaFX thread.
      *
-     * @throws IOException if sending through the connection fails
+     * @return a future completed when the send has finished; completed exceptionally if it failed
      */
-    public void sendMessage() throws IOException {
-        connection.send(topic.get(), messageToSend.get());
+    public CompletableFuture<Void> sendMessage() {
+        String text = messageToSend.get();
+        NtfyMessageDto echo = new NtfyMessageDto("local-" + ++localIdCounter,
+                Instant.now().getEpochSecond(), "message", current.topic, text);
+        pendingEchoes.put(echo.id(), echo);
+        deliveryStatuses.put(echo.id(), DeliveryStatus.PENDING);
+        current.messages.add(echo);
         messageToSend.set("");
+
+        CompletableFuture<Void> sent = outbox != null
+                ? outbox.enqueue(echo.topic(), text)
+                : connection.sendAsync(echo.topic(), text);
+        return sent.whenComplete((v, throwable) -> runOnFx(() -> {
+                    if (throwable != null) {
+                        System.err.println("Failed to send message: " + throwable.getMessage());
+                        pendingEchoes.remove(echo.id());
+                    }
+                    // Skip if the echo was already replaced or the topic was switched
+                    if (deliveryStatuses.containsKey(echo.id())) {
+                        deliveryStatuses.put(echo.id(),
+                                throwable == null ? DeliveryStatus.DELIVERED : DeliveryStatus.FAILED);
+                    }
+                }));
+    }
+
+    /**
+     * Publishes a file as an attachment to the shown topic without blocking, with the
+     * value of {@link #messageToSend} as its text.
+     * <p>
+     * Like {@link #sendMessage()}, a local echo is added and tracked in
+     * {@link #getDeliveryStatuses()}. The file is streamed from disk; its progress is
+     * shown in {@link #transferProgressProperty()} and it can be aborted with
+     * {@link #cancelTransfer()}. Must be called on the JavaFX thread.
+     *
+     * @param file the file to attach
+     * @return the running upload
+     */
+    public Transfer<Void> sendFile(Path file) {
+        String text = messageToSend.get();
+        if (text != null && text.isBlank()) text = null;
+        long size;
+        String type;
+        try {
+            size = Files.size(file);
+            type = Files.probeContentType(file);
+        } catch (IOException e) {
+            System.err.println("Failed to send file: " + e.getMessage());
+            return Transfer.failed(e);
+        }
+        Attachment attachment = new Attachment(file.getFileName().toString(), type, size, 0, null);
+        NtfyMessageDto echo = new NtfyMessageDto("local-" + ++localIdCounter,
+                Instant.now().getEpochSecond(), "message", current.topic, text, attachment);
+        pendingEchoes.put(echo.id(), echo);
+        deliveryStatuses.put(echo.id(), DeliveryStatus.PENDING);
+        current.messages.add(echo);
+        messageToSend.set("");
+
+        AtomicInteger shownPercent = new AtomicInteger(-1);
+        Transfer<Void> transfer = connection.sendFile(echo.topic(), file, text,
+                (transferred, total) -> showProgress(shownPercent, transferred, total));
+        track(transfer);
+        transfer.result().whenComplete((v, throwable) -> runOnFx(() -> {
+            if (throwable != null) {
+                System.err.println("Failed to send file: " + throwable.getMessage());
+                pendingEchoes.remove(echo.id());
+            }
+            if (deliveryStatuses.containsKey(echo.id())) {
+                deliveryStatuses.put(echo.id(),
+                        throwable == null ? DeliveryStatus.DELIVERED : DeliveryStatus.FAILED);
+            }
+        }));
+        return transfer;
+    }
+
+    /**
+     * Returns the local file of a message's attachment, downloading it into the
+     * {@link AttachmentCache} unless it is cached already. Download progress is shown in
+     * {@link #transferProgressProperty()}.
+     *
+     * @param message a message with an attachment
+     * @return the download, completed with the local file
+     */
+    public Transfer<Path> openAttachment(NtfyMessageDto message) {
+        AttachmentCache cache = attachmentCache;
+        if (message.attachment() == null || cache == null) {
+            return Transfer.failed(new IllegalStateException("No attachment or attachment cache"));
+        }
+        AtomicInteger shownPercent = new AtomicInteger(-1);
+        Transfer<Path> transfer = cache.open(message.attachment(),
+                (transferred, total) -> showProgress(shownPercent, transferred, total));
+        if (!transfer.result().isDone()) track(transfer);
+        return transfer;
     }
 
     /**
-     * Connects to the current topic by creating a new subscription.
-     * Any previous subscription is closed first.
-     * Old messages are preserved if subscription creation fails.
-     * Incoming messages are added to {@link #messages} on the JavaFX thread.
+     * Aborts the current upload or download, if any.
+     */
+    public void cancelTransfer() {
+        if (activeTransfer != null) activeTransfer.cancel();
+    }
+
+    /**
+     * Shows a transfer in {@link #transferProgress} until it completes.
+     */
+    private void track(Transfer<?> transfer) {
+        activeTransfer = transfer;
+        transferProgress.set(transfer.progress());
+        transferring.set(true);
+        transfer.result().whenComplete((v, throwable) -> runOnFx(() -> {
+            if (activeTransfer != transfer) return;
+            activeTransfer = null;
+            transferring.set(false);
+            transferProgress.set(0);
+        }));
+    }
+
+    /**
+     * Called for every buffer transferred; updates the JavaFX property at most once per percent.
+     */
+    private void showProgress(AtomicInteger shownPercent, long transferred, long total) {
+        int percent = total <= 0 ? -1 : (int) (100 * transferred / total);
+        if (shownPercent.getAndSet(percent) == percent) return;
+        runOnFx(() -> {
+            if (activeTransfer != null) transferProgress.set(percent < 0 ? -1 : percent / 100.0);
+        });
+    }
+
+    /**
+     * Shows the current topic and makes sure it is subscribed.
+     * <p>
+     * If the topic is in the {@link SubscriptionPool}, its list, including messages
+     * received in the background, is shown right away. Otherwise a new subscription is
+     * opened and added to the pool, disconnecting the least recently used topic if the
+     * pool is full; the shown messages are kept if opening it fails.
+     * Incoming messages are batched and added to the topic's list on the JavaFX thread.
+     * If the stream is lost, it is reopened automatically, resuming after the last
+     * received message; {@link #connectionStateProperty()} reflects the transitions.
+     * With a {@link MessageStore}, the stored history of the topic is shown first and
+     * the subscription resumes after the newest stored message.
      */
     public void connectToTopic() {
-        disconnect();
+        String name = topic.get();
+        TopicChannel channel = pool.get(name);
+        if (channel == null) {
+            channel = new TopicChannel(name);
+            String storedSince = loadStoredHistory(channel);
+            try {
+                if (backfillSince == null) channel.open(storedSince);
+                else backfill(channel, storedSince);
+            } catch (Exception e) {
+                setConnectionState(ConnectionState.DISCONNECTED);
+                System.err.println("Failed to connect to topic: " + e.getMessage());
+                return;
+            }
+            // Echoes shown in an earlier list of this topic can no longer be replaced
+            dropPendingEchoes(name);
+            pool.put(name, channel).forEach(this::evicted);
+        }
+        show(channel);
+    }
 
-        // Make a backup of current messages in case subscription fails
-        var oldMessages = FXCollections.observableArrayList(messages);
-        // Clear messages for the new topic
-        messages.clear();
+    /**
+     * Stops all subscriptions, including those of pooled topics, and updates connection
+     * state. The shown messages are kept.
+     */
+    public void disconnect() {
+        if (pool.size() > 0) {
+            pool.clear();
+            setConnectionState(ConnectionState.DISCONNECTED);
+        }
+    }
 
+    /**
+     * Makes a channel the shown one; an O(1) swap of the shown list apart from
+     * recomputing active search results.
+     */
+    private void show(TopicChannel channel) {
+        TopicChannel previous = current;
+        if (channel == previous) return;
+        if (previous != null) {
+            previous.messages.removeListener(searchResultsUpdater);
+            if (!previous.closed) previous.messages.setPolicy(backgroundRetention);
+        }
+        channel.messages.setPolicy(retentionPolicy);
+        channel.messages.addListener(searchResultsUpdater);
+        current = channel;
+        messages.set(channel.messages);
+        if (isSearching()) {
+            searchResults.setAll(channel.searchIndex.search(currentQuery));
+        } else {
+            searchResults.clear();
+        }
+        setConnectionState(channel.state);
+    }
+
+    /**
+     * Forgets local echoes of a topic whose channel was closed by the pool.
+     */
+    private void evicted(TopicChannel channel) {
+        if (channel != current) dropPendingEchoes(channel.topic);
+    }
+
+    private void dropPendingEchoes(String topicName) {
+        pendingEchoes.values().removeIf(echo -> {
+            if (!Objects.equals(echo.topic(), topicName)) return false;
+            deliveryStatuses.remove(echo.id());
+            return true;
+        });
+    }
+
+    /**
+     * Shows the stored history of a topic in its new channel.
+     *
+     * @return id of the newest stored message to resume from, or {@code null}
+     */
+    private String loadStoredHistory(TopicChannel channel) {
+        if (store == null) return null;
         try {
-            // Start receiving new messages asynchronously
-            currentSubscription = connection.receive(topic.get(),
-                    m -> runOnFx(() -> messages.add(m)));
-            // Mark as connected
-            connected.set(true);
-        } catch (Exception e) {
-            // Restore old messages if connection failed
-            messages.setAll(oldMessages);
-            connected.set(false);
-            System.err.println("Failed to connect to topic: " + e.getMessage());
+            int limit = Math.min(retentionPolicy.maxCount(), MAX_STORED_HISTORY);
+            channel.messages.setAll(store.recent(channel.topic, limit));
+            for (NtfyMessageDto message : channel.messages) {
+                channel.deduplicator.remember(message.id());
+            }
+            return channel.messages.isEmpty() ? null : channel.messages.getLast().id();
+        } catch (UncheckedIOException e) {
+            System.err.println("Failed to load stored history: " + e.getMessage());
+            return null;
         }
     }
 
+    /**
+     * Fetches the history of a new channel with one poll, merges it into the list in a
+     * single update and then opens the live subscription right after the newest
+     * fetched message, so there is neither a gap nor an overlap at the seam. If the
+     * poll fails, the live subscription starts as it would without backfill.
+     *
+     * @param storedSince id of the newest stored message, or {@code null}
+     */
+    private void backfill(TopicChannel channel, String storedSince) {
+        String since = storedSince != null ? storedSince : backfillSince;
+        // Without stored history an empty result resumes at the time of the poll
+        String resumeIfEmpty = storedSince != null ? storedSince : String.valueOf(System.currentTimeMillis() / 1000);
+        connection.poll(channel.topic, since).whenComplete((history, throwable) -> {
+            if (channel.closed) return;
+            List<NtfyMessageDto> fresh = throwable == null ? keepNew(channel, history) : List.of();
+            runOnFx(() -> {
+                if (channel.closed) return;
+                String resumeAfter;
+                if (throwable != null) {
+                    Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+                    if (!(cause instanceof UnsupportedOperationException)) {
+                        System.err.println("Failed to backfill history: " + cause.getMessage());
+                    }
+                    resumeAfter = storedSince;
+                } else {
+                    channel.messages.addAll(fresh);
+                    resumeAfter = history.isEmpty() ? resumeIfEmpty : history.getLast().id();
+                }
+                try {
+                    channel.open(resumeAfter);
+                } catch (Exception e) {
+                    System.err.println("Failed to connect to topic: " + e.getMessage());
+                    updateConnectionState(channel, ConnectionState.DISCONNECTED);
+                }
+            });
+        });
+    }
 
     /**
-     * Stops the active subscription, if one exists, and updates connection state.
+     * Drops messages already in the channel's list or loaded from the store from a
+     * backfill and stores the rest; runs on the thread that completed the poll.
      */
-    public void disconnect() {
-        if (currentSubscription != null) {
+    private List<NtfyMessageDto> keepNew(TopicChannel channel, List<NtfyMessageDto> history) {
+        List<NtfyMessageDto> fresh = new ArrayList<>(history.size());
+        for (NtfyMessageDto message : history) {
+            if (!channel.deduplicator.isDuplicate(message.id())) fresh.add(message);
+        }
+        MessageStore store = this.store;
+        if (store != null) {
             try {
-                if (currentSubscription.isOpen()) {
-                    currentSubscription.close();
+                for (NtfyMessageDto message : fresh) {
+                    store.append(message);
+                }
+            } catch (UncheckedIOException e) {
+                System.err.println("Failed to store message: " + e.getMessage());
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * Handles a message from the subscription on its background thread.
+     * Messages already received, or loaded from the store, are dropped.
+     */
+    private void receive(TopicChannel channel, NtfyMessageDto message) {
+        if (channel.closed || channel.deduplicator.isDuplicate(message.id())) return;
+        MessageStore store = this.store;
+        if (store != null) {
+            try {
+                store.append(message);
+            } catch (UncheckedIOException e) {
+                System.err.println("Failed to store message: " + e.getMessage());
+            }
+        }
+        channel.incoming.add(message);
+    }
+
+    /**
+     * Adds a batch of received messages to the list of their topic on the JavaFX thread.
+     * A message matching a pending local echo replaces it in place instead of being added again.
+     */
+    private void addIncoming(TopicChannel channel, List<NtfyMessageDto> batch) {
+        metrics.fxBatchDelivered(batch.size(), channel.incoming.pending());
+        if (channel.closed) return;
+        MessageHistory messages = channel.messages;
+        if (pendingEchoes.isEmpty()) {
+            messages.addAll(batch);
+            return;
+        }
+        List<NtfyMessageDto> added = new ArrayList<>(batch.size());
+        for (NtfyMessageDto message : batch) {
+            NtfyMessageDto echo = takeEcho(message);
+            int index = echo == null ? -1 : messages.lastIndexOfId(echo.id());
+            if (index >= 0) {
+                messages.set(index, message);
+            } else {
+                added.add(message);
+            }
+        }
+        messages.addAll(added);
+    }
+
+    /**
+     * Keeps {@link #searchResults} in step with the shown list: evicted messages are
+     * removed and arriving messages are checked against the query.
+     */
+    private void updateSearchResults(ListChangeListener.Change<? extends NtfyMessageDto> change) {
+        if (currentQuery.isEmpty()) return;
+        while (change.next()) {
+            if (change.wasReplaced()) {
+                // An echo was replaced in place; recompute to keep arrival order
+                searchResults.setAll(current.searchIndex.search(currentQuery));
+                return;
+            }
+            if (change.wasRemoved()) {
+                // The history decodes a new record on every access, so compare by value
+                Set<NtfyMessageDto> removed = new HashSet<>(change.getRemoved());
+                searchResults.removeIf(removed::contains);
+            }
+            if (change.wasAdded()) {
+                List<NtfyMessageDto> matching = new ArrayList<>();
+                for (NtfyMessageDto message : change.getAddedSubList()) {
+                    if (MessageSearchIndex.matches(message, currentQuery)) matching.add(message);
                 }
-            } catch (IOException e) {
-                System.err.println("Error closing subscription: " + e.getMessage());
+                searchResults.addAll(matching);
             }
-            currentSubscription = null;
-            connected.set(false);
+        }
+    }
+
+    /**
+     * Removes and returns the oldest pending echo the message is the server's copy of, if any.
+     */
+    private NtfyMessageDto takeEcho(NtfyMessageDto message) {
+        Iterator<NtfyMessageDto> it = pendingEchoes.values().iterator();
+        while (it.hasNext()) {
+            NtfyMessageDto echo = it.next();
+            if (isCopyOf(message, echo)) {
+                it.remove();
+                deliveryStatuses.remove(echo.id());
+                return echo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * A server copy matches an echo with the same topic and either the same attachment
+     * name or, for text messages, the same text; ntfy may fill in a text for attachments.
+     */
+    private static boolean isCopyOf(NtfyMessageDto message, NtfyMessageDto echo) {
+        if (!Objects.equals(echo.topic(), message.topic())) return false;
+        if (echo.attachment() != null) {
+            return message.attachment() != null && Objects.equals(echo.attachment().name(), message.attachment().name());
+        }
+        return message.attachment() == null && Objects.equals(echo.message(), message.message());
+    }
+
+    /**
+     * Receives state changes from the subscription, possibly on a background thread.
+     */
+    private void updateConnectionState(TopicChannel channel, ConnectionState state) {
+        if (state == ConnectionState.RECONNECTING) metrics.reconnecting(channel.topic);
+        Outbox outbox = this.outbox;
+        if (state == ConnectionState.CONNECTED && outbox != null) outbox.retryNow();
+        runOnFx(() -> {
+            // Closed channels were removed from the pool; their final state is not shown
+            if (channel.closed) return;
+            channel.state = state;
+            if (channel == current) setConnectionState(state);
+        });
+    }
+
+    private void setConnectionState(ConnectionState state) {
+        connectionState.set(state);
+        connected.set(state == ConnectionState.CONNECTED);
+    }
+
+    /**
+     * Subscription, batcher and message list of one topic. Pooled channels keep
+     * receiving into their list, trimmed to the background retention, while another
+     * topic is shown.
+     */
+    private final class TopicChannel implements Closeable {
+        final String topic;
+        final MessageHistory messages = new MessageHistory(retentionPolicy);
+        /**
+         * Inverted index over {@link #messages}, updated as messages are added and evicted.
+         * Created before the search results updater is registered, so it sees list changes first.
+         */
+        final MessageSearchIndex searchIndex = new MessageSearchIndex(messages);
+        /**
+         * Drops messages delivered twice, e.g. after a reconnect with {@code since=}. Scoped
+         * to the channel, so a new channel of a topic shown before takes its history again.
+         */
+        final MessageDeduplicator deduplicator = new MessageDeduplicator(DEDUP_CAPACITY, DEDUP_WINDOW);
+        /** Coalesces incoming messages into one list update per JavaFX pulse; bounded. */
+        final MessageBatcher<NtfyMessageDto> incoming = new MessageBatcher<>(batch -> addIncoming(this, batch),
+                HelloModel::runOnFx, flushInterval, maxBatchSize, queueCapacity, overflowPolicy, this::skippedMarker);
+        /** Last reported state, written on the JavaFX thread. */
+        ConnectionState state = ConnectionState.DISCONNECTED;
+        volatile boolean closed;
+        private NtfyConnection.Subscription subscription;
+
+        TopicChannel(String topic) {
+            this.topic = topic;
+        }
+
+        NtfyMessageDto skippedMarker(long count) {
+            return new NtfyMessageDto("skipped-" + SKIPPED_IDS.incrementAndGet(), System.currentTimeMillis() / 1000,
+                    SKIPPED_EVENT, topic, "⋯ " + count + (count == 1 ? " message" : " messages") + " skipped");
+        }
+
+        void open(String since) {
+            subscription = new ReconnectingSubscription(connection, topic, since, message -> receive(this, message),
+                    newState -> updateConnectionState(this, newState), reconnectBackoff);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            incoming.clear();
+            searchIndex.close();
+            if (subscription != null && subscription.isOpen()) subscription.close();
         }
     }
 
@@ -0,0 +1,198 @@
+package com.example;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ChatMetrics} that keeps counters and latency histograms in memory,
+ * for tests, benchmarks and an on-screen summary.
+ */
+public class InMemoryChatMetrics implements ChatMetrics {
+
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+    private final LongAdder failedSends = new LongAdder();
+    private final Map<String, LongAdder> receivedPerTopic = new ConcurrentHashMap<>();
+    private final LongAdder parseFailures = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder staleStreams = new LongAdder();
+    private final AtomicInteger maxFxQueueDepth = new AtomicInteger();
+    private final AtomicInteger maxOutboxDepth = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+
+    @Override
+    public void sendCompleted(String topic, long latencyNanos, boolean success) {
+        sendLatency.record(latencyNanos);
+        if (!success) failedSends.increment();
+    }
+
+    @Override
+    public void messageReceived(NtfyMessageDto message, long endToEndLatencyMillis) {
+        receivedPerTopic.computeIfAbsent(String.valueOf(message.topic()), t -> new LongAdder()).increment();
+        endToEndLatency.record(TimeUnit.MILLISECONDS.toNanos(Math.max(endToEndLatencyMillis, 0)));
+    }
+
+    @Override
+    public void parseFailure(String topic) {
+        parseFailures.increment();
+    }
+
+    @Override
+    public void reconnecting(String topic) {
+        reconnects.increment();
+    }
+
+    @Override
+    public void streamStale(String topic, long silenceNanos) {
+        staleStreams.increment();
+    }
+
+    @Override
+    public void fxBatchDelivered(int batchSize, int queueDepth) {
+        maxFxQueueDepth.accumulateAndGet(batchSize + queueDepth, Math::max);
+    }
+
+    @Override
+    public void outboxDepth(int depth) {
+        maxOutboxDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /** @return latency of completed sends, successful or not */
+    public LatencyHistogram sendLatency() {
+        return sendLatency;
+    }
+
+    /** @return arrival time minus publish time of received messages */
+    public LatencyHistogram endToEndLatency() {
+        return endToEndLatency;
+    }
+
+    /** @return number of failed sends */
+    public long failedSends() {
+        return failedSends.sum();
+    }
+
+    /** @return number of received messages per topic, sorted by topic */
+    public Map<String, Long> receivedPerTopic() {
+        Map<String, Long> counts = new TreeMap<>();
+        receivedPerTopic.forEach((topic, count) -> counts.put(topic, count.sum()));
+        return counts;
+    }
+
+    /**
+     * @param topic the topic
+     * @return average number of messages per second received on the topic since creation
+     */
+    public double receiveRate(String topic) {
+        LongAdder count = receivedPerTopic.get(topic);
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return count == null || seconds <= 0 ? 0 : count.sum() / seconds;
+    }
+
+    /** @return number of lines that could not be decoded */
+    public long parseFailures() {
+        return parseFailures.sum();
+    }
+
+    /** @return number of lost subscription streams */
+    public long reconnects() {
+        return reconnects.sum();
+    }
+
+    /** @return number of streams torn down because they went silent */
+    public long staleStreams() {
+        return staleStreams.sum();
+    }
+
+    /** @return the most messages that were waiting for the JavaFX thread at once */
+    public int maxFxQueueDepth() {
+        return maxFxQueueDepth.get();
+    }
+
+    /** @return the most messages that were waiting in the outbox at once */
+    public int maxOutboxDepth() {
+        return maxOutboxDepth.get();
+    }
+
+    /**
+     * Lock-free log-linear histogram: every power of two is split into 16 linear
+     * sub-buckets, so percentiles are accurate to within 1/16 (about 6%) over the
+     * full range of {@code long} nanoseconds, in under 8 KiB.
+     */
+    public static final class LatencyHistogram {
+        private static final int SUB_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        /** Values below {@code SUB_BUCKETS} get exact buckets; each shift above adds another row. */
+        private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        /**
+         * @param nanos the value to record; negative values count as zero
+         */
+        public void record(long nanos) {
+            long value = Math.max(nanos, 0);
+            buckets.incrementAndGet(bucket(value));
+            count.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        /** @return number of recorded values */
+        public long count() {
+            return count.sum();
+        }
+
+        /** @return mean of the recorded values in nanoseconds, or 0 if none */
+        public double meanNanos() {
+            long n = count.sum();
+            return n == 0 ? 0 : (double) sum.sum() / n;
+        }
+
+        /** @return largest recorded value in nanoseconds, or 0 if none */
+        public long maxNanos() {
+            return max.get();
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return upper bound in nanoseconds of the bucket holding the percentile, or 0 if empty
+         */
+        public long percentileNanos(double percentile) {
+            long n = count.sum();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        private static int bucket(long value) {
+            if (value < SUB_BUCKETS) return (int) value;
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            int top = (int) (value >>> shift);
+            return (shift + 1) * SUB_BUCKETS + top - SUB_BUCKETS;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < SUB_BUCKETS) return bucket;
+            int shift = bucket / SUB_BUCKETS - 1;
+            long top = bucket % SUB_BUCKETS + SUB_BUCKETS;
+            return ((top + 1) << shift) - 1;
+        }
+    }
+}
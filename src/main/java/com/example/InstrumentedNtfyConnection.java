@@ -0,0 +1,84 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Decorator that reports send latency and received messages of another
+ * {@link NtfyConnection} to a {@link ChatMetrics}.
+ * <p>
+ * Parse failures happen inside the wrapped connection's decoder and are reported by
+ * {@link NtfyConnectionImpl#setMetrics(ChatMetrics)}; reconnects and JavaFX queue
+ * depth by {@link HelloModel#setMetrics(ChatMetrics)}.
+ */
+public class InstrumentedNtfyConnection implements NtfyConnection {
+
+    private final NtfyConnection delegate;
+    private final ChatMetrics metrics;
+
+    /**
+     * @param delegate the connection doing the actual work
+     * @param metrics  receives the measurements
+     */
+    public InstrumentedNtfyConnection(NtfyConnection delegate, ChatMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void send(String topic, String message) throws IOException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            delegate.send(topic, message);
+            success = true;
+        } finally {
+            metrics.sendCompleted(topic, System.nanoTime() - start, success);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        long start = System.nanoTime();
+        return delegate.sendAsync(topic, message).whenComplete((v, throwable) ->
+                metrics.sendCompleted(topic, System.nanoTime() - start, throwable == null));
+    }
+
+    @Override
+    public Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        long start = System.nanoTime();
+        Transfer<Void> transfer = delegate.sendFile(topic, file, message, listener);
+        transfer.result().whenComplete((v, throwable) ->
+                metrics.sendCompleted(topic, System.nanoTime() - start, throwable == null));
+        return transfer;
+    }
+
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return delegate.receive(topic, measured(messageHandler));
+    }
+
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        return delegate.receive(topic, since, measured(messageHandler));
+    }
+
+    /**
+     * Delegates without measuring; backfilled messages are old, so their end-to-end
+     * latency would distort the receive metrics.
+     */
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        return delegate.poll(topic, since);
+    }
+
+    private Consumer<NtfyMessageDto> measured(Consumer<NtfyMessageDto> messageHandler) {
+        return message -> {
+            metrics.messageReceived(message, System.currentTimeMillis() - message.time() * 1000);
+            messageHandler.accept(message);
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * {@link ChatMetrics} that emits custom JFR events under the "JavaFX Chat" category.
+ * <p>
+ * Events are only created while a recording with them enabled is running, e.g. after
+ * {@code jcmd <pid> JFR.start}, so this is cheap enough to leave on in production.
+ * High-frequency events have stack traces disabled.
+ */
+public class JfrChatMetrics implements ChatMetrics {
+
+    @Override
+    public void sendCompleted(String topic, long latencyNanos, boolean success) {
+        MessageSentEvent event = new MessageSentEvent();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.latency = latencyNanos;
+            event.success = success;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void messageReceived(NtfyMessageDto message, long endToEndLatencyMillis) {
+        MessageReceivedEvent event = new MessageReceivedEvent();
+        if (event.shouldCommit()) {
+            event.topic = message.topic();
+            event.messageId = message.id();
+            event.endToEndLatency = endToEndLatencyMillis;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void parseFailure(String topic) {
+        ParseFailureEvent event = new ParseFailureEvent();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void reconnecting(String topic) {
+        ReconnectEvent event = new ReconnectEvent();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void streamStale(String topic, long silenceNanos) {
+        StaleStreamEvent event = new StaleStreamEvent();
+        if (event.shouldCommit()) {
+            event.topic = topic;
+            event.silence = silenceNanos;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void fxBatchDelivered(int batchSize, int queueDepth) {
+        FxBatchEvent event = new FxBatchEvent();
+        if (event.shouldCommit()) {
+            event.batchSize = batchSize;
+            event.queueDepth = queueDepth;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void outboxDepth(int depth) {
+        OutboxEvent event = new OutboxEvent();
+        if (event.shouldCommit()) {
+            event.depth = depth;
+            event.commit();
+        }
+    }
+
+    @Name("com.example.MessageSent")
+    @Label("Message Sent")
+    @Category("JavaFX Chat")
+    @StackTrace(false)
+    static final class MessageSentEvent extends Event {
+        @Label("Topic")
+        String topic;
+        @Label("Latency")
+        @Timespan(Timespan.NANOSECONDS)
+        long latency;
+        @Label("Success")
+        boolean success;
+    }
+
+    @Name("com.example.MessageReceived")
+    @Label("Message Received")
+    @Category("JavaFX Chat")
+    @StackTrace(false)
+    static final class MessageReceivedEvent extends Event {
+        @Label("Topic")
+        String topic;
+        @Label("Message Id")
+        String messageId;
+        @Label("End-to-End Latency")
+        @Description("Arrival time minus the server's publish time, which has a resolution of one second")
+        @Timespan(Timespan.MILLISECONDS)
+        long endToEndLatency;
+    }
+
+    @Name("com.example.ParseFailure")
+    @Label("Parse Failure")
+    @Category("JavaFX Chat")
+    static final class ParseFailureEvent extends Event {
+        @Label("Topic")
+        String topic;
+    }
+
+    @Name("com.example.Reconnect")
+    @Label("Reconnect")
+    @Description("A subscription stream was lost and is being reopened")
+    @Category("JavaFX Chat")
+    static final class ReconnectEvent extends Event {
+        @Label("Topic")
+        String topic;
+    }
+
+    @Name("com.example.StaleStream")
+    @Label("Stale Stream")
+    @Description("A subscription stream went silent and is being torn down")
+    @Category("JavaFX Chat")
+    static final class StaleStreamEvent extends Event {
+        @Label("Topic")
+        String topic;
+        @Label("Silence")
+        @Timespan(Timespan.NANOSECONDS)
+        long silence;
+    }
+
+    @Name("com.example.FxBatch")
+    @Label("FX Batch Delivered")
+    @Category("JavaFX Chat")
+    @StackTrace(false)
+    static final class FxBatchEvent extends Event {
+        @Label("Batch Size")
+        int batchSize;
+        @Label("Queue Depth")
+        @Description("Messages still waiting for a later batch")
+        int queueDepth;
+    }
+
+    @Name("com.example.Outbox")
+    @Label("Outbox Depth")
+    @Category("JavaFX Chat")
+    @StackTrace(false)
+    static final class OutboxEvent extends Event {
+        @Label("Depth")
+        @Description("Queued messages not yet accepted by the server")
+        int depth;
+    }
+}
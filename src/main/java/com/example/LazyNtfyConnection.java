@@ -0,0 +1,153 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * {@link NtfyConnection} whose underlying connection is still being created, typically
+ * on a background thread during startup.
+ * <p>
+ * Reading the {@code .env} file and building the HTTP client take long enough to
+ * delay the first frame, so the application creates its connection in parallel with
+ * loading the view. Subscriptions opened before the connection is ready are returned
+ * at once and start streaming when it is; asynchronous sends and polls are chained onto it.
+ * Only the blocking {@link #send(String, String)} and {@link #sendFile} wait for it.
+ * If creating the connection fails, sends fail with the cause and subscriptions end
+ * immediately, so a {@link ReconnectingSubscription} keeps retrying with its backoff.
+ */
+public class LazyNtfyConnection implements NtfyConnection {
+
+    private final CompletableFuture<? extends NtfyConnection> connection;
+
+    /**
+     * @param connection completed with the connection once it is created
+     */
+    public LazyNtfyConnection(CompletableFuture<? extends NtfyConnection> connection) {
+        this.connection = connection;
+        connection.whenComplete((c, throwable) -> {
+            if (throwable != null) {
+                System.err.println("Failed to create connection: " + throwable.getMessage());
+            }
+        });
+    }
+
+    /**
+     * @return a future completed when the underlying connection is ready
+     */
+    public CompletableFuture<? extends NtfyConnection> ready() {
+        return connection;
+    }
+
+    @Override
+    public void send(String topic, String message) throws IOException {
+        connection().send(topic, message);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        return connection.thenCompose(c -> c.sendAsync(topic, message));
+    }
+
+    /**
+     * Publishes a file, waiting for the underlying connection first if it is not ready yet.
+     */
+    @Override
+    public Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        try {
+            return connection().sendFile(topic, file, message, listener);
+        } catch (IOException e) {
+            return Transfer.failed(e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        return connection.thenCompose(c -> c.poll(topic, since));
+    }
+
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        DeferredSubscription subscription = new DeferredSubscription();
+        connection.whenComplete((c, throwable) -> {
+            if (throwable != null) {
+                subscription.end();
+            } else {
+                subscription.start(c.receive(topic, since, messageHandler));
+            }
+        });
+        return subscription;
+    }
+
+    private NtfyConnection connection() throws IOException {
+        try {
+            return connection.join();
+        } catch (CompletionException e) {
+            throw new IOException("Connection unavailable", e.getCause());
+        }
+    }
+
+    /**
+     * Subscription handed out before the connection is ready; forwards to the real
+     * one once it exists. Closing it first means the real one is closed as soon as it opens.
+     */
+    private static final class DeferredSubscription implements Subscription {
+
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        /** The real subscription; guarded by {@code this}. */
+        private Subscription delegate;
+        private volatile boolean open = true;
+
+        void start(Subscription subscription) {
+            synchronized (this) {
+                if (open) {
+                    delegate = subscription;
+                    subscription.whenClosed().whenComplete((v, throwable) -> end());
+                    return;
+                }
+            }
+            try {
+                subscription.close();
+            } catch (IOException e) {
+                System.err.println("Error closing subscription: " + e.getMessage());
+            }
+        }
+
+        void end() {
+            open = false;
+            closed.complete(null);
+        }
+
+        @Override
+        public void close() throws IOException {
+            Subscription subscription;
+            synchronized (this) {
+                open = false;
+                subscription = delegate;
+            }
+            try {
+                if (subscription != null) subscription.close();
+            } finally {
+                closed.complete(null);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public CompletableFuture<Void> whenClosed() {
+            return closed;
+        }
+    }
+}
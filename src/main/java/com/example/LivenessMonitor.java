@@ -0,0 +1,213 @@
+package com.example;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Detects subscription streams that have gone silent, e.g. over a half-open TCP
+ * connection that never reports an error.
+ * <p>
+ * ntfy sends a {@code keepalive} event on idle streams, by default every 45 s, so a
+ * stream that has received nothing for a multiple of that interval is considered
+ * stale and its {@code onStale} action runs, which tears the stream down so that it
+ * is reopened. Streams call {@link Handle#touch()} for everything they receive; that
+ * is a single volatile write.
+ * <p>
+ * All streams share one hashed timer wheel with {@value #WHEEL_SIZE} slots, advanced
+ * by one tick per eighth of the timeout on a shared thread. A stream sits in the slot
+ * of its deadline and is only looked at when that slot comes up: if it was touched
+ * in the meantime it moves to the slot of its new deadline, otherwise it is stale.
+ * Each stream therefore costs about one check per timeout, however often it
+ * receives, and thousands of streams need no thread of their own.
+ */
+public class LivenessMonitor implements Closeable {
+
+    /** ntfy's default keepalive interval. */
+    public static final Duration NTFY_KEEPALIVE = Duration.ofSeconds(45);
+    /** Default number of keepalive intervals without any event before a stream is stale. */
+    public static final double DEFAULT_MULTIPLE = 2.0;
+
+    private static final int WHEEL_SIZE = 64;
+    private static final int TICKS_PER_TIMEOUT = 8;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ntfy-liveness");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final long timeoutNanos;
+    private final long tickNanos;
+    private final long startNanos;
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Handle>[] wheel = new ArrayDeque[WHEEL_SIZE];
+    private final ScheduledFuture<?> ticker;
+    /** Last tick whose slot has been processed. */
+    private long currentTick;
+    private int watched;
+    private long staleCount;
+
+    /**
+     * Monitors against ntfy's default keepalive interval, flagging streams after
+     * {@value #DEFAULT_MULTIPLE} intervals of silence.
+     */
+    public LivenessMonitor() {
+        this(NTFY_KEEPALIVE, DEFAULT_MULTIPLE);
+    }
+
+    /**
+     * @param keepaliveInterval interval of the server's keepalive events
+     * @param multiple          number of intervals without any event before a stream is stale
+     */
+    public LivenessMonitor(Duration keepaliveInterval, double multiple) {
+        if (keepaliveInterval.isNegative() || keepaliveInterval.isZero() || !(multiple >= 1)) {
+            throw new IllegalArgumentException("Require a positive keepalive interval and multiple >= 1");
+        }
+        this.timeoutNanos = (long) (keepaliveInterval.toNanos() * multiple);
+        this.tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), timeoutNanos / TICKS_PER_TIMEOUT);
+        this.startNanos = System.nanoTime();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ArrayDeque<>();
+        }
+        this.ticker = SCHEDULER.scheduleAtFixedRate(() -> advance(System.nanoTime()),
+                tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** @return how long a stream may stay silent before it is stale */
+    public Duration timeout() {
+        return Duration.ofNanos(timeoutNanos);
+    }
+
+    /**
+     * Starts watching a stream, counting from now.
+     *
+     * @param onStale runs once on the monitor's thread with the length of the silence if
+     *                the stream goes silent; must not block
+     * @return the handle the stream touches on every event and cancels when it ends
+     */
+    public Handle watch(Consumer<Duration> onStale) {
+        Handle handle = new Handle(onStale, System.nanoTime());
+        synchronized (this) {
+            watched++;
+            schedule(handle, handle.lastEventNanos + timeoutNanos);
+        }
+        return handle;
+    }
+
+    /** @return number of streams being watched */
+    public synchronized int watchedCount() {
+        return watched;
+    }
+
+    /** @return number of streams found stale so far */
+    public synchronized long staleCount() {
+        return staleCount;
+    }
+
+    /**
+     * Stops the timer. Streams are no longer checked.
+     */
+    @Override
+    public void close() {
+        ticker.cancel(false);
+    }
+
+    /**
+     * Processes every slot up to the tick of {@code now} and then runs the actions of
+     * stale streams outside the lock.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void advance(long now) {
+        List<Handle> stale = new ArrayList<>();
+        synchronized (this) {
+            long target = (now - startNanos) / tickNanos;
+            while (currentTick < target) {
+                currentTick++;
+                ArrayDeque<Handle> slot = wheel[(int) (currentTick & (WHEEL_SIZE - 1))];
+                for (int n = slot.size(); n > 0; n--) {
+                    Handle handle = slot.poll();
+                    if (handle.done) continue;
+                    if (handle.deadlineTick > currentTick) {
+                        // Due in a later turn of the wheel
+                        slot.add(handle);
+                        continue;
+                    }
+                    long deadline = handle.lastEventNanos + timeoutNanos;
+                    if (deadline - now > 0) {
+                        schedule(handle, deadline);
+                    } else {
+                        handle.done = true;
+                        watched--;
+                        staleCount++;
+                        stale.add(handle);
+                    }
+                }
+            }
+        }
+        for (Handle handle : stale) {
+            try {
+                handle.onStale.accept(Duration.ofNanos(now - handle.lastEventNanos));
+            } catch (RuntimeException e) {
+                System.err.println("Failed to tear down stale stream: " + e.getMessage());
+            }
+        }
+    }
+
+    private void schedule(Handle handle, long deadlineNanos) {
+        long tick = Math.max(currentTick + 1, Math.ceilDiv(deadlineNanos - startNanos, tickNanos));
+        handle.deadlineTick = tick;
+        wheel[(int) (tick & (WHEEL_SIZE - 1))].add(handle);
+    }
+
+    private synchronized void cancel(Handle handle) {
+        if (handle.done) return;
+        handle.done = true;
+        watched--;
+    }
+
+    /**
+     * A watched stream.
+     */
+    public final class Handle {
+        private final Consumer<Duration> onStale;
+        private volatile long lastEventNanos;
+        /** Stale or cancelled; guarded by the monitor. */
+        private boolean done;
+        /** Tick of the slot this handle is in; guarded by the monitor. */
+        private long deadlineTick;
+
+        private Handle(Consumer<Duration> onStale, long now) {
+            this.onStale = onStale;
+            this.lastEventNanos = now;
+        }
+
+        /**
+         * Records that the stream received something.
+         */
+        public void touch() {
+            lastEventNanos = System.nanoTime();
+        }
+
+        /** @return time since the stream last received something */
+        public Duration sinceLastEvent() {
+            return Duration.ofNanos(System.nanoTime() - lastEventNanos);
+        }
+
+        /**
+         * Stops watching, e.g. because the stream has ended. The handle leaves the
+         * wheel when its slot next comes up.
+         */
+        public void cancel() {
+            LivenessMonitor.this.cancel(this);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.example;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Collects items produced on background threads and hands them to a sink
+ * in batches on a delivery executor (normally the JavaFX thread).
+ * <p>
+ * At most one flush is pending at any time. With a zero flush interval the
+ * flush is scheduled immediately, so everything that arrives before the next
+ * JavaFX pulse is delivered with a single call to the sink. With a positive
+ * interval, items are held back until the interval elapses or
+ * {@code maxBatchSize} items are waiting, whichever comes first.
+ * <p>
+ * The queue can be bounded, so that a stalled delivery executor cannot make it grow
+ * without limit. What happens to items that arrive while it is full is decided by
+ * an {@link OverflowPolicy}; overflows are counted in {@link #stats()}.
+ *
+ * @param <T> the item type
+ */
+public class MessageBatcher<T> {
+
+    /** Shared timer used to delay flushes when a flush interval is configured. */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "message-batcher-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Consumer<List<T>> sink;
+    private final Executor deliveryExecutor;
+    private final long flushIntervalNanos;
+    private final int maxBatchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final LongFunction<T> skippedMarker;
+
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+    /** Free places in a bounded queue, one held by every queued item; {@code null} if unbounded. */
+    private final Semaphore slots;
+    /** Items discarded under {@link OverflowPolicy#COLLAPSE} and not yet reported by a marker. */
+    private final AtomicLong skipped = new AtomicLong();
+
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong deliveredCount = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final long createdNanos = System.nanoTime();
+
+    /**
+     * Creates a batcher that flushes once per delivery cycle.
+     *
+     * @param sink             receives each batch on the delivery executor
+     * @param deliveryExecutor executor the sink runs on, e.g. {@code Platform::runLater}
+     */
+    public MessageBatcher(Consumer<List<T>> sink, Executor deliveryExecutor) {
+        this(sink, deliveryExecutor, Duration.ZERO, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a batcher with an explicit flush interval and batch size limit.
+     *
+     * @param sink             receives each batch on the delivery executor
+     * @param deliveryExecutor executor the sink runs on, e.g. {@code Platform::runLater}
+     * @param flushInterval    how long to collect items before flushing; zero flushes every pulse
+     * @param maxBatchSize     largest batch handed to the sink; also triggers an early flush
+     */
+    public MessageBatcher(Consumer<List<T>> sink, Executor deliveryExecutor,
+                          Duration flushInterval, int maxBatchSize) {
+        this(sink, deliveryExecutor, flushInterval, maxBatchSize, Integer.MAX_VALUE, OverflowPolicy.BLOCK, null);
+    }
+
+    /**
+     * Creates a batcher whose queue holds at most {@code capacity} items.
+     *
+     * @param sink             receives each batch on the delivery executor
+     * @param deliveryExecutor executor the sink runs on, e.g. {@code Platform::runLater}
+     * @param flushInterval    how long to collect items before flushing; zero flushes every pulse
+     * @param maxBatchSize     largest batch handed to the sink; also triggers an early flush
+     * @param capacity         most items waiting for delivery, or {@link Integer#MAX_VALUE} for no limit
+     * @param overflowPolicy   what happens to an item added while the queue is full
+     * @param skippedMarker    creates the item delivered in place of the items skipped under
+     *                         {@link OverflowPolicy#COLLAPSE}, given their number; unused by other policies
+     */
+    public MessageBatcher(Consumer<List<T>> sink, Executor deliveryExecutor,
+                          Duration flushInterval, int maxBatchSize,
+                          int capacity, OverflowPolicy overflowPolicy, LongFunction<T> skippedMarker) {
+        if (flushInterval.isNegative()) {
+            throw new IllegalArgumentException("flushInterval must not be negative");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (overflowPolicy == OverflowPolicy.COLLAPSE && skippedMarker == null) {
+            throw new IllegalArgumentException("COLLAPSE needs a skipped marker");
+        }
+        this.sink = Objects.requireNonNull(sink);
+        this.deliveryExecutor = Objects.requireNonNull(deliveryExecutor);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy);
+        this.skippedMarker = skippedMarker;
+        this.slots = capacity == Integer.MAX_VALUE ? null : new Semaphore(capacity);
+    }
+
+    /**
+     * Queues an item for delivery. Safe to call from any thread.
+     * If the queue is full, the item is handled according to the overflow policy;
+     * with {@link OverflowPolicy#BLOCK} this waits until the next flush makes room.
+     *
+     * @param item the item to deliver
+     */
+    public void add(T item) {
+        if (slots != null && !slots.tryAcquire() && !makeRoom()) return;
+        if (skipped.get() > 0) {
+            // Put the marker where the gap is, if there is room for it
+            long count = skipped.getAndSet(0);
+            if (count > 0 && slots.tryAcquire()) enqueue(skippedMarker.apply(count));
+            else skipped.addAndGet(count);
+        }
+        enqueue(item);
+    }
+
+    /**
+     * Handles an item added while the queue is full.
+     *
+     * @return true if a slot was obtained for the item, false if it is discarded
+     */
+    private boolean makeRoom() {
+        overflowCount.incrementAndGet();
+        return switch (overflowPolicy) {
+            case BLOCK -> {
+                long start = System.nanoTime();
+                try {
+                    slots.acquire();
+                    yield true;
+                } catch (InterruptedException e) {
+                    // The producer is being stopped, e.g. its subscription was closed
+                    Thread.currentThread().interrupt();
+                    droppedCount.incrementAndGet();
+                    yield false;
+                } finally {
+                    blockedNanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+            case DROP_OLDEST -> {
+                do {
+                    if (queue.poll() != null) {
+                        // Take over the slot of the dropped item
+                        queued.decrementAndGet();
+                        droppedCount.incrementAndGet();
+                        yield true;
+                    }
+                } while (!slots.tryAcquire());
+                yield true;
+            }
+            case COLLAPSE -> {
+                skipped.incrementAndGet();
+                droppedCount.incrementAndGet();
+                scheduleFlush(queued.get());
+                yield false;
+            }
+        };
+    }
+
+    private void enqueue(T item) {
+        queue.add(item);
+        scheduleFlush(queued.incrementAndGet());
+    }
+
+    private void scheduleFlush(int waiting) {
+        if (flushPending.compareAndSet(false, true)) {
+            if (flushIntervalNanos == 0 || waiting >= maxBatchSize) {
+                deliveryExecutor.execute(this::flush);
+            } else {
+                TIMER.schedule(() -> deliveryExecutor.execute(this::flush),
+                        flushIntervalNanos, TimeUnit.NANOSECONDS);
+            }
+        } else if (flushIntervalNanos > 0 && waiting == maxBatchSize) {
+            // A full batch is waiting; don't hold it back until the timer fires
+            deliveryExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * Discards all items that have not been delivered yet.
+     */
+    public void clear() {
+        int cleared = 0;
+        while (queue.poll() != null) {
+            queued.decrementAndGet();
+            cleared++;
+        }
+        skipped.set(0);
+        if (slots != null) slots.release(cleared);
+    }
+
+    /**
+     * @return number of items waiting for delivery
+     */
+    public int pending() {
+        return queued.get();
+    }
+
+    /**
+     * Drains up to {@code maxBatchSize} items and hands them to the sink.
+     * Reschedules itself if more items are still waiting.
+     */
+    private void flush() {
+        List<T> batch = new ArrayList<>(Math.min(queued.get(), maxBatchSize));
+        T item;
+        while (batch.size() < maxBatchSize && (item = queue.poll()) != null) {
+            batch.add(item);
+        }
+        queued.addAndGet(-batch.size());
+        if (slots != null) slots.release(batch.size());
+        if (queue.isEmpty() && skipped.get() > 0 && batch.size() < maxBatchSize) {
+            // Nothing arrived after the skipped items; report them at the end
+            long count = skipped.getAndSet(0);
+            if (count > 0) batch.add(skippedMarker.apply(count));
+        }
+
+        flushPending.set(false);
+        if ((!queue.isEmpty() || skipped.get() > 0) && flushPending.compareAndSet(false, true)) {
+            deliveryExecutor.execute(this::flush);
+        }
+
+        if (batch.isEmpty()) return;
+        flushCount.incrementAndGet();
+        deliveredCount.addAndGet(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        sink.accept(batch);
+    }
+
+    /**
+     * Returns a snapshot of the delivery statistics collected so far.
+     */
+    public Stats stats() {
+        double elapsedSeconds = (System.nanoTime() - createdNanos) / 1_000_000_000.0;
+        return new Stats(flushCount.get(), deliveredCount.get(), largestBatch.get(), queued.get(),
+                overflowCount.get(), droppedCount.get(), blockedNanos.get(), elapsedSeconds);
+    }
+
+    /**
+     * Delivery statistics of a {@link MessageBatcher}.
+     *
+     * @param flushes        number of batches handed to the sink
+     * @param delivered      total number of items delivered
+     * @param largestBatch   size of the largest batch so far
+     * @param pending        items waiting for the next flush
+     * @param overflows      items added while the queue was full
+     * @param dropped        items discarded because the queue was full; skipped-markers are not included
+     * @param blockedNanos   total time producers waited for room under {@link OverflowPolicy#BLOCK}
+     * @param elapsedSeconds time since the batcher was created
+     */
+    public record Stats(long flushes, long delivered, long largestBatch, int pending,
+                        long overflows, long dropped, long blockedNanos, double elapsedSeconds) {
+
+        /** @return average number of items per flush */
+        public double averageBatchSize() {
+            return flushes == 0 ? 0 : (double) delivered / flushes;
+        }
+
+        /** @return flushes per second since creation */
+        public double flushRate() {
+            return elapsedSeconds == 0 ? 0 : flushes / elapsedSeconds;
+        }
+
+        /** @return delivered items per second since creation */
+        public double deliveryRate() {
+            return elapsedSeconds == 0 ? 0 : delivered / elapsedSeconds;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.OverrunStyle;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+
+import java.util.function.Function;
+
+/**
+ * List cell showing a message as time, topic, body and delivery status on one line.
+ * <p>
+ * The labels are created once per cell and only their text changes when the cell
+ * is reused for another message; the strings come from a shared
+ * {@link MessageDisplayCache}, so scrolling neither formats nor allocates text.
+ * Use together with {@link javafx.scene.control.ListView#setFixedCellSize(double)}
+ * so the list does not have to measure cells while scrolling.
+ */
+public class MessageCell extends ListCell<NtfyMessageDto> {
+
+    /** Height of a message row, for {@link javafx.scene.control.ListView#setFixedCellSize(double)}. */
+    public static final double HEIGHT = 28;
+
+    private final MessageDisplayCache displayCache;
+    private final Function<NtfyMessageDto, DeliveryStatus> statusLookup;
+    private final Label time = new Label();
+    private final Label topic = new Label();
+    private final Label body = new Label();
+    private final Label status = new Label();
+    private final HBox row = new HBox(8, time, topic, body, status);
+
+    /**
+     * @param displayCache cache shared by all cells of the list
+     * @param statusLookup returns the delivery status of a message, or {@code null} for received ones
+     */
+    public MessageCell(MessageDisplayCache displayCache, Function<NtfyMessageDto, DeliveryStatus> statusLookup) {
+        this.displayCache = displayCache;
+        this.statusLookup = statusLookup;
+        time.setStyle("-fx-text-fill: gray;");
+        topic.setStyle("-fx-text-fill: steelblue;");
+        body.setTextOverrun(OverrunStyle.ELLIPSIS);
+        body.setMinWidth(0);
+        body.setMaxWidth(Double.MAX_VALUE);
+        HBox.setHgrow(body, Priority.ALWAYS);
+        row.setAlignment(Pos.CENTER_LEFT);
+        setText(null);
+    }
+
+    @Override
+    protected void updateItem(NtfyMessageDto item, boolean empty) {
+        super.updateItem(item, empty);
+        if (empty || item == null) {
+            setGraphic(null);
+            return;
+        }
+        MessageDisplayCache.Display display = displayCache.get(item);
+        time.setText(display.time());
+        topic.setText(display.topic());
+        body.setText(display.body());
+        status.setText(statusText(statusLookup.apply(item)));
+        setGraphic(row);
+    }
+
+    private static String statusText(DeliveryStatus status) {
+        if (status == null) return "";
+        return switch (status) {
+            case PENDING -> "⏳";
+            case DELIVERED -> "✓";
+            case FAILED -> "⚠ not sent";
+        };
+    }
+}
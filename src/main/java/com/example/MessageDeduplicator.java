@@ -0,0 +1,213 @@
+package com.example;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Remembers recently seen message ids to drop messages that arrive twice, e.g.
+ * after a reconnect with {@code since=} or from overlapping streams.
+ * <p>
+ * Ids are stored as 64-bit FNV-1a fingerprints in an open-addressing table of
+ * primitive longs with linear probing, so a check hashes the id's characters in
+ * place and allocates nothing. Entries expire after {@code window}; when more than
+ * {@code capacity} ids are younger than that, the oldest are forgotten first. Both
+ * are tracked by a ring of fingerprints and timestamps in insertion order.
+ * <p>
+ * Two different ids share a fingerprint with a probability of about
+ * {@code capacity / 2^64}, in which case the second one would be dropped.
+ * All methods are thread-safe.
+ */
+public class MessageDeduplicator {
+
+    /** Marks an empty table slot; real fingerprints are never zero. */
+    private static final long EMPTY = 0;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long windowMillis;
+    private final Clock clock;
+    /** Fingerprints; twice the capacity rounded up to a power of two, so the load stays at or below 50%. */
+    private final long[] table;
+    private final int mask;
+    /** Fingerprints and times in insertion order, oldest at {@code head}. */
+    private final long[] ringFingerprints;
+    private final long[] ringTimes;
+    private int head;
+    private int size;
+
+    private long checks;
+    private long duplicates;
+
+    /**
+     * Creates a deduplicator that only forgets ids when capacity runs out.
+     *
+     * @param capacity maximum number of remembered ids
+     */
+    public MessageDeduplicator(int capacity) {
+        this(capacity, Duration.ofMillis(Long.MAX_VALUE), Clock.systemUTC());
+    }
+
+    /**
+     * Creates a deduplicator that also forgets ids after a time window.
+     *
+     * @param capacity maximum number of remembered ids
+     * @param window   how long an id is remembered
+     */
+    public MessageDeduplicator(int capacity, Duration window) {
+        this(capacity, window, Clock.systemUTC());
+    }
+
+    /**
+     * Creates a deduplicator with an explicit clock, mainly for tests.
+     *
+     * @param capacity maximum number of remembered ids
+     * @param window   how long an id is remembered
+     * @param clock    source of the current time
+     */
+    public MessageDeduplicator(int capacity, Duration window, Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.windowMillis = window.toMillis();
+        this.clock = clock;
+        int tableSize = Integer.highestOneBit(Math.max(capacity * 2 - 1, 1)) << 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.ringFingerprints = new long[capacity];
+        this.ringTimes = new long[capacity];
+    }
+
+    /**
+     * Checks whether the id was seen within the window, and remembers it if not.
+     *
+     * @param id a message id; {@code null} is never a duplicate and not remembered
+     * @return true if the message should be dropped
+     */
+    public synchronized boolean isDuplicate(String id) {
+        if (id == null) return false;
+        checks++;
+        if (addIfAbsent(id)) return false;
+        duplicates++;
+        return true;
+    }
+
+    /**
+     * Remembers an id without counting it in the statistics, e.g. for messages
+     * loaded from local history.
+     *
+     * @param id a message id; {@code null} is ignored
+     */
+    public synchronized void remember(String id) {
+        if (id != null) addIfAbsent(id);
+    }
+
+    /**
+     * Forgets all ids. Statistics are kept.
+     */
+    public synchronized void clear() {
+        Arrays.fill(table, EMPTY);
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns a snapshot of the statistics collected so far.
+     */
+    public synchronized Stats stats() {
+        return new Stats(checks, duplicates, size);
+    }
+
+    /**
+     * Deduplication statistics.
+     *
+     * @param checks     number of ids checked
+     * @param duplicates number of ids reported as duplicates
+     * @param size       number of ids currently remembered
+     */
+    public record Stats(long checks, long duplicates, int size) {
+
+        /** @return fraction of checked ids that were duplicates, or 0 if none were checked */
+        public double hitRate() {
+            return checks == 0 ? 0 : (double) duplicates / checks;
+        }
+    }
+
+    /**
+     * @return false if the id is already remembered
+     */
+    private boolean addIfAbsent(String id) {
+        long now = clock.millis();
+        expire(now);
+        long fingerprint = fingerprint(id);
+        int slot = slotOf(fingerprint);
+        if (table[slot] == fingerprint) return false;
+        if (size == ringFingerprints.length) {
+            evictOldest();
+            slot = slotOf(fingerprint);
+        }
+        table[slot] = fingerprint;
+        int tail = (head + size) % ringFingerprints.length;
+        ringFingerprints[tail] = fingerprint;
+        ringTimes[tail] = now;
+        size++;
+        return true;
+    }
+
+    private void expire(long now) {
+        while (size > 0 && now - ringTimes[head] > windowMillis) {
+            evictOldest();
+        }
+    }
+
+    private void evictOldest() {
+        delete(ringFingerprints[head]);
+        head = (head + 1) % ringFingerprints.length;
+        size--;
+    }
+
+    /**
+     * Returns the slot holding the fingerprint, or the empty slot where it belongs.
+     */
+    private int slotOf(long fingerprint) {
+        int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+        while (table[slot] != EMPTY && table[slot] != fingerprint) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes a fingerprint and shifts later entries of its probe sequence back,
+     * so lookups never stop early at the gap.
+     */
+    private void delete(long fingerprint) {
+        int slot = slotOf(fingerprint);
+        if (table[slot] == EMPTY) return;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (table[next] != EMPTY) {
+            int home = (int) (table[next] ^ (table[next] >>> 32)) & mask;
+            // Move the entry into the gap unless its home lies cyclically within (gap, next]
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                table[gap] = table[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[gap] = EMPTY;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of the id; never returns {@link #EMPTY}.
+     */
+    static long fingerprint(String id) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            hash = (hash ^ (c & 0xff)) * FNV_PRIME;
+            hash = (hash ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -0,0 +1,130 @@
+package com.example;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Computes the display form of a message once and keeps it, keyed by message id,
+ * so cells scrolled back into view reuse the same strings instead of formatting
+ * the timestamp and body again.
+ * <p>
+ * The cache is bounded and evicts the least recently displayed entries. It is
+ * meant to be used from the JavaFX thread only.
+ */
+public class MessageDisplayCache {
+
+    /** Default number of cached display forms; far more than fit on screen at once. */
+    public static final int DEFAULT_CAPACITY = 4_096;
+    /** Bodies longer than this are truncated with an ellipsis. */
+    public static final int MAX_BODY_LENGTH = 200;
+
+    private final DateTimeFormatter timeFormat;
+    private final Map<String, Display> cache;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache with {@value #DEFAULT_CAPACITY} entries that formats times in the system time zone.
+     */
+    public MessageDisplayCache() {
+        this(DEFAULT_CAPACITY, ZoneId.systemDefault());
+    }
+
+    /**
+     * @param capacity maximum number of cached display forms
+     * @param zone     time zone used to format message times
+     */
+    public MessageDisplayCache(int capacity, ZoneId zone) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.timeFormat = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(zone);
+        this.cache = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Display> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the display form of a message, computing it on first use.
+     * Messages without an id are formatted every time. A message is matched by value,
+     * since {@link MessageHistory} decodes a new record on every access.
+     *
+     * @param message the message to display
+     * @return its display form
+     */
+    public Display get(NtfyMessageDto message) {
+        if (message.id() == null) return format(message);
+        Display display = cache.get(message.id());
+        if (display != null && display.message.equals(message)) {
+            hits++;
+            return display;
+        }
+        misses++;
+        display = format(message);
+        cache.put(message.id(), display);
+        return display;
+    }
+
+    /** @return number of cached display forms */
+    public int size() {
+        return cache.size();
+    }
+
+    /** @return fraction of lookups served from the cache, or 0 if there were none */
+    public double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    private Display format(NtfyMessageDto message) {
+        return new Display(message, timeFormat.format(Instant.ofEpochSecond(message.time())),
+                message.topic() == null ? "" : message.topic(), body(message));
+    }
+
+    /**
+     * Body line of a message; attachments are shown as a paperclip, name and size before the text.
+     */
+    static String body(NtfyMessageDto message) {
+        Attachment attachment = message.attachment();
+        if (attachment == null) return body(message.message());
+        String file = "📎 " + attachment.name() + (attachment.size() > 0 ? " (" + formatSize(attachment.size()) + ")" : "");
+        String text = body(message.message());
+        return text.isEmpty() ? file : file + "  " + text;
+    }
+
+    /**
+     * Formats a byte count with a binary unit, e.g. {@code 1.5 MiB}.
+     */
+    static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        int unit = (63 - Long.numberOfLeadingZeros(bytes)) / 10;
+        return String.format(Locale.ROOT, "%.1f %siB", bytes / (double) (1L << (unit * 10)), "KMGTPE".charAt(unit - 1));
+    }
+
+    /**
+     * Flattens line breaks and truncates long bodies, so every cell is a single line.
+     */
+    static String body(String text) {
+        if (text == null) return "";
+        String line = text.strip().replace("\r\n", " ").replace('\n', ' ').replace('\r', ' ');
+        return line.length() <= MAX_BODY_LENGTH ? line : line.substring(0, MAX_BODY_LENGTH - 1) + "…";
+    }
+
+    /**
+     * Precomputed display strings of one message.
+     *
+     * @param message the message they were computed from
+     * @param time    formatted local time
+     * @param topic   topic the message was published to
+     * @param body    single-line, possibly truncated message body
+     */
+    public record Display(NtfyMessageDto message, String time, String topic, String body) {
+    }
+}
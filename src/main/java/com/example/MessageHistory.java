@@ -0,0 +1,387 @@
+package com.example;
+
+import javafx.collections.ModifiableObservableListBase;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Observable message list backed by a growable ring buffer of compact columns.
+ * <p>
+ * Appending and removing at either end are O(1). After every update the
+ * {@link RetentionPolicy} is applied by evicting messages from the head, and
+ * the additions and evictions are reported to listeners as one combined change.
+ * This keeps a long-running subscription bounded without the
+ * {@code ArrayList.remove(0)} cost of a plain observable list.
+ * <p>
+ * Messages are not kept as {@link NtfyMessageDto} records. Each one is a slot in
+ * parallel arrays: its time as a {@code long}, its topic and event as codes into
+ * this history's table of names, and its id and body as one UTF-8 {@code byte[]}.
+ * The table is emptied whenever the history is; should it ever fill up, further
+ * names are kept as strings in an extra column. {@link #get(int)} decodes a new record on every call, so
+ * elements are equal to, but not the same instances as, the messages added.
+ * Only the few messages shown in a {@code ListView} are decoded at any time.
+ */
+public class MessageHistory extends ModifiableObservableListBase<NtfyMessageDto> {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /** Topic and event names; there are few distinct values per history. */
+    private final NameTable names = new NameTable();
+
+    private final Clock clock;
+    private RetentionPolicy policy;
+
+    // Ring buffer columns; list index i is stored at slot(i) of each
+    private long[] times = new long[INITIAL_CAPACITY];
+    /** Topic code in the high and event code in the low 16 bits. */
+    private int[] labels = new int[INITIAL_CAPACITY];
+    /** Id and body in UTF-8, see {@link #encode(NtfyMessageDto)}. */
+    private byte[][] payloads = new byte[INITIAL_CAPACITY][];
+    /** Attachments; {@code null} until the first message with an attachment is added. */
+    private Attachment[] attachments;
+    /**
+     * Topic and event of messages whose names did not fit in the name table;
+     * {@code null} until the table is full.
+     */
+    private String[][] rawNames;
+    private int head;
+    private int size;
+    private long retainedBytes;
+
+    /**
+     * Creates an empty history with the given retention policy.
+     *
+     * @param policy limits applied after every update
+     */
+    public MessageHistory(RetentionPolicy policy) {
+        this(policy, Clock.systemUTC());
+    }
+
+    /**
+     * Creates an empty history using the given clock for age-based eviction.
+     *
+     * @param policy limits applied after every update
+     * @param clock  source of the current time
+     */
+    public MessageHistory(RetentionPolicy policy, Clock clock) {
+        this.policy = Objects.requireNonNull(policy);
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /** @return the active retention policy */
+    public RetentionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Replaces the retention policy and evicts messages that no longer fit.
+     *
+     * @param policy the new policy
+     */
+    public void setPolicy(RetentionPolicy policy) {
+        this.policy = Objects.requireNonNull(policy);
+        trim();
+    }
+
+    /** @return estimated heap size of all retained messages */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * Evicts messages that violate the retention policy, e.g. because they
+     * have aged out since the last update.
+     */
+    public void trim() {
+        beginChange();
+        try {
+            evict();
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Finds the most recent message with the given id without decoding the others.
+     *
+     * @param id the message id
+     * @return its index, or -1 if there is none
+     */
+    public int lastIndexOfId(String id) {
+        byte[] wanted = id.getBytes(StandardCharsets.UTF_8);
+        for (int i = size - 1; i >= 0; i--) {
+            byte[] payload = payloads[slot(i)];
+            int header = header(payload);
+            if ((header >>> 1) != wanted.length + 1) continue;
+            int start = headerLength(header);
+            if (Arrays.equals(payload, start, start + wanted.length, wanted, 0, wanted.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends NtfyMessageDto> c) {
+        beginChange();
+        try {
+            // Eviction runs after every element, so never grow past the count limit
+            ensureCapacity((int) Math.min((long) size + c.size(), policy.maxCount() + 1L));
+            return super.addAll(c);
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public void add(int index, NtfyMessageDto element) {
+        beginChange();
+        try {
+            super.add(index, element);
+            evict();
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public NtfyMessageDto get(int index) {
+        Objects.checkIndex(index, size);
+        return decode(slot(index));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    protected void doAdd(int index, NtfyMessageDto element) {
+        Objects.requireNonNull(element);
+        ensureCapacity(size + 1);
+        int slot;
+        if (index == size) {
+            slot = slot(size);
+        } else if (index == 0) {
+            head = (head - 1) & (times.length - 1);
+            slot = head;
+        } else {
+            for (int i = size; i > index; i--) {
+                move(slot(i - 1), slot(i));
+            }
+            slot = slot(index);
+        }
+        store(slot, element);
+        size++;
+        retainedBytes += RetentionPolicy.estimateSize(element);
+    }
+
+    @Override
+    protected NtfyMessageDto doSet(int index, NtfyMessageDto element) {
+        Objects.requireNonNull(element);
+        int slot = slot(index);
+        NtfyMessageDto old = decode(slot);
+        store(slot, element);
+        retainedBytes += RetentionPolicy.estimateSize(element) - RetentionPolicy.estimateSize(old);
+        return old;
+    }
+
+    @Override
+    protected NtfyMessageDto doRemove(int index) {
+        NtfyMessageDto removed = decode(slot(index));
+        if (index == 0) {
+            clearSlot(head);
+            head = (head + 1) & (times.length - 1);
+        } else {
+            for (int i = index; i < size - 1; i++) {
+                move(slot(i + 1), slot(i));
+            }
+            clearSlot(slot(size - 1));
+        }
+        size--;
+        retainedBytes -= RetentionPolicy.estimateSize(removed);
+        if (size == 0) {
+            // No slot refers to a name any more
+            names.clear();
+            rawNames = null;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes messages from the head until the retention policy is satisfied.
+     * Must be called between {@code beginChange()} and {@code endChange()}.
+     */
+    private void evict() {
+        long minTime = policy.maxAge() == null ? Long.MIN_VALUE
+                : clock.instant().minus(policy.maxAge()).getEpochSecond();
+        while (size > 0 && (size > policy.maxCount()
+                || retainedBytes > policy.maxBytes()
+                || times[head] < minTime)) {
+            nextRemove(0, doRemove(0));
+        }
+    }
+
+    private int slot(int index) {
+        return (head + index) & (times.length - 1);
+    }
+
+    private void store(int slot, NtfyMessageDto message) {
+        times[slot] = message.time();
+        int topic = names.code(message.topic());
+        int event = names.code(message.event());
+        labels[slot] = topic << 16 | event;
+        if (topic == NameTable.FULL || event == NameTable.FULL) {
+            if (rawNames == null) rawNames = new String[times.length][];
+            rawNames[slot] = new String[]{message.topic(), message.event()};
+        } else if (rawNames != null) {
+            rawNames[slot] = null;
+        }
+        payloads[slot] = encode(message);
+        if (message.attachment() != null && attachments == null) {
+            attachments = new Attachment[times.length];
+        }
+        if (attachments != null) attachments[slot] = message.attachment();
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        labels[to] = labels[from];
+        payloads[to] = payloads[from];
+        if (attachments != null) attachments[to] = attachments[from];
+        if (rawNames != null) rawNames[to] = rawNames[from];
+    }
+
+    private void clearSlot(int slot) {
+        payloads[slot] = null;
+        if (attachments != null) attachments[slot] = null;
+        if (rawNames != null) rawNames[slot] = null;
+    }
+
+    /**
+     * Reads the varint header of a payload: (id length + 1) << 1 | body is null, where
+     * an id length of -1 is a null id.
+     */
+    private static int header(byte[] payload) {
+        int header = 0;
+        int pos = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = payload[pos++];
+            header |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return header;
+    }
+
+    /** @return number of bytes of the header as a varint */
+    private static int headerLength(int header) {
+        int length = 1;
+        for (int rest = header >>> 7; rest != 0; rest >>>= 7) length++;
+        return length;
+    }
+
+    private NtfyMessageDto decode(int slot) {
+        byte[] payload = payloads[slot];
+        int header = header(payload);
+        int pos = headerLength(header);
+        int idLength = (header >>> 1) - 1;
+        String id = idLength < 0 ? null : new String(payload, pos, idLength, StandardCharsets.UTF_8);
+        pos += Math.max(idLength, 0);
+        String body = (header & 1) != 0 ? null : new String(payload, pos, payload.length - pos, StandardCharsets.UTF_8);
+        int label = labels[slot];
+        String[] raw = rawNames == null ? null : rawNames[slot];
+        String topic = raw != null ? raw[0] : names.name(label >>> 16);
+        String event = raw != null ? raw[1] : names.name(label & 0xFFFF);
+        return new NtfyMessageDto(id, times[slot], event, topic, body,
+                attachments == null ? null : attachments[slot]);
+    }
+
+    /**
+     * Encodes id and body as a varint header followed by both in UTF-8.
+     */
+    private static byte[] encode(NtfyMessageDto message) {
+        byte[] id = message.id() == null ? new byte[0] : message.id().getBytes(StandardCharsets.UTF_8);
+        byte[] body = message.message() == null ? new byte[0] : message.message().getBytes(StandardCharsets.UTF_8);
+        int header = (message.id() == null ? 0 : id.length + 1) << 1 | (message.message() == null ? 1 : 0);
+        byte[] payload = new byte[headerLength(header) + id.length + body.length];
+        int pos = 0;
+        while ((header & ~0x7F) != 0) {
+            payload[pos++] = (byte) ((header & 0x7F) | 0x80);
+            header >>>= 7;
+        }
+        payload[pos++] = (byte) header;
+        System.arraycopy(id, 0, payload, pos, id.length);
+        System.arraycopy(body, 0, payload, pos + id.length, body.length);
+        return payload;
+    }
+
+    /**
+     * Grows the columns to the next power of two that fits {@code required}
+     * elements, unwrapping the ring so the head is at index 0.
+     */
+    private void ensureCapacity(int required) {
+        if (required <= times.length) return;
+        int capacity = Integer.highestOneBit(required - 1) << 1;
+        long[] grownTimes = new long[capacity];
+        int[] grownLabels = new int[capacity];
+        byte[][] grownPayloads = new byte[capacity][];
+        Attachment[] grownAttachments = attachments == null ? null : new Attachment[capacity];
+        String[][] grownRawNames = rawNames == null ? null : new String[capacity][];
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            grownTimes[i] = times[slot];
+            grownLabels[i] = labels[slot];
+            grownPayloads[i] = payloads[slot];
+            if (grownAttachments != null) grownAttachments[i] = attachments[slot];
+            if (grownRawNames != null) grownRawNames[i] = rawNames[slot];
+        }
+        times = grownTimes;
+        labels = grownLabels;
+        payloads = grownPayloads;
+        attachments = grownAttachments;
+        rawNames = grownRawNames;
+        head = 0;
+    }
+
+    /**
+     * Assigns 16-bit codes to topic and event names. Code 0 stands for {@code null}
+     * and {@link #FULL} for a name that did not fit.
+     */
+    private static final class NameTable {
+
+        static final int FULL = 0xFFFF;
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] names = new String[16];
+        private int next = 1;
+
+        int code(String name) {
+            if (name == null) return 0;
+            Integer code = codes.get(name);
+            if (code != null) return code;
+            if (next == FULL) return FULL;
+            if (next == names.length) names = Arrays.copyOf(names, names.length * 2);
+            names[next] = name;
+            codes.put(name, next);
+            return next++;
+        }
+
+        String name(int code) {
+            return names[code];
+        }
+
+        void clear() {
+            codes.clear();
+            names = new String[16];
+            next = 1;
+        }
+    }
+}
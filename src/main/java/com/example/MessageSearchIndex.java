@@ -0,0 +1,407 @@
+package com.example;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Incremental inverted index over a list of messages, answering search queries
+ * without scanning the list.
+ * <p>
+ * The index follows its source list through a {@link ListChangeListener} and indexes
+ * messages as they are added. It keeps no messages itself, only positions: every
+ * element has an increasing position, list index plus an offset, and each term maps
+ * to the sorted positions of the messages containing it, so results come back in
+ * arrival order and only the matching messages are fetched from the list. Evictions
+ * from the head (e.g. by a {@link RetentionPolicy}) just advance the offset; postings
+ * below it are skipped and dropped lazily. Appends, evictions and in-place
+ * replacements are incremental; any other change, such as an insertion in the middle,
+ * re-indexes the list.
+ * <p>
+ * Query syntax, see {@link #parse(String)}: words must all occur (case-insensitive),
+ * a word ending in {@code *} matches as a prefix, and {@code topic:name} restricts
+ * the topic. The last word is also treated as a prefix, so results update while typing.
+ * <p>
+ * Must be used on the thread that modifies the source list, normally the JavaFX thread.
+ */
+public class MessageSearchIndex {
+
+    private final ObservableList<NtfyMessageDto> source;
+    private final ListChangeListener<NtfyMessageDto> listener = this::update;
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Postings> topics = new HashMap<>();
+    /** Position of the element at list index 0. */
+    private long offset;
+    /** Offset when stale postings were last swept out. */
+    private long sweptOffset;
+
+    /**
+     * Indexes the current contents of the list and follows its changes.
+     *
+     * @param source the messages to index
+     */
+    public MessageSearchIndex(ObservableList<NtfyMessageDto> source) {
+        this.source = source;
+        rebuild();
+        source.addListener(listener);
+    }
+
+    /**
+     * Stops following the source list and releases the index.
+     */
+    public void close() {
+        source.removeListener(listener);
+        clear();
+    }
+
+    /**
+     * Parses a query: whitespace-separated words that must all occur in the message body,
+     * optional trailing {@code *} for prefix words, and {@code topic:name} for the topic.
+     * The last word is matched as a prefix.
+     *
+     * @param text the query text
+     * @return the parsed query; empty if {@code text} is blank
+     */
+    public static Query parse(String text) {
+        List<String> words = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        String topic = null;
+        if (text == null) return new Query(words, prefixes, null);
+        String[] parts = text.trim().split("\\s+");
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i];
+            if (part.isEmpty()) continue;
+            if (part.startsWith("topic:")) {
+                if (part.length() > 6) topic = part.substring(6);
+                continue;
+            }
+            boolean prefix = part.endsWith("*") || i == parts.length - 1;
+            for (String token : tokenize(part.endsWith("*") ? part.substring(0, part.length() - 1) : part)) {
+                (prefix ? prefixes : words).add(token);
+            }
+        }
+        return new Query(words, prefixes, topic);
+    }
+
+    /**
+     * Finds the indexed messages matching a query.
+     *
+     * @param query the query text, see {@link #parse(String)}
+     * @return matching messages in arrival order; empty if the query is blank
+     */
+    public List<NtfyMessageDto> search(String query) {
+        return search(parse(query));
+    }
+
+    /**
+     * Finds the indexed messages matching a query.
+     *
+     * @param query the parsed query
+     * @return matching messages in arrival order; empty if the query is empty
+     */
+    public List<NtfyMessageDto> search(Query query) {
+        if (query.isEmpty()) return List.of();
+        List<Postings> candidates = new ArrayList<>();
+        if (query.topic() != null) {
+            candidates.add(topics.getOrDefault(query.topic(), Postings.EMPTY));
+        }
+        for (String word : query.words()) {
+            candidates.add(terms.getOrDefault(word, Postings.EMPTY));
+        }
+        for (String prefix : query.prefixes()) {
+            candidates.add(union(terms.subMap(prefix, prefix + Character.MAX_VALUE)));
+        }
+        candidates.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        // Check every entry of the shortest list against the others
+        Postings smallest = candidates.getFirst();
+        List<NtfyMessageDto> result = new ArrayList<>(smallest.size());
+        outer:
+        for (int i = smallest.firstLive(offset); i < smallest.end; i++) {
+            long position = smallest.positions[i];
+            for (int c = 1; c < candidates.size(); c++) {
+                if (!candidates.get(c).contains(position)) continue outer;
+            }
+            result.add(source.get((int) (position - offset)));
+        }
+        return result;
+    }
+
+    /**
+     * Checks a single message against a query without using the index, e.g. for
+     * messages that arrive while a search is shown.
+     *
+     * @param message the message
+     * @param query   the parsed query
+     * @return true if the message matches; false for an empty query
+     */
+    public static boolean matches(NtfyMessageDto message, Query query) {
+        if (query.isEmpty()) return false;
+        if (query.topic() != null && !query.topic().equals(message.topic())) return false;
+        List<String> tokens = tokenize(message.message());
+        for (String word : query.words()) {
+            if (!tokens.contains(word)) return false;
+        }
+        for (String prefix : query.prefixes()) {
+            if (tokens.stream().noneMatch(token -> token.startsWith(prefix))) return false;
+        }
+        return true;
+    }
+
+    /** @return number of indexed messages */
+    public int size() {
+        return source.size();
+    }
+
+    /** @return number of distinct terms, including those of evicted messages not yet swept out */
+    public int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Applies a list change. Sub-changes are ordered by index and refer to the list after
+     * the change, so an eviction at the head comes first and moves the offset before
+     * the positions of appended messages are computed.
+     */
+    private void update(ListChangeListener.Change<? extends NtfyMessageDto> change) {
+        boolean first = true;
+        while (change.next()) {
+            int from = change.getFrom();
+            int removed = change.getRemovedSize();
+            int added = change.getAddedSize();
+            if (change.wasPermutated()) {
+                rebuild();
+                return;
+            } else if (change.wasUpdated()) {
+                // Same messages at the same positions
+            } else if (first && from == 0 && removed > 0 && (added == 0 || added == source.size())) {
+                // Evicted from the head, possibly replacing the whole list
+                offset += removed;
+                index(change.getAddedSubList(), 0);
+            } else if (removed == added) {
+                List<? extends NtfyMessageDto> old = change.getRemoved();
+                for (int i = 0; i < removed; i++) {
+                    unindex(old.get(i), offset + from + i);
+                }
+                index(change.getAddedSubList(), from);
+            } else if (removed == 0 && from + added == source.size()) {
+                index(change.getAddedSubList(), from);
+            } else {
+                rebuild();
+                return;
+            }
+            first = false;
+        }
+        sweep();
+    }
+
+    /** Indexes messages found at {@code from} and the following list indexes. */
+    private void index(List<? extends NtfyMessageDto> messages, int from) {
+        for (int i = 0; i < messages.size(); i++) {
+            NtfyMessageDto message = messages.get(i);
+            long position = offset + from + i;
+            for (String term : distinct(tokenize(message.message()))) {
+                terms.computeIfAbsent(term, t -> new Postings()).add(position);
+            }
+            if (message.topic() != null) {
+                topics.computeIfAbsent(message.topic(), t -> new Postings()).add(position);
+            }
+        }
+    }
+
+    private void unindex(NtfyMessageDto message, long position) {
+        for (String term : distinct(tokenize(message.message()))) {
+            removePosting(terms, term, position);
+        }
+        if (message.topic() != null) {
+            removePosting(topics, message.topic(), position);
+        }
+    }
+
+    private void rebuild() {
+        clear();
+        offset = 0;
+        sweptOffset = 0;
+        index(source, 0);
+    }
+
+    /**
+     * Drops postings of evicted messages, and terms that only they contained, once as
+     * many messages have been evicted since the last sweep as the list holds, which
+     * keeps the amortized cost per eviction constant.
+     */
+    private void sweep() {
+        if (source.isEmpty()) {
+            clear();
+            sweptOffset = offset;
+            return;
+        }
+        if (offset - sweptOffset < Math.max(source.size(), 1_024)) return;
+        sweptOffset = offset;
+        sweep(terms);
+        sweep(topics);
+    }
+
+    private void sweep(Map<String, Postings> map) {
+        map.values().removeIf(postings -> {
+            postings.start = postings.firstLive(offset);
+            return postings.isEmpty();
+        });
+    }
+
+    private void clear() {
+        terms.clear();
+        topics.clear();
+    }
+
+    private static void removePosting(Map<String, Postings> map, String key, long position) {
+        Postings postings = map.get(key);
+        if (postings == null) return;
+        postings.remove(position);
+        if (postings.isEmpty()) map.remove(key);
+    }
+
+    /**
+     * Merges the postings of all terms sharing a prefix into one sorted list without duplicates.
+     */
+    private static Postings union(SortedMap<String, Postings> matching) {
+        if (matching.isEmpty()) return Postings.EMPTY;
+        if (matching.size() == 1) return matching.values().iterator().next();
+        int total = 0;
+        for (Postings postings : matching.values()) total += postings.size();
+        long[] all = new long[total];
+        int n = 0;
+        for (Postings postings : matching.values()) {
+            System.arraycopy(postings.positions, postings.start, all, n, postings.size());
+            n += postings.size();
+        }
+        Arrays.sort(all);
+        int distinct = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (i == 0 || all[i] != all[i - 1]) all[distinct++] = all[i];
+        }
+        return new Postings(all, distinct);
+    }
+
+    /**
+     * Splits text into lower-case runs of letters and digits.
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static List<String> distinct(List<String> tokens) {
+        return tokens.size() < 2 ? tokens : tokens.stream().distinct().toList();
+    }
+
+    /**
+     * A parsed query.
+     *
+     * @param words    terms that must occur exactly
+     * @param prefixes prefixes that must each start some term
+     * @param topic    required topic, or {@code null} for any
+     */
+    public record Query(List<String> words, List<String> prefixes, String topic) {
+
+        /** @return true if the query has no conditions */
+        public boolean isEmpty() {
+            return words.isEmpty() && prefixes.isEmpty() && topic == null;
+        }
+    }
+
+    /**
+     * Sorted positions of the messages containing a term. Positions are mostly appended
+     * in increasing order and the oldest become stale first, so the range
+     * {@code [start, end)} slides forward through the array; positions below the
+     * index's offset at its head are stale until {@link #sweep()} drops them.
+     */
+    private static final class Postings {
+        static final Postings EMPTY = new Postings(new long[0], 0);
+
+        private long[] positions;
+        private int start;
+        private int end;
+
+        Postings() {
+            this(new long[4], 0);
+        }
+
+        Postings(long[] positions, int size) {
+            this.positions = positions;
+            this.end = size;
+        }
+
+        void add(long position) {
+            if (end == positions.length) {
+                // Reuse the array if the removed head freed enough room, otherwise grow
+                int size = end - start;
+                long[] target = start > positions.length / 2 ? positions : new long[positions.length * 2];
+                System.arraycopy(positions, start, target, 0, size);
+                positions = target;
+                start = 0;
+                end = size;
+            }
+            if (start == end || positions[end - 1] < position) {
+                positions[end++] = position;
+                return;
+            }
+            // A message replaced in place
+            int index = Arrays.binarySearch(positions, start, end, position);
+            if (index >= 0) return;
+            index = -index - 1;
+            System.arraycopy(positions, index, positions, index + 1, end - index);
+            positions[index] = position;
+            end++;
+        }
+
+        void remove(long position) {
+            if (start < end && positions[start] == position) {
+                start++;
+                return;
+            }
+            int index = Arrays.binarySearch(positions, start, end, position);
+            if (index < 0) return;
+            System.arraycopy(positions, index + 1, positions, index, end - index - 1);
+            end--;
+        }
+
+        boolean contains(long position) {
+            return Arrays.binarySearch(positions, start, end, position) >= 0;
+        }
+
+        /** @return array index of the first position at or above {@code offset} */
+        int firstLive(long offset) {
+            if (start == end || positions[start] >= offset) return start;
+            int index = Arrays.binarySearch(positions, start, end, offset);
+            return index >= 0 ? index : -index - 1;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        boolean isEmpty() {
+            return start == end;
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent, append-only message history per topic.
+ * <p>
+ * Each topic has a log file of length-prefixed records and an index file holding
+ * the start offset of every record as an 8-byte long. Appends go through a
+ * {@link FileChannel}; reads map both files into memory, so loading the most recent
+ * messages of a topic only touches the tail of the index and the matching records.
+ * <p>
+ * A topic log is compacted once it grows beyond {@code maxBytesPerTopic}: the newest
+ * records that fit into half the limit and are younger than {@code maxAge} are
+ * rewritten into fresh files. A log whose oldest record is older than {@code maxAge}
+ * is compacted when it is opened, and older records are never returned, so quiet
+ * topics age out as well. Only the most recently used topics keep their files
+ * open; the others are closed and reopened on their next use. The index is derived from the log: when a log is
+ * opened, a torn tail from a crash is truncated and an index that no longer matches
+ * the log, e.g. after a crash during compaction, is rebuilt.
+ */
+public class MessageStore implements Closeable {
+
+    /** Default size cap of a single topic log. */
+    public static final long DEFAULT_MAX_BYTES_PER_TOPIC = 8L * 1024 * 1024;
+    /** Default age after which messages are dropped during compaction. */
+    public static final Duration DEFAULT_MAX_AGE = Duration.ofDays(30);
+    /** Default number of topics whose files are kept open. */
+    public static final int DEFAULT_MAX_OPEN_TOPICS = 32;
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    /** Size of a record without its length prefix and string contents. */
+    private static final int MIN_RECORD_LENGTH = 8 + 4 + 4;
+    /** Size of the attachment part of a record without its string contents. */
+    private static final int ATTACHMENT_LENGTH = 4 + 4 + 8 + 8 + 4;
+
+    private final Path directory;
+    private final long maxBytesPerTopic;
+    private final Duration maxAge;
+    /** Open topic logs, least recently used first. Guarded by {@code this}. */
+    private final Map<String, TopicLog> logs;
+
+    /**
+     * Opens a store with the default size and age limits.
+     *
+     * @param directory directory holding the topic files; created if missing
+     * @throws IOException if the directory cannot be created
+     */
+    public MessageStore(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES_PER_TOPIC, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Opens a store with explicit limits.
+     *
+     * @param directory        directory holding the topic files; created if missing
+     * @param maxBytesPerTopic log size that triggers compaction of a topic
+     * @param maxAge           messages older than this are dropped during compaction
+     * @throws IOException if the directory cannot be created
+     */
+    public MessageStore(Path directory, long maxBytesPerTopic, Duration maxAge) throws IOException {
+        this(directory, maxBytesPerTopic, maxAge, DEFAULT_MAX_OPEN_TOPICS);
+    }
+
+    /**
+     * Opens a store with explicit limits and a bound on open files.
+     *
+     * @param directory        directory holding the topic files; created if missing
+     * @param maxBytesPerTopic log size that triggers compaction of a topic
+     * @param maxAge           messages older than this are dropped during compaction
+     * @param maxOpenTopics    number of topics whose files are kept open
+     * @throws IOException if the directory cannot be created
+     */
+    public MessageStore(Path directory, long maxBytesPerTopic, Duration maxAge, int maxOpenTopics) throws IOException {
+        if (maxOpenTopics < 1) {
+            throw new IllegalArgumentException("maxOpenTopics must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytesPerTopic = maxBytesPerTopic;
+        this.maxAge = maxAge;
+        this.logs = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TopicLog> eldest) {
+                if (size() <= maxOpenTopics) return false;
+                try {
+                    eldest.getValue().close();
+                } catch (IOException e) {
+                    System.err.println("Error closing history of " + eldest.getKey() + ": " + e.getMessage());
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the default store location in the user's home directory
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".javafx-chat-app", "history");
+    }
+
+    /**
+     * Appends a message to the log of its topic.
+     *
+     * @param message the message to store
+     * @throws UncheckedIOException if writing fails
+     */
+    public synchronized void append(NtfyMessageDto message) {
+        try {
+            log(message.topic()).append(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads the most recent messages of a topic that are within the age limit, oldest first.
+     *
+     * @param topic the topic
+     * @param limit maximum number of messages
+     * @return up to {@code limit} messages
+     * @throws UncheckedIOException if reading fails
+     */
+    public synchronized List<NtfyMessageDto> recent(String topic, int limit) {
+        try {
+            return log(topic).recent(limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param topic the topic
+     * @return id of the newest stored message of the topic, or {@code null} if none is stored
+     */
+    public String lastId(String topic) {
+        List<NtfyMessageDto> last = recent(topic, 1);
+        return last.isEmpty() ? null : last.getFirst().id();
+    }
+
+    /**
+     * @param topic the topic
+     * @return number of messages stored for the topic
+     */
+    public synchronized long count(String topic) {
+        try {
+            return log(topic).count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Rewrites the log of a topic, dropping messages beyond the size and age limits.
+     *
+     * @param topic the topic
+     * @throws IOException if rewriting fails
+     */
+    public synchronized void compact(String topic) throws IOException {
+        log(topic).compact();
+    }
+
+    /**
+     * @return number of topics whose files are currently open
+     */
+    public synchronized int openTopicCount() {
+        return logs.size();
+    }
+
+    /**
+     * Closes all open topic files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (TopicLog log : logs.values()) {
+            log.close();
+        }
+        logs.clear();
+    }
+
+    private synchronized TopicLog log(String topic) throws IOException {
+        TopicLog log = logs.get(topic);
+        if (log == null) {
+            String name = URLEncoder.encode(topic, StandardCharsets.UTF_8);
+            log = new TopicLog(topic, directory.resolve(name + LOG_SUFFIX), directory.resolve(name + INDEX_SUFFIX));
+            logs.put(topic, log);
+        }
+        return log;
+    }
+
+    /**
+     * Log and index files of one topic.
+     * Record layout: {@code int length | long time | int idLength | id | int messageLength | message},
+     * where {@code length} covers everything after itself, strings are UTF-8 and a
+     * string length of -1 stands for {@code null}. Messages with an {@link Attachment}
+     * continue with {@code name | type | long size | long expires | url} in the same
+     * string format; records without those bytes have no attachment.
+     */
+    private final class TopicLog {
+        private final String topic;
+        private final Path logPath;
+        private final Path indexPath;
+        private FileChannel log;
+        private FileChannel index;
+        private MappedByteBuffer logMap;
+        private MappedByteBuffer indexMap;
+
+        TopicLog(String topic, Path logPath, Path indexPath) throws IOException {
+            this.topic = topic;
+            this.logPath = logPath;
+            this.indexPath = indexPath;
+            openChannels();
+            recover();
+            if (count() > 0) {
+                remap();
+                if (logMap.getLong(4) < minTime()) compact();
+            }
+        }
+
+        synchronized void append(NtfyMessageDto message) throws IOException {
+            byte[] id = bytes(message.id());
+            byte[] text = bytes(message.message());
+            Attachment attachment = message.attachment();
+            byte[] name = attachment == null ? null : bytes(attachment.name());
+            byte[] type = attachment == null ? null : bytes(attachment.type());
+            byte[] url = attachment == null ? null : bytes(attachment.url());
+            int length = MIN_RECORD_LENGTH + size(id) + size(text);
+            if (attachment != null) {
+                length += ATTACHMENT_LENGTH + size(name) + size(type) + size(url);
+            }
+            ByteBuffer record = ByteBuffer.allocate(4 + length)
+                    .putInt(length)
+                    .putLong(message.time());
+            putString(record, id);
+            putString(record, text);
+            if (attachment != null) {
+                putString(record, name);
+                putString(record, type);
+                record.putLong(attachment.size()).putLong(attachment.expires());
+                putString(record, url);
+            }
+            record.flip();
+            long offset = log.size();
+            log.write(record, offset);
+            index.write(ByteBuffer.allocate(8).putLong(offset).flip(), index.size());
+            if (log.size() > maxBytesPerTopic) {
+                compact();
+            }
+        }
+
+        synchronized List<NtfyMessageDto> recent(int limit) throws IOException {
+            long count = count();
+            int n = (int) Math.min(limit, count);
+            List<NtfyMessageDto> result = new ArrayList<>(n);
+            if (n == 0) return result;
+            remap();
+            long minTime = minTime();
+            for (long i = count - n; i < count; i++) {
+                NtfyMessageDto message = read(indexMap.getLong((int) (i * 8)));
+                if (message.time() >= minTime) result.add(message);
+            }
+            return result;
+        }
+
+        synchronized long count() throws IOException {
+            return index.size() / 8;
+        }
+
+        /**
+         * Keeps the newest records that fit into half the size cap and are within the age limit.
+         */
+        synchronized void compact() throws IOException {
+            long minTime = minTime();
+            long count = count();
+            remap();
+            long budget = maxBytesPerTopic / 2;
+            long first = count;
+            long end = log.size();
+            while (first > 0) {
+                long start = indexMap.getLong((int) ((first - 1) * 8));
+                if (end - start > budget || logMap.getLong((int) start + 4) < minTime) break;
+                budget -= end - start;
+                end = start;
+                first--;
+            }
+
+            Path logTmp = logPath.resolveSibling(logPath.getFileName() + ".tmp");
+            Path indexTmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            long base = first < count ? indexMap.getLong((int) (first * 8)) : log.size();
+            try (FileChannel newLog = FileChannel.open(logTmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                 FileChannel newIndex = FileChannel.open(indexTmp, StandardOpenOption.CREATE,
+                         StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                newLog.write(logMap.slice((int) base, (int) (log.size() - base)));
+                ByteBuffer offsets = ByteBuffer.allocate((int) ((count - first) * 8));
+                for (long i = first; i < count; i++) {
+                    offsets.putLong(indexMap.getLong((int) (i * 8)) - base);
+                }
+                newIndex.write(offsets.flip());
+            }
+            closeChannels();
+            try {
+                Files.move(logTmp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.move(indexTmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                // Rebuilds the index if only the log was replaced
+                openChannels();
+                recover();
+            }
+        }
+
+        synchronized void close() throws IOException {
+            closeChannels();
+        }
+
+        /** @return Unix time before which records are dropped */
+        private long minTime() {
+            return Instant.now().minus(maxAge).getEpochSecond();
+        }
+
+        private NtfyMessageDto read(long offset) {
+            ByteBuffer record = logMap.slice((int) offset + 4, logMap.getInt((int) offset));
+            long time = record.getLong();
+            String id = getString(record);
+            String text = getString(record);
+            Attachment attachment = null;
+            if (record.hasRemaining()) {
+                attachment = new Attachment(getString(record), getString(record),
+                        record.getLong(), record.getLong(), getString(record));
+            }
+            return new NtfyMessageDto(id, time, "message", topic, text, attachment);
+        }
+
+        private static String getString(ByteBuffer record) {
+            int length = record.getInt();
+            if (length < 0) return null;
+            byte[] bytes = new byte[length];
+            record.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Walks the records of the log and compares their offsets with the index: keeps
+         * the entries that match, replaces the rest with the offsets of the complete
+         * records, and truncates a torn tail.
+         */
+        private void recover() throws IOException {
+            long logSize = log.size();
+            long entries = index.size() / 8;
+            ByteBuffer records = log.map(FileChannel.MapMode.READ_ONLY, 0, logSize);
+            ByteBuffer offsets = index.map(FileChannel.MapMode.READ_ONLY, 0, entries * 8);
+            List<Long> rebuilt = new ArrayList<>();
+            long matching = 0;
+            long validEnd = 0;
+            while (validEnd + 4 <= logSize) {
+                int length = records.getInt((int) validEnd);
+                long end = validEnd + 4 + length;
+                if (length < MIN_RECORD_LENGTH || end > logSize) break;
+                if (rebuilt.isEmpty() && matching < entries && offsets.getLong((int) (matching * 8)) == validEnd) {
+                    matching++;
+                } else {
+                    rebuilt.add(validEnd);
+                }
+                validEnd = end;
+            }
+            if (rebuilt.isEmpty() && matching == entries && validEnd == logSize) return;
+            if (matching < entries) {
+                System.err.println("Rebuilding index of " + topic + " from its log");
+            }
+            index.truncate(matching * 8);
+            ByteBuffer tail = ByteBuffer.allocate(rebuilt.size() * 8);
+            rebuilt.forEach(tail::putLong);
+            index.write(tail.flip(), matching * 8);
+            log.truncate(validEnd);
+        }
+
+        private void remap() throws IOException {
+            if (logMap == null || logMap.capacity() != log.size()) {
+                logMap = log.map(FileChannel.MapMode.READ_ONLY, 0, log.size());
+            }
+            if (indexMap == null || indexMap.capacity() != index.size()) {
+                indexMap = index.map(FileChannel.MapMode.READ_ONLY, 0, index.size());
+            }
+        }
+
+        private void openChannels() throws IOException {
+            log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index = FileChannel.open(indexPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            logMap = null;
+            indexMap = null;
+        }
+
+        private void closeChannels() throws IOException {
+            logMap = null;
+            indexMap = null;
+            try {
+                log.close();
+            } finally {
+                index.close();
+            }
+        }
+
+        private static byte[] bytes(String s) {
+            return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static int size(byte[] bytes) {
+            return bytes == null ? 0 : bytes.length;
+        }
+
+        private static void putString(ByteBuffer buffer, byte[] bytes) {
+            if (bytes == null) {
+                buffer.putInt(-1);
+            } else {
+                buffer.putInt(bytes.length).put(bytes);
+            }
+        }
+    }
+}
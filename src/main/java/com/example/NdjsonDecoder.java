@@ -0,0 +1,442 @@
+package com.example;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.core.StreamReadFeature;
+import tools.jackson.core.exc.JacksonIOException;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Decodes a ntfy NDJSON subscription stream into {@link NtfyMessageDto} instances.
+ * <p>
+ * The response body is read by a single Jackson streaming parser, without building
+ * a {@code String} per line. The {@code event} field is checked as soon as it is
+ * seen; the remaining fields of {@code open} and {@code keepalive} events are
+ * skipped without decoding them or binding a DTO. Repeated topic names reuse the
+ * same {@code String} instance.
+ * <p>
+ * The parser is fed one line at a time, so a malformed line is reported and
+ * skipped, and decoding resumes with a fresh parser at the next line.
+ * <p>
+ * A decoder keeps per-stream state and is not thread-safe; use one per stream.
+ * Complete responses, such as the result of a poll, can be decoded in parallel
+ * chunks with {@link #decodeAll(byte[], Executor, int, Runnable)}.
+ */
+public class NdjsonDecoder {
+
+    /** Shared, immutable reader used as the parser factory. Never closes the response body. */
+    private static final ObjectReader READER = new ObjectMapper().readerFor(NtfyMessageDto.class)
+            .without(StreamReadFeature.AUTO_CLOSE_SOURCE);
+    private static final char[] MESSAGE_EVENT = "message".toCharArray();
+    private static final char[] OPEN_EVENT = "open".toCharArray();
+    /** Smallest part of a complete response decoded on its own thread. */
+    private static final int MIN_CHUNK_BYTES = 64 * 1024;
+
+    private final Consumer<NtfyMessageDto> messageHandler;
+    private final Runnable failureListener;
+    private final Runnable openListener;
+    /** Set by the parser for an {@code open} event, which is reported once it is fully parsed. */
+    private boolean openParsed;
+    /** Last topic seen, reused while consecutive messages share a topic. */
+    private String lastTopic;
+
+    private long messageCount;
+    private long skippedCount;
+    private long failureCount;
+
+    /**
+     * Creates a decoder that passes every {@code message} event to the handler.
+     *
+     * @param messageHandler receives decoded messages on the decoding thread
+     */
+    public NdjsonDecoder(Consumer<NtfyMessageDto> messageHandler) {
+        this(messageHandler, () -> {
+        });
+    }
+
+    /**
+     * Creates a decoder that also reports every line that cannot be parsed.
+     *
+     * @param messageHandler  receives decoded messages on the decoding thread
+     * @param failureListener called on the decoding thread for every malformed line
+     */
+    public NdjsonDecoder(Consumer<NtfyMessageDto> messageHandler, Runnable failureListener) {
+        this(messageHandler, failureListener, () -> {
+        });
+    }
+
+    /**
+     * Creates a decoder that also reports the {@code open} event a subscription starts with.
+     *
+     * @param messageHandler  receives decoded messages on the decoding thread
+     * @param failureListener called on the decoding thread for every malformed line
+     * @param openListener    called on the decoding thread for every {@code open} event
+     */
+    public NdjsonDecoder(Consumer<NtfyMessageDto> messageHandler, Runnable failureListener, Runnable openListener) {
+        this.messageHandler = messageHandler;
+        this.failureListener = failureListener;
+        this.openListener = openListener;
+    }
+
+    /**
+     * Reads the stream until it ends or is closed, decoding every line.
+     *
+     * @param in the response body
+     * @throws IOException if reading from the stream fails
+     */
+    public void decode(InputStream in) throws IOException {
+        LineInputStream lines = new LineInputStream(in);
+        while (true) {
+            try (JsonParser parser = READER.createParser(lines)) {
+                while (true) {
+                    NtfyMessageDto message;
+                    try {
+                        if (parser.nextToken() == null) return;
+                        lines.insideObject = true;
+                        message = parseObject(parser);
+                        lines.insideObject = false;
+                    } catch (JacksonIOException e) {
+                        throw e.getCause();
+                    } catch (JacksonException | IllegalArgumentException e) {
+                        lines.insideObject = false;
+                        failure(e);
+                        lines.skipLine();
+                        // Resume with a fresh parser at the next line
+                        break;
+                    }
+                    deliver(message);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a single NDJSON line and passes it to the handler if it is a message event.
+     *
+     * @param buffer bytes containing the line
+     * @param offset start of the line
+     * @param length length of the line, excluding the line terminator
+     * @return true if a message was delivered
+     */
+    public boolean decodeLine(byte[] buffer, int offset, int length) {
+        NtfyMessageDto message;
+        try (JsonParser parser = READER.createParser(buffer, offset, length)) {
+            if (parser.nextToken() == null) return false;
+            message = parseObject(parser);
+        } catch (JacksonException | IllegalArgumentException e) {
+            failure(e);
+            return false;
+        }
+        return deliver(message);
+    }
+
+    /**
+     * Decodes a single JSON object held as characters, e.g. a WebSocket text message,
+     * and passes it to the handler if it is a message event. The characters of a
+     * {@link CharBuffer} with a backing array are parsed in place.
+     *
+     * @param text the JSON object
+     * @return true if a message was delivered
+     */
+    public boolean decodeText(CharSequence text) {
+        NtfyMessageDto message;
+        try (JsonParser parser = text instanceof CharBuffer buffer && buffer.hasArray()
+                ? READER.createParser(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining())
+                : READER.createParser(text.toString())) {
+            if (parser.nextToken() == null) return false;
+            message = parseObject(parser);
+        } catch (JacksonException | IllegalArgumentException e) {
+            failure(e);
+            return false;
+        }
+        return deliver(message);
+    }
+
+    /**
+     * Decodes a complete NDJSON response, splitting it at line boundaries into up to
+     * {@code parallelism} chunks that are decoded concurrently. The messages are
+     * returned in the order of the response. Responses smaller than two chunks of
+     * 64 KiB are decoded in one piece.
+     *
+     * @param body            the response body
+     * @param executor        runs the chunks, e.g. {@link java.util.concurrent.ForkJoinPool#commonPool()}
+     * @param parallelism     maximum number of chunks
+     * @param failureListener called for every malformed line, possibly from several threads
+     * @return a future completed with the message events of the response
+     */
+    public static CompletableFuture<List<NtfyMessageDto>> decodeAll(byte[] body, Executor executor, int parallelism,
+                                                                    Runnable failureListener) {
+        int chunks = Math.max(1, Math.min(parallelism, body.length / MIN_CHUNK_BYTES));
+        List<CompletableFuture<List<NtfyMessageDto>>> parts = new ArrayList<>(chunks);
+        int start = 0;
+        for (int i = 1; i <= chunks; i++) {
+            int end = i == chunks ? body.length : Math.max(start, nextLine(body, (int) ((long) body.length * i / chunks)));
+            int from = start;
+            parts.add(CompletableFuture.supplyAsync(() -> decodeLines(body, from, end, failureListener), executor));
+            start = end;
+        }
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)).thenApply(v -> {
+            if (parts.size() == 1) return parts.getFirst().join();
+            int size = 0;
+            for (CompletableFuture<List<NtfyMessageDto>> part : parts) {
+                size += part.join().size();
+            }
+            List<NtfyMessageDto> messages = new ArrayList<>(size);
+            for (CompletableFuture<List<NtfyMessageDto>> part : parts) {
+                messages.addAll(part.join());
+            }
+            return messages;
+        });
+    }
+
+    /** @return the index after the first line break at or after {@code from} */
+    private static int nextLine(byte[] body, int from) {
+        for (int i = from; i < body.length; i++) {
+            if (body[i] == '\n') return i + 1;
+        }
+        return body.length;
+    }
+
+    private static List<NtfyMessageDto> decodeLines(byte[] body, int from, int to, Runnable failureListener) {
+        List<NtfyMessageDto> messages = new ArrayList<>();
+        NdjsonDecoder decoder = new NdjsonDecoder(messages::add, failureListener);
+        int lineStart = from;
+        for (int i = from; i < to; i++) {
+            if (body[i] == '\n') {
+                if (i > lineStart) decoder.decodeLine(body, lineStart, i - lineStart);
+                lineStart = i + 1;
+            }
+        }
+        if (to > lineStart) decoder.decodeLine(body, lineStart, to - lineStart);
+        return messages;
+    }
+
+    /**
+     * Loads and initializes Jackson by decoding a sample message, so that the first
+     * real stream does not pay for it. Called on a background thread at startup.
+     *
+     * @return true if the sample was decoded
+     */
+    public static boolean warmUp() {
+        byte[] sample = """
+                {"id":"warmup","time":1,"event":"message","topic":"warmup","message":"warmup",\
+                "attachment":{"name":"a.txt","type":"text/plain","size":1,"expires":1,"url":"http://localhost/a.txt"}}\
+                """.getBytes(StandardCharsets.UTF_8);
+        return new NdjsonDecoder(message -> {
+        }).decodeLine(sample, 0, sample.length);
+    }
+
+    /** @return number of message events delivered */
+    public long messageCount() {
+        return messageCount;
+    }
+
+    /** @return number of non-message events skipped */
+    public long skippedCount() {
+        return skippedCount;
+    }
+
+    /** @return number of lines that could not be parsed */
+    public long failureCount() {
+        return failureCount;
+    }
+
+    private boolean deliver(NtfyMessageDto message) {
+        if (message == null) {
+            skippedCount++;
+            if (openParsed) {
+                openParsed = false;
+                openListener.run();
+            }
+            return false;
+        }
+        messageCount++;
+        messageHandler.accept(message);
+        return true;
+    }
+
+    private void failure(RuntimeException e) {
+        failureCount++;
+        System.err.println("Failed to parse message: " + e.getMessage());
+        failureListener.run();
+    }
+
+    /**
+     * Reads the object the parser is positioned at. Returns {@code null} if it is
+     * not a {@code message} event; in that case field values after {@code event}
+     * are skipped without being decoded.
+     */
+    private NtfyMessageDto parseObject(JsonParser parser) {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        String id = null;
+        long time = 0;
+        String topic = null;
+        String text = null;
+        Attachment attachment = null;
+        boolean isMessage = false;
+        boolean isOpen = false;
+        boolean skip = false;
+
+        String field;
+        while ((field = parser.nextName()) != null) {
+            JsonToken value = parser.nextToken();
+            if (!skip && value == JsonToken.START_OBJECT && field.equals("attachment")) {
+                attachment = parseAttachment(parser);
+            } else if (value.isStructStart()) {
+                parser.skipChildren();
+            } else if (!skip) {
+                switch (field) {
+                    case "event" -> {
+                        isMessage = isEvent(parser, MESSAGE_EVENT);
+                        isOpen = !isMessage && isEvent(parser, OPEN_EVENT);
+                        skip = !isMessage;
+                    }
+                    case "id" -> id = parser.getValueAsString();
+                    case "time" -> time = parser.getValueAsLong();
+                    case "topic" -> topic = topic(parser);
+                    case "message" -> text = parser.getValueAsString();
+                    default -> {
+                    }
+                }
+            }
+        }
+        openParsed = isOpen;
+        return isMessage ? new NtfyMessageDto(id, time, "message", topic, text, attachment) : null;
+    }
+
+    /**
+     * Reads the {@code attachment} object the parser is positioned at.
+     */
+    private static Attachment parseAttachment(JsonParser parser) {
+        String name = null;
+        String type = null;
+        long size = 0;
+        long expires = 0;
+        String url = null;
+        String field;
+        while ((field = parser.nextName()) != null) {
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+                continue;
+            }
+            switch (field) {
+                case "name" -> name = parser.getValueAsString();
+                case "type" -> type = parser.getValueAsString();
+                case "size" -> size = parser.getValueAsLong();
+                case "expires" -> expires = parser.getValueAsLong();
+                case "url" -> url = parser.getValueAsString();
+                default -> {
+                }
+            }
+        }
+        return new Attachment(name, type, size, expires, url);
+    }
+
+    private static boolean isEvent(JsonParser parser, char[] event) {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) return false;
+        return Arrays.equals(parser.getStringCharacters(), parser.getStringOffset(),
+                parser.getStringOffset() + parser.getStringLength(),
+                event, 0, event.length);
+    }
+
+    private String topic(JsonParser parser) {
+        if (parser.currentToken() != JsonToken.VALUE_STRING) return parser.getValueAsString();
+        String last = lastTopic;
+        if (last != null && regionEquals(last, parser.getStringCharacters(),
+                parser.getStringOffset(), parser.getStringLength())) {
+            return last;
+        }
+        return lastTopic = parser.getString();
+    }
+
+    private static boolean regionEquals(String s, char[] chars, int offset, int length) {
+        if (s.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != chars[offset + i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Buffers the response body and hands it to the parser at most one line per read,
+     * so that after a parse error the parser has consumed nothing beyond the broken line.
+     * A truncated line would otherwise continue into the next ones, so the input ends
+     * at a line break while an object is being read.
+     */
+    private static final class LineInputStream extends InputStream {
+        private final InputStream in;
+        private final byte[] buffer = new byte[8192];
+        private int position;
+        private int limit;
+        /** True if the last chunk handed out ended in the middle of a line. */
+        private boolean midLine;
+        /** Set by the decoder while the parser is reading an object. */
+        boolean insideObject;
+
+        LineInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (insideObject && !midLine) return -1;
+            if (!fill()) return -1;
+            byte b = buffer[position++];
+            midLine = b != '\n';
+            return b & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (insideObject && !midLine) return -1;
+            if (!fill()) return -1;
+            int end = Math.min(limit, position + len);
+            int n = 0;
+            while (position + n < end) {
+                if (buffer[position + n++] == '\n') break;
+            }
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            midLine = b[off + n - 1] != '\n';
+            return n;
+        }
+
+        /** Discards the remainder of the line the parser failed on. */
+        void skipLine() throws IOException {
+            while (midLine && fill()) {
+                midLine = buffer[position++] != '\n';
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean fill() throws IOException {
+            if (position < limit) return true;
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) return false;
+            position = 0;
+            limit = n;
+            return true;
+        }
+    }
+}
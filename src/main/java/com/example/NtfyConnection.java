@@ -2,13 +2,18 @@ package com.example;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Consumer;
 
 /**
  * Represents a connection to a Ntfy-compatible notification service.
  * Implementations of this interface provide basic operations for:
- *  * Sending messages to a specific topic
+ *  * Sending messages to a specific topic, blocking or asynchronously
+ *  * Publishing files as attachments
  *  * Subscribing to incoming messages from a topic
+ *  * Fetching the cached history of a topic in bulk
  */
 public interface NtfyConnection {
 
@@ -22,6 +27,42 @@ public interface NtfyConnection {
      */
     void send(String topic, String message) throws IOException;
 
+    /**
+     * Sends a message to the given topic without blocking the caller.
+     * Several sends may be in flight at once; they are not guaranteed to be
+     * published in the order they were started.
+     * The default implementation calls {@link #send(String, String)} on the
+     * calling thread and returns an already completed future.
+     *
+     * @param topic   the topic to publish to
+     * @param message the message content to send
+     * @return a future completed when the server accepted the message, or
+     *         completed exceptionally with the cause of the failure
+     */
+    default CompletableFuture<Void> sendAsync(String topic, String message) {
+        try {
+            send(topic, message);
+            return CompletableFuture.completedFuture(null);
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Publishes a file as an attachment to the given topic without blocking the caller.
+     * The file is streamed from disk rather than read into memory.
+     * The default implementation fails with an {@link UnsupportedOperationException}.
+     *
+     * @param topic    the topic to publish to
+     * @param file     the file to attach
+     * @param message  text sent along with the file, or {@code null}
+     * @param listener receives upload progress on a background thread
+     * @return the running upload; cancel it to abort
+     */
+    default Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        return Transfer.failed(new UnsupportedOperationException("Attachments are not supported"));
+    }
+
     /**
      * Subscribes to a topic and receives messages asynchronously.
      *
@@ -31,6 +72,34 @@ public interface NtfyConnection {
      */
     Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler);
 
+    /**
+     * Subscribes to a topic, first replaying cached messages published after {@code since}.
+     * The default implementation ignores {@code since}.
+     *
+     * @param topic          the topic to subscribe to
+     * @param since          a message id, a Unix timestamp or a duration such as {@code 10m},
+     *                       or {@code null} to receive only new messages
+     * @param messageHandler callback invoked for every received message on a background thread
+     * @return a {@link Subscription} that controls the active message stream
+     */
+    default Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, messageHandler);
+    }
+
+    /**
+     * Fetches the messages cached by the server for a topic in one request, without
+     * subscribing, e.g. to backfill history before a live subscription takes over.
+     * The default implementation fails with an {@link UnsupportedOperationException}.
+     *
+     * @param topic the topic to fetch
+     * @param since a message id, a Unix timestamp, a duration such as {@code 10m} or
+     *              {@code all}; {@code null} fetches all cached messages
+     * @return a future completed with the messages in publishing order
+     */
+    default CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        return CompletableFuture.failedFuture(new UnsupportedOperationException("Polling is not supported"));
+    }
+
     /**
      * Controls an active topic subscription.
      * Encapsulates the logic to stop an active message stream.
@@ -51,5 +120,28 @@ public interface NtfyConnection {
          * @return true if active, false otherwise
          */
         boolean isOpen();
+
+        /**
+         * Returns a future that completes when the message stream ends, either because
+         * the subscription was closed or because the connection was lost.
+         * The default implementation returns a future that never completes.
+         *
+         * @return a future completed when the stream has ended
+         */
+        default CompletableFuture<Void> whenClosed() {
+            return new CompletableFuture<>();
+        }
+
+        /**
+         * Returns a future that completes when the server has confirmed the stream
+         * with its {@code open} event. It does not complete if the stream ends first.
+         * The default implementation returns a completed future, for connections
+         * that do not report it.
+         *
+         * @return a future completed once the stream is open
+         */
+        default CompletableFuture<Void> whenOpened() {
+            return CompletableFuture.completedFuture(null);
+        }
     }
 }
\ No newline at end of file
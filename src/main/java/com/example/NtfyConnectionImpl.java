@@ -1,37 +1,70 @@
 package com.example;
 
 import io.github.cdimascio.dotenv.Dotenv;
-import tools.jackson.databind.ObjectMapper;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 /**
  * Implementation of {@link NtfyConnection} that communicates with a Ntfy server
  * using Java's built-in {@link HttpClient}.
  * Supports sending messages to a topic and subscribing to a topic to receive streaming
  * JSON messages in real time.
+ * <p>
+ * Asynchronous sends share one HTTP/2 connection where the server supports it, so
+ * bursts of messages are multiplexed instead of waiting for each other. At most
+ * {@code maxConcurrentSends} requests are in flight; further sends are queued.
+ * File attachments are streamed from disk and do not count against that limit.
+ * Polled history is decoded in parallel on the common fork-join pool.
  */
 public class NtfyConnectionImpl implements NtfyConnection {
 
-    private final HttpClient http = HttpClient.newHttpClient();
+    /** Default number of asynchronous sends in flight at once. */
+    public static final int DEFAULT_MAX_CONCURRENT_SENDS = 16;
+
+    private final HttpClient http;
     private final String hostName;
-    private final ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Runs one task per subscription that reads the response body and calls the handler.
+     * Reading a streaming body blocks, so it must not happen on the HttpClient's own threads.
+     */
+    private final Executor subscriptionExecutor;
+    /** Permits for asynchronous sends in flight. */
+    private final Semaphore sendPermits;
+    /** Asynchronous sends waiting for a permit, in the order they were started. */
+    private final Queue<Runnable> queuedSends = new ConcurrentLinkedQueue<>();
+    /** Receives parse failures of subscription streams. */
+    private volatile ChatMetrics metrics = ChatMetrics.NOOP;
+    /** Watches subscription streams for silence, or {@code null}. */
+    private volatile LivenessMonitor livenessMonitor;
 
     /**
      * Creates a connection using a hostname loaded from a .env file.
      * Expects the variable HOST_NAME to be present.
      */
     public NtfyConnectionImpl() {
-        Dotenv dotenv = Dotenv.load();
-        hostName = Objects.requireNonNull(dotenv.get("HOST_NAME"));
+        this(Objects.requireNonNull(Dotenv.load().get("HOST_NAME")));
     }
 
     /**
@@ -40,7 +73,75 @@ public class NtfyConnectionImpl implements NtfyConnection {
      * @param hostName Base URL of the Ntfy server
      */
     public NtfyConnectionImpl(String hostName) {
+        this(hostName, DEFAULT_MAX_CONCURRENT_SENDS);
+    }
+
+    /**
+     * Creates a connection using the given hostname and send concurrency.
+     *
+     * @param hostName           Base URL of the Ntfy server
+     * @param maxConcurrentSends Maximum number of asynchronous sends in flight at once
+     */
+    public NtfyConnectionImpl(String hostName, int maxConcurrentSends) {
+        this(hostName, maxConcurrentSends, ExecutorStrategy.DEFAULT);
+    }
+
+    /**
+     * Creates a connection using the given hostname, send concurrency and threads.
+     *
+     * @param hostName           Base URL of the Ntfy server
+     * @param maxConcurrentSends Maximum number of asynchronous sends in flight at once
+     * @param executors          Threads for HTTP I/O and for subscriptions
+     */
+    public NtfyConnectionImpl(String hostName, int maxConcurrentSends, ExecutorStrategy executors) {
+        if (maxConcurrentSends < 1) {
+            throw new IllegalArgumentException("maxConcurrentSends must be positive");
+        }
         this.hostName = hostName;
+        this.sendPermits = new Semaphore(maxConcurrentSends);
+        this.subscriptionExecutor = executors.subscriptionExecutor();
+        HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2);
+        if (executors.httpExecutor() != null) {
+            builder.executor(executors.httpExecutor());
+        }
+        this.http = builder.build();
+    }
+
+    /**
+     * Sets the metrics that receive parse failures of subscriptions opened afterwards.
+     * Send latency and received messages are measured by an {@link InstrumentedNtfyConnection}.
+     *
+     * @param metrics the metrics to report to
+     */
+    public void setMetrics(ChatMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Sets the monitor that tears down subscription streams opened afterwards when they
+     * receive nothing, not even a keepalive, for longer than its timeout. The stream then
+     * ends as if the connection had been lost, so a {@link ReconnectingSubscription}
+     * reopens it.
+     *
+     * @param monitor the monitor, or {@code null} to trust streams until they fail
+     */
+    public void setLivenessMonitor(LivenessMonitor monitor) {
+        this.livenessMonitor = monitor;
+    }
+
+    /** @return base URL of the server */
+    String hostName() {
+        return hostName;
+    }
+
+    /** @return the client shared by all requests of this connection */
+    HttpClient httpClient() {
+        return http;
+    }
+
+    /** @return runs the message handlers of subscriptions */
+    Executor subscriptionExecutor() {
+        return subscriptionExecutor;
     }
 
     /**
@@ -48,27 +149,153 @@ public class NtfyConnectionImpl implements NtfyConnection {
      *
      * @param topic   The topic to publish to.
      * @param message Message body to send.
-     * @throws IOException If sending fails or the thread is interrupted.
+     * @throws NtfyHttpException If the server answers with a non-2xx status.
+     * @throws IOException       If sending fails or the thread is interrupted.
      */
     @Override
     public void send(String topic, String message) throws IOException {
-        HttpRequest httpRequest = HttpRequest.newBuilder()
-                .POST(HttpRequest.BodyPublishers.ofString(message))
-                .header("Cache-Control", "no-cache")
-                .uri(URI.create(hostName + "/" + topic))
-                .build();
         try {
-            http.send(httpRequest, HttpResponse.BodyHandlers.discarding());
+            HttpResponse<Void> response = http.send(sendRequest(topic, message), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 != 2) {
+                throw NtfyHttpException.of("Failed to send message", response);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new IOException("Interrupted while sending message", e);
         }
     }
 
+    /**
+     * Sends a message to the given topic without blocking.
+     * The request is queued if {@code maxConcurrentSends} requests are already in flight.
+     *
+     * @param topic   The topic to publish to.
+     * @param message Message body to send.
+     * @return A future completed when the server accepted the message; completed
+     *         exceptionally with an {@link IOException} on a network error, or an
+     *         {@link NtfyHttpException} on a non-2xx status.
+     */
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        HttpRequest httpRequest = sendRequest(topic, message);
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        queuedSends.add(() -> http.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, throwable) -> {
+                    sendPermits.release();
+                    startQueuedSends();
+                    if (throwable != null) {
+                        result.completeExceptionally(throwable);
+                    } else if (response.statusCode() / 100 != 2) {
+                        result.completeExceptionally(NtfyHttpException.of("Failed to send message", response));
+                    } else {
+                        result.complete(null);
+                    }
+                }));
+        startQueuedSends();
+        return result;
+    }
+
+    /**
+     * Publishes a file as an attachment with a {@code PUT} request whose body is
+     * streamed from disk, so files of any size are sent without buffering them in memory.
+     * The file name and optional message are passed as ntfy's {@code filename} and
+     * {@code message} query parameters.
+     *
+     * @param topic    The topic to publish to.
+     * @param file     The file to attach.
+     * @param message  Text sent along with the file, or {@code null}.
+     * @param listener Receives upload progress on a background thread.
+     * @return The running upload; its result fails with an {@link IOException} on a
+     *         network error or a non-2xx status.
+     */
+    @Override
+    public Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        Transfer<Void> transfer;
+        HttpRequest.BodyPublisher body;
+        try {
+            transfer = new Transfer<>(Files.size(file), listener);
+            body = HttpRequest.BodyPublishers.ofFile(file);
+        } catch (IOException e) {
+            return Transfer.failed(e);
+        }
+        String query = "?filename=" + URLEncoder.encode(file.getFileName().toString(), StandardCharsets.UTF_8);
+        if (message != null && !message.isBlank()) {
+            query += "&message=" + URLEncoder.encode(message, StandardCharsets.UTF_8);
+        }
+        HttpRequest httpRequest = HttpRequest.newBuilder()
+                .PUT(transfer.counting(body))
+                .uri(URI.create(hostName + "/" + topic + query))
+                .build();
+        CompletableFuture<HttpResponse<Void>> exchange =
+                http.sendAsync(httpRequest, HttpResponse.BodyHandlers.discarding());
+        transfer.attach(exchange);
+        exchange.whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                transfer.fail(throwable);
+            } else if (response.statusCode() / 100 != 2) {
+                transfer.fail(NtfyHttpException.of("Failed to send file", response));
+            } else {
+                transfer.complete(null);
+            }
+        });
+        return transfer;
+    }
+
+    /**
+     * Starts queued sends while permits are available.
+     */
+    private void startQueuedSends() {
+        while (!queuedSends.isEmpty() && sendPermits.tryAcquire()) {
+            Runnable next = queuedSends.poll();
+            if (next == null) {
+                // Another thread took the send; re-check in case one was queued meanwhile
+                sendPermits.release();
+                continue;
+            }
+            next.run();
+        }
+    }
+
+    private HttpRequest sendRequest(String topic, String message) {
+        return HttpRequest.newBuilder()
+                .POST(HttpRequest.BodyPublishers.ofString(message))
+                .header("Cache-Control", "no-cache")
+                .uri(URI.create(hostName + "/" + topic))
+                .build();
+    }
+
+    /**
+     * Fetches cached messages with ntfy's poll mode, {@code GET /<topic>/json?poll=1},
+     * which returns them in one response and closes it. The body is read into memory
+     * and decoded in parallel chunks by {@link NdjsonDecoder#decodeAll}.
+     *
+     * @param topic Topic to fetch.
+     * @param since Message id, Unix timestamp, duration or {@code all}; {@code null} for all cached messages.
+     * @return A future completed with the messages in publishing order; completed
+     *         exceptionally with an {@link IOException} on a network error or a non-2xx status.
+     */
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        String query = "?poll=1" + (since == null ? "" : "&since=" + URLEncoder.encode(since, StandardCharsets.UTF_8));
+        HttpRequest httpRequest = HttpRequest.newBuilder()
+                .GET()
+                .uri(URI.create(hostName + "/" + topic + "/json" + query))
+                .build();
+        ChatMetrics metrics = this.metrics;
+        return http.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray()).thenCompose(response -> {
+            if (response.statusCode() / 100 != 2) {
+                return CompletableFuture.failedFuture(NtfyHttpException.of("Failed to poll messages", response));
+            }
+            return NdjsonDecoder.decodeAll(response.body(), ForkJoinPool.commonPool(),
+                    ForkJoinPool.getCommonPoolParallelism(), () -> metrics.parseFailure(topic));
+        });
+    }
+
     /**
      * Subscribes to a topic and receives incoming messages as a JSON stream.
-     * Each valid message is deserialized into {@link NtfyMessageDto} and passed
-     * to the given message handler.
+     * The response body is decoded incrementally by an {@link NdjsonDecoder} on a
+     * task of the {@link ExecutorStrategy}'s subscription executor, which also calls
+     * the message handler for each message event.
      * <p>
      * The subscription remains active until {@link Subscription#close()} is called.
      *
@@ -78,34 +305,83 @@ public class NtfyConnectionImpl implements NtfyConnection {
      */
     @Override
     public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    /**
+     * Subscribes to a topic, first replaying cached messages published after {@code since}.
+     *
+     * @param topic          Topic to subscribe to.
+     * @param since          Message id, Unix timestamp or duration to resume from, or {@code null}.
+     * @param messageHandler Callback invoked for each received message.
+     * @return A {@link Subscription} that can be closed to stop listening.
+     */
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, since, messageHandler, UnaryOperator.identity());
+    }
+
+    /**
+     * Subscribes to a topic, reading the response body through {@code bodyFilter}
+     * before it is decoded, e.g. to record the raw stream.
+     *
+     * @param topic          Topic to subscribe to.
+     * @param since          Message id, Unix timestamp or duration to resume from, or {@code null}.
+     * @param messageHandler Callback invoked for each received message.
+     * @param bodyFilter     Wraps the response body; closing the result must close the body.
+     * @return A {@link Subscription} that can be closed to stop listening.
+     */
+    Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler,
+                         UnaryOperator<InputStream> bodyFilter) {
+        String query = since == null ? "" : "?since=" + URLEncoder.encode(since, StandardCharsets.UTF_8);
         HttpRequest httpRequest = HttpRequest.newBuilder()
                 .GET()
-                .uri(URI.create(hostName + "/" + topic + "/json"))
+                .version(HttpClient.Version.HTTP_1_1)
+                .uri(URI.create(hostName + "/" + topic + "/json" + query))
                 .build();
 
+        ChatMetrics metrics = this.metrics;
+        LivenessMonitor monitor = this.livenessMonitor;
         AtomicBoolean active = new AtomicBoolean(true);
+        AtomicReference<InputStream> body = new AtomicReference<>();
+        CompletableFuture<Void> stale = new CompletableFuture<>();
+        CompletableFuture<Void> opened = new CompletableFuture<>();
+        LivenessMonitor.Handle liveness = monitor == null ? null : monitor.watch(silence -> {
+            if (!active.getAndSet(false)) return;
+            System.err.println("Subscription to " + topic + " silent for " + silence.toMillis() + " ms, reconnecting");
+            metrics.streamStale(topic, silence.toNanos());
+            stale.complete(null);
+            closeQuietly(body.get());
+        });
+        UnaryOperator<InputStream> filter = liveness == null ? bodyFilter
+                : in -> bodyFilter.apply(new TouchingInputStream(in, liveness));
 
-        CompletableFuture<Void> future = http.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofLines())
+        CompletableFuture<Void> future = http.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofInputStream())
                 .exceptionally(throwable -> {
                     System.err.println("Failed to receive messages: " + throwable.getMessage());
                     return null;
                 })
-                .thenAccept(response -> {
+                .thenAcceptAsync(response -> {
                     if (response == null) return;
-                    response.body()
-                            .filter(s -> active.get())
-                            .map(s -> {
-                                try {
-                                    return mapper.readValue(s, NtfyMessageDto.class);
-                                } catch (Exception e) {
-                                    System.err.println("Failed to parse message: " + e.getMessage());
-                                    return null;
-                                }
-                            })
-                            .filter(Objects::nonNull)
-                            .filter(message -> "message".equals(message.event()))
-                            .forEach(messageHandler);
-                });
+                    try (InputStream in = filter.apply(response.body())) {
+                        body.set(in);
+                        if (!active.get()) return;
+                        if (response.statusCode() / 100 != 2) {
+                            System.err.println("Failed to receive messages: HTTP " + response.statusCode());
+                            return;
+                        }
+                        new NdjsonDecoder(message -> {
+                            if (active.get()) messageHandler.accept(message);
+                        }, () -> metrics.parseFailure(topic), () -> opened.complete(null)).decode(in);
+                    } catch (IOException e) {
+                        if (active.get()) {
+                            System.err.println("Subscription stream failed: " + e.getMessage());
+                        }
+                    }
+                }, subscriptionExecutor);
+        // A stale stream ends right away, even if the request never got a response
+        CompletableFuture<Void> ended = liveness == null ? future : future.applyToEither(stale, v -> null);
+        if (liveness != null) ended.whenComplete((v, t) -> liveness.cancel());
 
         return new Subscription() {
             /**
@@ -114,7 +390,10 @@ public class NtfyConnectionImpl implements NtfyConnection {
             @Override
             public void close() throws IOException {
                 active.set(false);
+                if (liveness != null) liveness.cancel();
                 future.cancel(true);
+                InputStream in = body.get();
+                if (in != null) in.close();
             }
 
             /**
@@ -122,8 +401,59 @@ public class NtfyConnectionImpl implements NtfyConnection {
              */
             @Override
             public boolean isOpen() {
-                return active.get() && !future.isDone();
+                return active.get() && !ended.isDone();
+            }
+
+            /**
+             * Completes when the response stream ends, goes stale or the subscription is closed.
+             */
+            @Override
+            public CompletableFuture<Void> whenClosed() {
+                return ended.copy();
+            }
+
+            /**
+             * Completes when the server's {@code open} event has been decoded.
+             */
+            @Override
+            public CompletableFuture<Void> whenOpened() {
+                return opened.copy();
             }
         };
     }
-}
\ No newline at end of file
+
+    private static void closeQuietly(InputStream in) {
+        if (in == null) return;
+        try {
+            in.close();
+        } catch (IOException e) {
+            // The stream is being abandoned anyway
+        }
+    }
+
+    /**
+     * Touches a liveness handle whenever bytes arrive, keepalives included.
+     */
+    private static final class TouchingInputStream extends FilterInputStream {
+        private final LivenessMonitor.Handle liveness;
+
+        TouchingInputStream(InputStream in, LivenessMonitor.Handle liveness) {
+            super(in);
+            this.liveness = liveness;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) liveness.touch();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) liveness.touch();
+            return n;
+        }
+    }
+}
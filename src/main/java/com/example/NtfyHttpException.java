@@ -0,0 +1,91 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The ntfy server answered a request with a non-2xx status.
+ * <p>
+ * Carries the status code and, for {@code 429 Too Many Requests} and
+ * {@code 503 Service Unavailable}, the server's {@code Retry-After} hint, so callers
+ * can tell a rejected message from a temporary failure worth retrying later.
+ */
+public class NtfyHttpException extends IOException {
+
+    private final int statusCode;
+    private final Duration retryAfter;
+
+    /**
+     * @param message    description of the failed request
+     * @param statusCode the HTTP status code
+     * @param retryAfter delay requested by the server, or {@code null} if none was given
+     */
+    public NtfyHttpException(String message, int statusCode, Duration retryAfter) {
+        super(message);
+        this.statusCode = statusCode;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Creates an exception for a response, e.g. "Failed to send message: HTTP 429".
+     *
+     * @param action   what was attempted, e.g. "Failed to send message"
+     * @param response the response with a non-2xx status
+     * @return the exception
+     */
+    static NtfyHttpException of(String action, HttpResponse<?> response) {
+        Duration retryAfter = response.headers().firstValue("Retry-After")
+                .map(value -> parseRetryAfter(value, Instant.now()))
+                .orElse(null);
+        return new NtfyHttpException(action + ": HTTP " + response.statusCode(), response.statusCode(), retryAfter);
+    }
+
+    /**
+     * Parses a {@code Retry-After} header, given either in seconds or as an HTTP date.
+     *
+     * @param value the header value
+     * @param now   the current time, for dates
+     * @return the delay, never negative; {@code null} if the value is malformed
+     */
+    static Duration parseRetryAfter(String value, Instant now) {
+        String trimmed = value.trim();
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(trimmed)));
+        } catch (NumberFormatException notSeconds) {
+            try {
+                Instant date = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return date.isAfter(now) ? Duration.between(now, date) : Duration.ZERO;
+            } catch (DateTimeParseException notDate) {
+                return null;
+            }
+        }
+    }
+
+    /** @return the HTTP status code */
+    public int statusCode() {
+        return statusCode;
+    }
+
+    /** @return the delay requested by the server, or {@code null} if none was given */
+    public Duration retryAfter() {
+        return retryAfter;
+    }
+
+    /** @return true for {@code 429 Too Many Requests} */
+    public boolean isRateLimited() {
+        return statusCode == 429;
+    }
+
+    /**
+     * @return true if repeating the same request later may succeed: timeouts, rate
+     *         limiting and server errors; other client errors reject the request itself
+     */
+    public boolean isRetryable() {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+}
@@ -1,16 +1,27 @@
 package com.example;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 /**
  * DTO for messages received from a Ntfy server.
  * Unknown JSON fields are ignored during deserialization.
+ *
+ * @param attachment attached file, or {@code null} for a plain text message
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
-public record NtfyMessageDto(String id, long time, String event, String topic, String message) {
+public record NtfyMessageDto(String id, long time, String event, String topic, String message,
+                             @JsonInclude(JsonInclude.Include.NON_NULL) Attachment attachment) {
+
+    /**
+     * Creates a message without an attachment.
+     */
+    public NtfyMessageDto(String id, long time, String event, String topic, String message) {
+        this(id, time, event, topic, message, null);
+    }
 
     @Override
     public String toString() {
         return message;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,280 @@
+package com.example;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * {@link NtfyConnection} that receives over WebSockets, using ntfy's
+ * {@code /<topic>/ws} endpoint and {@link java.net.http.WebSocket}.
+ * <p>
+ * Every event arrives as one text message holding a JSON object, which is decoded
+ * straight into a {@link NtfyMessageDto} without line splitting; messages split into
+ * several frames are joined first. The next message is only requested once the
+ * handler has returned, so a slow handler applies backpressure like a streaming body.
+ * Handlers run on the {@link ExecutorStrategy}'s subscription executor, never on the
+ * HttpClient's threads.
+ * <p>
+ * ntfy's WebSocket endpoint is for subscribing only, so sends, attachments and polls
+ * go over HTTP through the wrapped {@link NtfyConnectionImpl}, sharing its client.
+ */
+public class NtfyWebSocketConnection implements NtfyConnection {
+
+    private final NtfyConnectionImpl http;
+    private final String webSocketUrl;
+    private volatile ChatMetrics metrics = ChatMetrics.NOOP;
+    private volatile LivenessMonitor livenessMonitor;
+
+    /**
+     * Creates a connection using the given hostname; the WebSocket URL is derived
+     * from it, e.g. {@code https://ntfy.sh} becomes {@code wss://ntfy.sh}.
+     *
+     * @param hostName Base URL of the Ntfy server
+     */
+    public NtfyWebSocketConnection(String hostName) {
+        this(new NtfyConnectionImpl(hostName), webSocketUrl(hostName));
+    }
+
+    /**
+     * Creates a connection that sends through the given HTTP connection.
+     *
+     * @param http         connection used for sends, attachments and polls
+     * @param webSocketUrl base URL of the WebSocket endpoint, e.g. {@code wss://ntfy.sh}
+     */
+    public NtfyWebSocketConnection(NtfyConnectionImpl http, String webSocketUrl) {
+        this.http = Objects.requireNonNull(http);
+        this.webSocketUrl = Objects.requireNonNull(webSocketUrl);
+    }
+
+    /**
+     * @param hostName an {@code http} or {@code https} base URL
+     * @return the matching {@code ws} or {@code wss} base URL
+     */
+    static String webSocketUrl(String hostName) {
+        if (hostName.startsWith("https://")) return "wss://" + hostName.substring(8);
+        if (hostName.startsWith("http://")) return "ws://" + hostName.substring(7);
+        return hostName;
+    }
+
+    /**
+     * Sets the metrics that receive parse failures of subscriptions opened afterwards,
+     * and of polls.
+     *
+     * @param metrics the metrics to report to
+     */
+    public void setMetrics(ChatMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+        http.setMetrics(metrics);
+    }
+
+    /**
+     * Sets the monitor that aborts WebSockets opened afterwards when they receive
+     * nothing, not even a keepalive or ping, for longer than its timeout.
+     *
+     * @param monitor the monitor, or {@code null} to trust WebSockets until they fail
+     * @see NtfyConnectionImpl#setLivenessMonitor(LivenessMonitor)
+     */
+    public void setLivenessMonitor(LivenessMonitor monitor) {
+        this.livenessMonitor = monitor;
+    }
+
+    @Override
+    public void send(String topic, String message) throws IOException {
+        http.send(topic, message);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        return http.sendAsync(topic, message);
+    }
+
+    @Override
+    public Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        return http.sendFile(topic, file, message, listener);
+    }
+
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        return http.poll(topic, since);
+    }
+
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    /**
+     * Subscribes to a topic over a WebSocket, first replaying cached messages published
+     * after {@code since}.
+     *
+     * @param topic          Topic to subscribe to.
+     * @param since          Message id, Unix timestamp or duration to resume from, or {@code null}.
+     * @param messageHandler Callback invoked for each received message.
+     * @return A {@link Subscription} that can be closed to stop listening; it also ends
+     *         when the server closes the WebSocket or the connection is lost.
+     */
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        String query = since == null ? "" : "?since=" + URLEncoder.encode(since, StandardCharsets.UTF_8);
+        ChatMetrics metrics = this.metrics;
+        WebSocketSubscription subscription = new WebSocketSubscription(messageHandler,
+                () -> metrics.parseFailure(topic), http.subscriptionExecutor());
+        LivenessMonitor monitor = this.livenessMonitor;
+        if (monitor != null) {
+            subscription.liveness = monitor.watch(silence -> subscription.tearDownStale(topic, silence, metrics));
+        }
+        http.httpClient().newWebSocketBuilder()
+                .buildAsync(URI.create(webSocketUrl + "/" + topic + "/ws" + query), subscription)
+                .whenComplete((webSocket, throwable) -> {
+                    if (throwable != null) {
+                        System.err.println("Failed to receive messages: " + throwable.getMessage());
+                        subscription.end();
+                    }
+                });
+        return subscription;
+    }
+
+    /**
+     * Listener of one WebSocket and the subscription controlling it.
+     */
+    private static final class WebSocketSubscription implements Subscription, WebSocket.Listener {
+
+        /** Used by one message at a time, see {@link #onText}. */
+        private final NdjsonDecoder decoder;
+        private final Executor executor;
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private volatile WebSocket webSocket;
+        private volatile boolean open = true;
+        /** Touched for every frame, or {@code null} if not monitored. */
+        private volatile LivenessMonitor.Handle liveness;
+        /** Frames of a message that arrived in several parts. */
+        private StringBuilder partial;
+
+        WebSocketSubscription(Consumer<NtfyMessageDto> messageHandler, Runnable failureListener, Executor executor) {
+            this.decoder = new NdjsonDecoder(message -> {
+                if (open) messageHandler.accept(message);
+            }, failureListener);
+            this.executor = executor;
+        }
+
+        @Override
+        public void onOpen(WebSocket webSocket) {
+            this.webSocket = webSocket;
+            touch();
+            if (open) {
+                webSocket.request(1);
+            } else {
+                webSocket.abort();
+            }
+        }
+
+        /**
+         * Decodes a complete message on the subscription executor and requests the next
+         * one when the handler is done, even if it failed. The returned stage keeps
+         * {@code data} valid until then.
+         */
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            touch();
+            if (!last || partial != null) {
+                if (partial == null) partial = new StringBuilder();
+                partial.append(data);
+                if (!last) {
+                    webSocket.request(1);
+                    return null;
+                }
+                data = partial;
+                partial = null;
+            }
+            CharSequence text = data;
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    decoder.decodeText(text);
+                } catch (RuntimeException e) {
+                    System.err.println("Message handler failed: " + e.getMessage());
+                } finally {
+                    webSocket.request(1);
+                }
+            }, executor);
+        }
+
+        @Override
+        public CompletionStage<?> onPing(WebSocket webSocket, ByteBuffer message) {
+            touch();
+            return WebSocket.Listener.super.onPing(webSocket, message);
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            end();
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            if (open) {
+                System.err.println("Subscription stream failed: " + error.getMessage());
+            }
+            end();
+        }
+
+        private void touch() {
+            LivenessMonitor.Handle liveness = this.liveness;
+            if (liveness != null) liveness.touch();
+        }
+
+        /** Aborts a WebSocket that has gone silent, ending the subscription. */
+        void tearDownStale(String topic, Duration silence, ChatMetrics metrics) {
+            if (!open) return;
+            System.err.println("Subscription to " + topic + " silent for " + silence.toMillis() + " ms, reconnecting");
+            metrics.streamStale(topic, silence.toNanos());
+            end();
+            WebSocket webSocket = this.webSocket;
+            if (webSocket != null) webSocket.abort();
+        }
+
+        void end() {
+            open = false;
+            LivenessMonitor.Handle liveness = this.liveness;
+            if (liveness != null) liveness.cancel();
+            closed.complete(null);
+        }
+
+        /**
+         * Stops the subscription and closes the WebSocket.
+         */
+        @Override
+        public void close() throws IOException {
+            open = false;
+            LivenessMonitor.Handle liveness = this.liveness;
+            if (liveness != null) liveness.cancel();
+            WebSocket webSocket = this.webSocket;
+            if (webSocket != null) {
+                webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "")
+                        .whenComplete((ws, throwable) -> webSocket.abort());
+            }
+            closed.complete(null);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open && !closed.isDone();
+        }
+
+        @Override
+        public CompletableFuture<Void> whenClosed() {
+            return closed.copy();
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Disk-backed queue of outgoing messages, sent as soon as the server can take them.
+ * <p>
+ * Every message is appended to a log file and forced to disk before
+ * {@link #enqueue(String, String)} returns, and marked as done once the server
+ * accepted or rejected it. Messages typed while offline therefore survive a restart;
+ * a crash between a send and its mark sends that message again. Messages of one
+ * topic are sent one at a time in the order they were queued; topics are sent
+ * independently of each other.
+ * <p>
+ * Sends are paced by a token bucket ({@link RateLimit}), so draining a long queue does
+ * not get the client rate limited or banned by the server. A {@code 429} answer pauses
+ * all sends for the server's {@code Retry-After} delay; network and server errors pause
+ * them with jittered exponential {@link Backoff}. {@link #retryNow()} ends a pause
+ * caused by network errors, e.g. when a subscription has reconnected. Messages the
+ * server rejects with another 4xx status, or that fail for any reason other than a
+ * network error, are dropped as failed.
+ */
+public class Outbox implements Closeable {
+
+    private static final String LOG_FILE = "outbox.log";
+    private static final byte QUEUED = 1;
+    private static final byte DONE = 2;
+    /** Size of a record without its length prefix and string contents. */
+    private static final int MIN_RECORD_LENGTH = 1 + 8;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ntfy-outbox");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final NtfyConnection connection;
+    private final RateLimit rateLimit;
+    private final Backoff backoff;
+    private final FileChannel log;
+    /** Queued messages per topic, oldest first; guarded by {@code this}. */
+    private final Map<String, ArrayDeque<Entry>> queues = new LinkedHashMap<>();
+    /** Topics with a send in flight. */
+    private final Set<String> sending = new HashSet<>();
+    private int pending;
+    private long nextSequence;
+    /** Token bucket state. */
+    private double tokens;
+    private long refilledAtNanos;
+    /** After failures sends wait until {@link #pausedUntilNanos}; rate limited by the server if {@link #pausedByServer}. */
+    private boolean paused;
+    private long pausedUntilNanos;
+    private boolean pausedByServer;
+    private int failedAttempts;
+    private ScheduledFuture<?> scheduledDrain;
+    private boolean closed;
+    private long sent;
+    private long rejected;
+    private long retries;
+    private long rateLimited;
+    /** Start of the current drain, i.e. when the queue last became non-empty, and its sends so far. */
+    private long drainStartNanos;
+    private long drainSent;
+    private long lastSentNanos;
+    private volatile ChatMetrics metrics = ChatMetrics.NOOP;
+
+    /**
+     * Opens an outbox with the default rate limit and backoff.
+     *
+     * @param directory  directory holding the outbox log; created if missing
+     * @param connection connection used for sending
+     * @throws IOException if the log cannot be opened or recovered
+     */
+    public Outbox(Path directory, NtfyConnection connection) throws IOException {
+        this(directory, connection, RateLimit.DEFAULT, Backoff.DEFAULT);
+    }
+
+    /**
+     * Opens an outbox and starts sending the messages left over from a previous run.
+     *
+     * @param directory  directory holding the outbox log; created if missing
+     * @param connection connection used for sending
+     * @param rateLimit  pace of sends
+     * @param backoff    delay policy after failed sends
+     * @throws IOException if the log cannot be opened or recovered
+     */
+    public Outbox(Path directory, NtfyConnection connection, RateLimit rateLimit, Backoff backoff) throws IOException {
+        this.connection = connection;
+        this.rateLimit = rateLimit;
+        this.backoff = backoff;
+        this.tokens = rateLimit.burst();
+        this.refilledAtNanos = System.nanoTime();
+        Path logPath = Files.createDirectories(directory).resolve(LOG_FILE);
+        for (Entry entry : recover(logPath)) {
+            add(entry);
+            nextSequence = entry.sequence() + 1;
+        }
+        this.log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        drain();
+    }
+
+    /**
+     * @return the default outbox location in the user's home directory
+     */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".javafx-chat-app", "outbox");
+    }
+
+    /**
+     * Sets the metrics that receive the queue depth.
+     *
+     * @param metrics the metrics to report to
+     */
+    public void setMetrics(ChatMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Queues a message and sends it once earlier messages of the topic are sent and
+     * the rate limit allows.
+     *
+     * @param topic   the topic to publish to
+     * @param message the message text
+     * @return a future completed when the server accepted the message, or completed
+     *         exceptionally if it rejected it or the message could not be stored
+     */
+    public CompletableFuture<Void> enqueue(String topic, String message) {
+        Entry entry;
+        synchronized (this) {
+            if (closed) return CompletableFuture.failedFuture(new IOException("Outbox is closed"));
+            entry = new Entry(nextSequence++, topic, message, new CompletableFuture<>());
+            try {
+                write(record(QUEUED, entry.sequence(), topic, message));
+                log.force(false);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            add(entry);
+        }
+        drain();
+        return entry.delivered();
+    }
+
+    /**
+     * Ends a pause after network errors and sends right away, e.g. because a
+     * subscription to the server has just reconnected. A pause after a {@code 429}
+     * or with {@code Retry-After} was requested by the server and is kept.
+     */
+    public void retryNow() {
+        synchronized (this) {
+            if (!paused || pausedByServer) return;
+            paused = false;
+            failedAttempts = 0;
+        }
+        drain();
+    }
+
+    /**
+     * @return number of queued messages not yet accepted by the server
+     */
+    public synchronized int pending() {
+        return pending;
+    }
+
+    /**
+     * @return a snapshot of the queue depth and drain throughput
+     */
+    public synchronized Stats stats() {
+        long elapsed = lastSentNanos - drainStartNanos;
+        double rate = drainSent == 0 || elapsed <= 0 ? 0 : drainSent * 1e9 / elapsed;
+        return new Stats(pending, sent, rejected, retries, rateLimited, rate);
+    }
+
+    /**
+     * Stops sending. Queued messages stay in the log and are sent by the next outbox
+     * opened on the same directory.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        if (scheduledDrain != null) scheduledDrain.cancel(false);
+        log.close();
+    }
+
+    private void add(Entry entry) {
+        queues.computeIfAbsent(entry.topic(), t -> new ArrayDeque<>()).addLast(entry);
+        if (pending++ == 0) {
+            drainStartNanos = System.nanoTime();
+            drainSent = 0;
+        }
+        metrics.outboxDepth(pending);
+    }
+
+    /**
+     * Starts sending the oldest message of every idle topic as far as the rate limit allows,
+     * or schedules itself for when the pause ends or the next token is available.
+     */
+    private void drain() {
+        List<Entry> batch = new ArrayList<>();
+        synchronized (this) {
+            if (closed) return;
+            long now = System.nanoTime();
+            if (paused && now - pausedUntilNanos < 0) {
+                schedule(pausedUntilNanos - now);
+                return;
+            }
+            paused = false;
+            pausedByServer = false;
+            for (ArrayDeque<Entry> queue : queues.values()) {
+                Entry next = queue.peekFirst();
+                if (next == null || sending.contains(next.topic())) continue;
+                long wait = takeToken(now);
+                if (wait > 0) {
+                    schedule(wait);
+                    break;
+                }
+                sending.add(next.topic());
+                batch.add(next);
+            }
+        }
+        for (Entry entry : batch) {
+            CompletableFuture<Void> send;
+            try {
+                send = connection.sendAsync(entry.topic(), entry.message());
+            } catch (RuntimeException e) {
+                send = CompletableFuture.failedFuture(e);
+            }
+            send.whenCompleteAsync((v, throwable) -> completed(entry, throwable), SCHEDULER);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket.
+     *
+     * @return 0 if a token was taken, otherwise nanoseconds until one is available
+     */
+    private long takeToken(long now) {
+        if (rateLimit.isUnlimited()) return 0;
+        long interval = rateLimit.replenish().toNanos();
+        tokens = Math.min(rateLimit.burst(), tokens + (double) (now - refilledAtNanos) / interval);
+        refilledAtNanos = now;
+        if (tokens >= 1) {
+            tokens--;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * interval);
+    }
+
+    private void schedule(long delayNanos) {
+        if (scheduledDrain != null && !scheduledDrain.isDone()) {
+            if (scheduledDrain.getDelay(TimeUnit.NANOSECONDS) <= delayNanos) return;
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrain = SCHEDULER.schedule(this::drain, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void completed(Entry entry, Throwable throwable) {
+        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause() : throwable;
+        synchronized (this) {
+            sending.remove(entry.topic());
+            if (closed) return;
+            if (cause == null) {
+                sent++;
+                drainSent++;
+                lastSentNanos = System.nanoTime();
+                failedAttempts = 0;
+                remove(entry);
+            } else if (!isRetryable(cause)) {
+                System.err.println("Message to " + entry.topic() + " rejected: " + cause);
+                rejected++;
+                remove(entry);
+            } else {
+                pause(entry, cause);
+            }
+        }
+        if (cause == null) {
+            entry.delivered().complete(null);
+        } else if (!isRetryable(cause)) {
+            entry.delivered().completeExceptionally(cause);
+        }
+        drain();
+    }
+
+    /**
+     * Only network errors and retryable HTTP statuses are worth another attempt. Anything
+     * else, e.g. a topic the connection cannot even build a request for, would fail the
+     * same way forever and hold up every topic behind its pause.
+     */
+    private static boolean isRetryable(Throwable cause) {
+        if (cause instanceof NtfyHttpException http) return http.isRetryable();
+        return cause instanceof IOException || cause instanceof UncheckedIOException;
+    }
+
+    /**
+     * Pauses all sends after a failure, for as long as the server asked or else by backoff.
+     */
+    private void pause(Entry entry, Throwable cause) {
+        retries++;
+        Duration retryAfter = null;
+        boolean byServer = false;
+        if (cause instanceof NtfyHttpException http) {
+            if (http.isRateLimited()) {
+                rateLimited++;
+                tokens = 0;
+            }
+            retryAfter = http.retryAfter();
+            byServer = http.isRateLimited() || retryAfter != null;
+        }
+        long delayNanos = retryAfter != null ? retryAfter.toNanos()
+                : TimeUnit.MILLISECONDS.toNanos(backoff.delayMillis(failedAttempts++));
+        long until = System.nanoTime() + delayNanos;
+        if (!paused || until - pausedUntilNanos > 0) {
+            pausedUntilNanos = until;
+            pausedByServer = byServer;
+        }
+        paused = true;
+        System.err.println("Message to " + entry.topic() + " not sent, retrying in "
+                + TimeUnit.NANOSECONDS.toMillis(delayNanos) + " ms: " + cause.getMessage());
+    }
+
+    /**
+     * Removes a sent or rejected message from its queue and marks it as done in the log.
+     * The log is emptied whenever nothing is pending.
+     */
+    private void remove(Entry entry) {
+        ArrayDeque<Entry> queue = queues.get(entry.topic());
+        queue.removeFirst();
+        if (queue.isEmpty()) queues.remove(entry.topic());
+        pending--;
+        metrics.outboxDepth(pending);
+        try {
+            if (pending == 0) {
+                log.truncate(0);
+            } else {
+                write(record(DONE, entry.sequence(), null, null));
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to update outbox: " + e.getMessage());
+        }
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) {
+            log.write(record);
+        }
+    }
+
+    /**
+     * Record layout: {@code int length | byte type | long sequence}, followed for
+     * {@code QUEUED} records by {@code int topicLength | topic | int messageLength | message},
+     * where {@code length} covers everything after itself, strings are UTF-8 and a
+     * string length of -1 stands for {@code null}.
+     */
+    private static ByteBuffer record(byte type, long sequence, String topic, String message) {
+        byte[] topicBytes = bytes(topic);
+        byte[] messageBytes = bytes(message);
+        int length = MIN_RECORD_LENGTH + (type == QUEUED ? size(topicBytes) + size(messageBytes) : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length).putInt(length).put(type).putLong(sequence);
+        if (type == QUEUED) {
+            putString(buffer, topicBytes);
+            putString(buffer, messageBytes);
+        }
+        return buffer.flip();
+    }
+
+    /**
+     * Reads the log left by a previous run and rewrites it with only the messages
+     * that were not done. A torn record at the end, e.g. from a crash, is dropped.
+     *
+     * @return the pending messages in the order they were queued
+     */
+    private static List<Entry> recover(Path logPath) throws IOException {
+        if (!Files.exists(logPath)) return List.of();
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(logPath));
+        Map<Long, Entry> entries = new TreeMap<>();
+        try {
+            while (buffer.remaining() >= 4) {
+                int length = buffer.getInt();
+                if (length < MIN_RECORD_LENGTH || length > buffer.remaining()) break;
+                ByteBuffer record = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                byte type = record.get();
+                long sequence = record.getLong();
+                if (type == QUEUED) {
+                    entries.put(sequence, new Entry(sequence, getString(record), getString(record),
+                            new CompletableFuture<>()));
+                } else if (type == DONE) {
+                    entries.remove(sequence);
+                } else {
+                    break;
+                }
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException torn) {
+            // Keep what was read before the damaged record
+        }
+        Path compacted = logPath.resolveSibling(LOG_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : entries.values()) {
+                ByteBuffer record = record(QUEUED, entry.sequence(), entry.topic(), entry.message());
+                while (record.hasRemaining()) out.write(record);
+            }
+            out.force(true);
+        }
+        Files.move(compacted, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new ArrayList<>(entries.values());
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int size(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes == null ? -1 : bytes.length);
+        if (bytes != null) buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A queued message.
+     *
+     * @param sequence  position in the log, increasing in queue order
+     * @param topic     the topic to publish to
+     * @param message   the message text
+     * @param delivered completed when the server accepted or rejected the message
+     */
+    private record Entry(long sequence, String topic, String message, CompletableFuture<Void> delivered) {
+    }
+
+    /**
+     * Snapshot of the outbox.
+     *
+     * @param pending        messages waiting to be sent
+     * @param sent           messages accepted by the server since the outbox was opened
+     * @param rejected       messages dropped because the server rejected them
+     * @param retries        failed sends that will be repeated
+     * @param rateLimited    sends answered with {@code 429 Too Many Requests}
+     * @param sendsPerSecond throughput of the current or last drain, i.e. since the queue
+     *                       was last empty; 0 until a message was sent
+     */
+    public record Stats(int pending, long sent, long rejected, long retries, long rateLimited, double sendsPerSecond) {
+    }
+}
@@ -0,0 +1,24 @@
+package com.example;
+
+/**
+ * What a bounded {@link MessageBatcher} does with a new item when its queue is full,
+ * e.g. because the JavaFX thread is stalled by a GC pause or a modal dialog.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Blocks the producer until there is room. For a subscription this stops reading
+     * the response body, so the server is slowed down by TCP flow control and
+     * nothing is lost.
+     */
+    BLOCK,
+
+    /** Discards the oldest queued item to make room for the new one. */
+    DROP_OLDEST,
+
+    /**
+     * Discards new items while the queue is full and delivers a single marker item
+     * in their place, e.g. "42 messages skipped".
+     */
+    COLLAPSE
+}
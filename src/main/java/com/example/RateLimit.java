@@ -0,0 +1,37 @@
+package com.example;
+
+import java.time.Duration;
+
+/**
+ * Client-side request rate limit as a token bucket: up to {@code burst} requests can
+ * be made back to back, after which one more is allowed every {@code replenish}.
+ * This is the model ntfy uses for its own visitor limits.
+ *
+ * @param burst     number of requests that can be made at once
+ * @param replenish time after which one more request is allowed; zero for no limit
+ */
+public record RateLimit(int burst, Duration replenish) {
+
+    /**
+     * ntfy's default visitor limit is a burst of 60 requests replenished at one per 5 s;
+     * this stays below it to leave room for subscriptions and polls.
+     */
+    public static final RateLimit DEFAULT = new RateLimit(50, Duration.ofSeconds(5));
+
+    /** No limit. */
+    public static final RateLimit UNLIMITED = new RateLimit(1, Duration.ZERO);
+
+    public RateLimit {
+        if (burst < 1) {
+            throw new IllegalArgumentException("burst must be positive");
+        }
+        if (replenish.isNegative()) {
+            throw new IllegalArgumentException("replenish must not be negative");
+        }
+    }
+
+    /** @return true if requests are not limited */
+    public boolean isUnlimited() {
+        return replenish.isZero();
+    }
+}
@@ -0,0 +1,172 @@
+package com.example;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Subscription that survives lost streams.
+ * <p>
+ * It remembers the id of the last delivered message and, when the underlying
+ * stream ends without being closed, reconnects after a jittered exponential
+ * {@link Backoff}, passing that id as ntfy's {@code since} parameter so no
+ * message is skipped or delivered twice. Before the first message arrives, the
+ * time the stream was opened is used instead. State transitions are reported
+ * to a listener on the thread that observed them.
+ */
+public class ReconnectingSubscription implements NtfyConnection.Subscription {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ntfy-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final NtfyConnection connection;
+    private final String topic;
+    private final Consumer<NtfyMessageDto> messageHandler;
+    private final Consumer<ConnectionState> stateListener;
+    private final Backoff backoff;
+    private final CompletableFuture<Void> closedFuture = new CompletableFuture<>();
+
+    /** Resume point for the next stream: last message id, or a Unix timestamp. */
+    private volatile String resumeFrom;
+    private volatile boolean closed;
+    /** Set when the current stream delivers a message; resets the backoff. */
+    private volatile boolean receivedSinceOpen;
+    private NtfyConnection.Subscription current;
+    private ScheduledFuture<?> pendingReconnect;
+    private int failedAttempts;
+    private long reconnects;
+    private ConnectionState state = ConnectionState.DISCONNECTED;
+
+    /**
+     * Opens the first stream immediately.
+     *
+     * @param connection     connection used for every stream
+     * @param topic          topic to subscribe to
+     * @param since          initial resume point passed to the first stream, or {@code null}
+     * @param messageHandler receives every message on a background thread
+     * @param stateListener  notified of every {@link ConnectionState} change
+     * @param backoff        delay policy between reconnect attempts
+     * @throws RuntimeException if the first stream cannot be opened
+     */
+    public ReconnectingSubscription(NtfyConnection connection, String topic, String since,
+                                    Consumer<NtfyMessageDto> messageHandler,
+                                    Consumer<ConnectionState> stateListener, Backoff backoff) {
+        this.connection = connection;
+        this.topic = topic;
+        this.messageHandler = messageHandler;
+        this.stateListener = stateListener;
+        this.backoff = backoff;
+        this.resumeFrom = since;
+        open(true);
+    }
+
+    /**
+     * Stops reconnecting and closes the current stream.
+     */
+    @Override
+    public void close() throws IOException {
+        NtfyConnection.Subscription toClose;
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            if (pendingReconnect != null) pendingReconnect.cancel(false);
+            toClose = current;
+            current = null;
+            setState(ConnectionState.DISCONNECTED);
+        }
+        try {
+            if (toClose != null) toClose.close();
+        } finally {
+            closedFuture.complete(null);
+        }
+    }
+
+    /**
+     * A reconnecting subscription stays open, even while reconnecting, until closed.
+     */
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public CompletableFuture<Void> whenClosed() {
+        return closedFuture.copy();
+    }
+
+    /** @return id of the last delivered message, or the timestamp the next stream resumes from */
+    public String resumePoint() {
+        return resumeFrom;
+    }
+
+    /** @return number of reconnect attempts made so far */
+    public synchronized long reconnectCount() {
+        return reconnects;
+    }
+
+    /** @return the current connection state */
+    public synchronized ConnectionState state() {
+        return state;
+    }
+
+    private synchronized void open(boolean initial) {
+        if (closed) return;
+        String since = resumeFrom;
+        if (since == null) {
+            // Nothing received yet: a later reconnect resumes from the time of this attempt
+            resumeFrom = String.valueOf(Instant.now().getEpochSecond());
+        }
+        NtfyConnection.Subscription subscription;
+        try {
+            subscription = connection.receive(topic, since, this::deliver);
+        } catch (RuntimeException e) {
+            if (initial) throw e;
+            System.err.println("Reconnect to " + topic + " failed: " + e.getMessage());
+            scheduleReconnect();
+            return;
+        }
+        current = subscription;
+        receivedSinceOpen = false;
+        setState(ConnectionState.CONNECTED);
+        long openedAt = System.nanoTime();
+        subscription.whenClosed().whenComplete((v, t) -> streamEnded(subscription, openedAt));
+    }
+
+    private void deliver(NtfyMessageDto message) {
+        if (closed) return;
+        if (message.id() != null) resumeFrom = message.id();
+        receivedSinceOpen = true;
+        messageHandler.accept(message);
+    }
+
+    private synchronized void streamEnded(NtfyConnection.Subscription subscription, long openedAt) {
+        if (closed || subscription != current) return;
+        current = null;
+        // A stream that delivered messages or stayed up longer than the maximum delay was healthy
+        if (receivedSinceOpen || System.nanoTime() - openedAt > backoff.max().toNanos()) {
+            failedAttempts = 0;
+        }
+        scheduleReconnect();
+    }
+
+    private void scheduleReconnect() {
+        setState(ConnectionState.RECONNECTING);
+        long delay = backoff.delayMillis(failedAttempts++);
+        reconnects++;
+        pendingReconnect = SCHEDULER.schedule(() -> open(false), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void setState(ConnectionState newState) {
+        if (state == newState) return;
+        state = newState;
+        stateListener.accept(newState);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * {@link NtfyConnection} decorator that records the raw NDJSON stream of every
+ * subscription to a {@link StreamRecording}, with the time each line arrived, while
+ * passing messages on as usual. Keepalives and malformed lines are recorded too, so a
+ * {@link ReplayNtfyConnection} can reproduce the traffic exactly.
+ * <p>
+ * Sends, attachments and polls are passed through and not recorded.
+ */
+public class RecordingNtfyConnection implements NtfyConnection, Closeable {
+
+    private final NtfyConnectionImpl delegate;
+    private final StreamRecording.Writer writer;
+
+    /**
+     * Starts a new recording.
+     *
+     * @param delegate the connection whose streams are recorded
+     * @param file     the recording to create or replace
+     * @throws IOException if the file cannot be created
+     */
+    public RecordingNtfyConnection(NtfyConnectionImpl delegate, Path file) throws IOException {
+        this.delegate = Objects.requireNonNull(delegate);
+        this.writer = new StreamRecording.Writer(file);
+    }
+
+    @Override
+    public void send(String topic, String message) throws IOException {
+        delegate.send(topic, message);
+    }
+
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        return delegate.sendAsync(topic, message);
+    }
+
+    @Override
+    public Transfer<Void> sendFile(String topic, Path file, String message, Transfer.Listener listener) {
+        return delegate.sendFile(topic, file, message, listener);
+    }
+
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        return delegate.poll(topic, since);
+    }
+
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        return delegate.receive(topic, since, messageHandler, body -> new RecordingInputStream(body, topic));
+    }
+
+    /**
+     * Finishes the recording. Streams still open are no longer recorded.
+     */
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    /**
+     * Copies complete lines to the recording as the decoder reads them.
+     */
+    private final class RecordingInputStream extends FilterInputStream {
+        private final String topic;
+        /** Start of a line that has not been completed by a line break yet. */
+        private byte[] partial = new byte[256];
+        private int partialLength;
+        private boolean failed;
+
+        RecordingInputStream(InputStream in, String topic) {
+            super(in);
+            this.topic = topic;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                record(new byte[]{(byte) b}, 0, 1);
+            } else {
+                flushPartial();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                record(buffer, offset, n);
+            } else if (n < 0) {
+                flushPartial();
+            }
+            return n;
+        }
+
+        private void record(byte[] buffer, int offset, int length) {
+            long now = System.nanoTime();
+            int lineStart = offset;
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (buffer[i] != '\n') continue;
+                if (partialLength == 0) {
+                    writeLine(now, buffer, lineStart, i - lineStart);
+                } else {
+                    append(buffer, lineStart, i - lineStart);
+                    writeLine(now, partial, 0, partialLength);
+                    partialLength = 0;
+                }
+                lineStart = i + 1;
+            }
+            append(buffer, lineStart, end - lineStart);
+        }
+
+        /**
+         * Writes a line without its carriage return. A failing recording is reported
+         * once and then skipped, so that it does not end the subscription.
+         */
+        private void writeLine(long now, byte[] buffer, int offset, int length) {
+            if (failed) return;
+            if (length > 0 && buffer[offset + length - 1] == '\r') length--;
+            try {
+                writer.write(topic, now, buffer, offset, length);
+            } catch (IOException e) {
+                failed = true;
+                System.err.println("Failed to record stream of " + topic + ": " + e.getMessage());
+            }
+        }
+
+        private void append(byte[] buffer, int offset, int length) {
+            if (partialLength + length > partial.length) {
+                partial = Arrays.copyOf(partial, Math.max(partial.length * 2, partialLength + length));
+            }
+            System.arraycopy(buffer, offset, partial, partialLength, length);
+            partialLength += length;
+        }
+
+        /** Records an unterminated last line when the stream ends. */
+        private void flushPartial() {
+            if (partialLength > 0) {
+                writeLine(System.nanoTime(), partial, 0, partialLength);
+                partialLength = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * {@link NtfyConnection} that plays a {@link StreamRecording} back instead of talking
+ * to a server, for reproducing captured traffic in tests and benchmarks.
+ * <p>
+ * A subscription replays the recorded lines of the same topic string as a byte stream
+ * through {@link NdjsonDecoder#decode(InputStream)}, the decoding path of
+ * {@link NtfyConnectionImpl}, so keepalives are skipped and malformed lines are
+ * reported as they were live. Lines are released at their recorded times divided by
+ * {@code speed}, measured from the subscription's start, or all at once with
+ * {@link #AS_FAST_AS_POSSIBLE}. {@code since} is ignored. After the last line the
+ * subscription stays open, like a quiet stream, until it is closed.
+ * <p>
+ * Sends are accepted and discarded; polling is not supported.
+ */
+public class ReplayNtfyConnection implements NtfyConnection {
+
+    /** Speed that replays without waiting between lines. */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final List<StreamRecording.Line> lines;
+    private final double speed;
+    private final Executor executor;
+    private final Map<String, CompletableFuture<Void>> replayed = new ConcurrentHashMap<>();
+    private volatile ChatMetrics metrics = ChatMetrics.NOOP;
+
+    /**
+     * Replays a recording file on the default subscription threads.
+     *
+     * @param recording the recording
+     * @param speed     playback speed, 1 for the original timing
+     * @throws IOException if the recording cannot be read
+     */
+    public ReplayNtfyConnection(Path recording, double speed) throws IOException {
+        this(StreamRecording.read(recording), speed, ExecutorStrategy.DEFAULT.subscriptionExecutor());
+    }
+
+    /**
+     * Replays recorded lines.
+     *
+     * @param lines    the lines, e.g. from {@link StreamRecording#read(Path)}
+     * @param speed    playback speed, 1 for the original timing
+     * @param executor runs one task per subscription that decodes and calls the handler
+     */
+    public ReplayNtfyConnection(List<StreamRecording.Line> lines, double speed, Executor executor) {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("speed must be positive");
+        }
+        this.lines = List.copyOf(lines);
+        this.speed = speed;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Sets the metrics that receive parse failures of subscriptions opened afterwards.
+     *
+     * @param metrics the metrics to report to
+     */
+    public void setMetrics(ChatMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * @param topic topic string of a subscription
+     * @return a future completed when the first replay of the topic has delivered its last line
+     */
+    public CompletableFuture<Void> whenReplayed(String topic) {
+        return replayed.computeIfAbsent(topic, t -> new CompletableFuture<>()).copy();
+    }
+
+    /**
+     * Discards the message.
+     */
+    @Override
+    public void send(String topic, String message) {
+    }
+
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    @Override
+    public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        List<StreamRecording.Line> topicLines = lines.stream().filter(line -> line.topic().equals(topic)).toList();
+        ChatMetrics metrics = this.metrics;
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        CompletableFuture<Void> done = replayed.computeIfAbsent(topic, t -> new CompletableFuture<>());
+        executor.execute(() -> {
+            try {
+                new NdjsonDecoder(message -> {
+                    if (!closed.isDone()) messageHandler.accept(message);
+                }, () -> metrics.parseFailure(topic)).decode(new ReplayInputStream(topicLines, closed));
+            } catch (IOException e) {
+                System.err.println("Replay of " + topic + " failed: " + e.getMessage());
+            } finally {
+                done.complete(null);
+            }
+        });
+        return new Subscription() {
+            @Override
+            public void close() {
+                closed.complete(null);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return !closed.isDone();
+            }
+
+            @Override
+            public CompletableFuture<Void> whenClosed() {
+                return closed.copy();
+            }
+        };
+    }
+
+    /**
+     * Hands out one recorded line, with its line break, per read once it is due.
+     * Ends when all lines are read or the subscription is closed.
+     */
+    private final class ReplayInputStream extends InputStream {
+        private final List<StreamRecording.Line> lines;
+        private final CompletableFuture<Void> closed;
+        private final long startNanos = System.nanoTime();
+        private final long firstOffsetNanos;
+        private int next;
+        private byte[] current;
+        private int position;
+
+        ReplayInputStream(List<StreamRecording.Line> lines, CompletableFuture<Void> closed) {
+            this.lines = lines;
+            this.closed = closed;
+            this.firstOffsetNanos = lines.isEmpty() ? 0 : lines.getFirst().offsetNanos();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) return 0;
+            if (current == null || position == current.length) {
+                if (next == lines.size() || !awaitNextLine()) return -1;
+            }
+            int n = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, n);
+            position += n;
+            return n;
+        }
+
+        /** @return false if the subscription was closed while waiting */
+        private boolean awaitNextLine() throws IOException {
+            StreamRecording.Line line = lines.get(next++);
+            if (speed != AS_FAST_AS_POSSIBLE) {
+                long due = startNanos + (long) ((line.offsetNanos() - firstOffsetNanos) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        closed.get(wait, TimeUnit.NANOSECONDS);
+                    } catch (TimeoutException e) {
+                        // Due
+                    } catch (ExecutionException e) {
+                        return false;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted during replay", e);
+                    }
+                }
+            }
+            if (closed.isDone()) return false;
+            byte[] bytes = line.bytes();
+            current = new byte[bytes.length + 1];
+            System.arraycopy(bytes, 0, current, 0, bytes.length);
+            current[bytes.length] = '\n';
+            position = 0;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example;
+
+import java.time.Duration;
+
+/**
+ * Limits how much message history is kept in memory.
+ * A message is evicted as soon as any one of the limits is exceeded,
+ * oldest message first.
+ *
+ * @param maxCount maximum number of retained messages
+ * @param maxBytes maximum estimated heap size of retained messages
+ * @param maxAge   maximum age relative to {@link NtfyMessageDto#time()}, or {@code null} for no limit
+ */
+public record RetentionPolicy(int maxCount, long maxBytes, Duration maxAge) {
+
+    /** Keeps every message. */
+    public static final RetentionPolicy UNBOUNDED = new RetentionPolicy(Integer.MAX_VALUE, Long.MAX_VALUE, null);
+
+    /** Default policy used by {@link HelloModel}: the 10 000 most recent messages. */
+    public static final RetentionPolicy DEFAULT = ofCount(10_000);
+
+    /**
+     * Rough fixed heap cost of a message in {@link MessageHistory}: its time, topic and
+     * event codes and reference in the columns, and the header of its payload array.
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 8 + 4 + 4 + 16 + 8;
+
+    public RetentionPolicy {
+        if (maxCount < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Retention limits must not be negative");
+        }
+        if (maxAge != null && maxAge.isNegative()) {
+            throw new IllegalArgumentException("maxAge must not be negative");
+        }
+    }
+
+    /**
+     * @param maxCount maximum number of retained messages
+     * @return a policy limited only by message count
+     */
+    public static RetentionPolicy ofCount(int maxCount) {
+        return new RetentionPolicy(maxCount, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * @param maxBytes maximum estimated heap size of retained messages
+     * @return a copy of this policy with the given byte limit
+     */
+    public RetentionPolicy withMaxBytes(long maxBytes) {
+        return new RetentionPolicy(maxCount, maxBytes, maxAge);
+    }
+
+    /**
+     * @param maxAge maximum message age, or {@code null} for no limit
+     * @return a copy of this policy with the given age limit
+     */
+    public RetentionPolicy withMaxAge(Duration maxAge) {
+        return new RetentionPolicy(maxCount, maxBytes, maxAge);
+    }
+
+    /**
+     * Estimates the heap retained by a single message.
+     *
+     * @param message the message to measure
+     * @return approximate size in bytes
+     */
+    public static long estimateSize(NtfyMessageDto message) {
+        return MESSAGE_OVERHEAD_BYTES
+                + utf8Length(message.id())
+                + utf8Length(message.message());
+    }
+
+    private static int utf8Length(String s) {
+        if (s == null) return 0;
+        int length = s.length();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c >= 0x800) length += Character.isSurrogate(c) ? 1 : 2;
+            else if (c >= 0x80) length++;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Records the phases of application startup relative to the start of the JVM.
+ * <p>
+ * Sequential milestones, such as the FXML being loaded or the first frame being
+ * rendered, are recorded with {@link #mark(String)}. Work moved off the critical path
+ * runs through {@link #background(String, Supplier, Executor)}, which records when it
+ * started and finished, so the report shows what overlapped with what.
+ * Thread-safe.
+ */
+public class StartupTimer {
+
+    /** System property that makes the application print the startup report. */
+    public static final String REPORT_PROPERTY = "chat.startupTimings";
+
+    /** {@link System#nanoTime()} at JVM start. */
+    private final long originNanos;
+    private final List<Phase> phases = new ArrayList<>();
+    private final List<CompletableFuture<?>> backgroundTasks = new ArrayList<>();
+    private long lastMarkNanos;
+
+    /**
+     * Creates a timer measuring from the start of the JVM.
+     */
+    public StartupTimer() {
+        long uptimeNanos = ManagementFactory.getRuntimeMXBean().getUptime() * 1_000_000;
+        this.originNanos = System.nanoTime() - uptimeNanos;
+        this.lastMarkNanos = originNanos;
+    }
+
+    /**
+     * Records that a milestone was reached; its duration is the time since the previous milestone.
+     *
+     * @param phase name of the milestone
+     */
+    public synchronized void mark(String phase) {
+        long now = System.nanoTime();
+        phases.add(new Phase(phase, lastMarkNanos - originNanos, now - originNanos, false));
+        lastMarkNanos = now;
+    }
+
+    /**
+     * Runs a startup task on a background executor and records its start and end.
+     *
+     * @param phase    name of the task
+     * @param task     the work to do
+     * @param executor where to run it
+     * @return a future completed with the task's result
+     */
+    public <T> CompletableFuture<T> background(String phase, Supplier<T> task, Executor executor) {
+        CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } finally {
+                long end = System.nanoTime();
+                synchronized (this) {
+                    phases.add(new Phase(phase, start - originNanos, end - originNanos, true));
+                }
+            }
+        }, executor);
+        synchronized (this) {
+            backgroundTasks.add(future);
+        }
+        return future;
+    }
+
+    /**
+     * @return a future completed when all background tasks started so far have finished
+     */
+    public synchronized CompletableFuture<Void> whenSettled() {
+        return CompletableFuture.allOf(backgroundTasks.toArray(CompletableFuture[]::new))
+                .exceptionally(throwable -> null);
+    }
+
+    /** @return the recorded phases in the order they finished */
+    public synchronized List<Phase> phases() {
+        return List.copyOf(phases);
+    }
+
+    /**
+     * @return a table of all phases with their start, end and duration in milliseconds
+     */
+    public synchronized String report() {
+        StringBuilder report = new StringBuilder("Startup timings (ms since JVM start):\n");
+        for (Phase phase : phases) {
+            report.append(String.format(Locale.ROOT, "  %-22s %8.1f → %8.1f  %7.1f%s%n",
+                    phase.name(), phase.startNanos() / 1e6, phase.endNanos() / 1e6,
+                    phase.durationNanos() / 1e6, phase.background() ? "  (background)" : ""));
+        }
+        return report.toString();
+    }
+
+    /**
+     * One startup phase.
+     *
+     * @param name       phase name
+     * @param startNanos start, in nanoseconds since JVM start
+     * @param endNanos   end, in nanoseconds since JVM start
+     * @param background true if it ran off the JavaFX thread, in parallel with other phases
+     */
+    public record Phase(String name, long startNanos, long endNanos, boolean background) {
+
+        /** @return duration in nanoseconds */
+        public long durationNanos() {
+            return endNanos - startNanos;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File format for raw subscription streams, written by {@link RecordingNtfyConnection}
+ * and read by {@link ReplayNtfyConnection}.
+ * <p>
+ * A recording is a gzip stream starting with {@code NTFYREC} and a version byte,
+ * followed by one record per line of every recorded stream:
+ * <pre>
+ * varint  microseconds since the previous record
+ * varint  topic index; an index not seen before is followed by the topic
+ *         as varint length and UTF-8 bytes
+ * varint  line length
+ * bytes   the line as received, without the line break
+ * </pre>
+ * Lines are kept byte for byte, including {@code open} and {@code keepalive} events
+ * and lines that are not valid JSON. The writer flushes at most once per second, so a
+ * recording cut off by a crash or an unclean exit is still readable up to that point.
+ */
+public final class StreamRecording {
+
+    private static final byte[] MAGIC = "NTFYREC".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+
+    private StreamRecording() {
+    }
+
+    /**
+     * One recorded line.
+     *
+     * @param offsetNanos time the line arrived, relative to the start of the recording
+     * @param topic       topic, or comma-separated topics, of the subscription it arrived on
+     * @param bytes       the line without the line break
+     */
+    public record Line(long offsetNanos, String topic, byte[] bytes) {
+
+        /** @return the line decoded as UTF-8 */
+        public String text() {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads a whole recording into memory.
+     *
+     * @param file the recording
+     * @return its lines in the order they were recorded, up to the last complete record
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    public static List<Line> read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC) || in.read() != VERSION) {
+                throw new IOException("Not a stream recording: " + file);
+            }
+            List<Line> lines = new ArrayList<>();
+            List<String> topics = new ArrayList<>();
+            long offsetMicros = 0;
+            long delta;
+            try {
+                while ((delta = readVarint(in, true)) >= 0) {
+                    offsetMicros += delta;
+                    int topicIndex = (int) readVarint(in, false);
+                    if (topicIndex == topics.size()) {
+                        topics.add(new String(readBytes(in), StandardCharsets.UTF_8));
+                    } else if (topicIndex > topics.size()) {
+                        throw new IOException("Corrupt stream recording: " + file);
+                    }
+                    lines.add(new Line(offsetMicros * 1_000, topics.get(topicIndex), readBytes(in)));
+                }
+            } catch (EOFException e) {
+                // Recording was not closed; keep what was flushed
+            }
+            return lines;
+        }
+    }
+
+    private static byte[] readBytes(InputStream in) throws IOException {
+        int length = (int) readVarint(in, false);
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) throw new EOFException("Truncated stream recording");
+        return bytes;
+    }
+
+    /**
+     * @param endAllowed whether the stream may end before the first byte
+     * @return the value, or -1 at the allowed end of the stream
+     */
+    private static long readVarint(InputStream in, boolean endAllowed) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (endAllowed && shift == 0) return -1;
+                throw new EOFException("Truncated stream recording");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Corrupt stream recording");
+    }
+
+    /**
+     * Appends lines of any number of streams to a new recording. Thread-safe.
+     */
+    public static final class Writer implements Closeable {
+
+        private final OutputStream out;
+        private final Map<String, Integer> topics = new HashMap<>();
+        private final long startNanos = System.nanoTime();
+        private long lastMicros;
+        private long lastFlushNanos = startNanos;
+        private boolean closed;
+
+        /**
+         * Creates or replaces the file.
+         *
+         * @param file the recording to write
+         * @throws IOException if the file cannot be created
+         */
+        public Writer(Path file) throws IOException {
+            out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file), true));
+            out.write(MAGIC);
+            out.write(VERSION);
+        }
+
+        /**
+         * Appends one line.
+         *
+         * @param topic    topic of the subscription the line arrived on
+         * @param nanoTime {@link System#nanoTime()} when the line arrived
+         * @param buffer   bytes containing the line
+         * @param offset   start of the line
+         * @param length   length of the line, excluding the line break
+         * @throws IOException if writing fails
+         */
+        public synchronized void write(String topic, long nanoTime, byte[] buffer, int offset, int length)
+                throws IOException {
+            if (closed) return;
+            long micros = Math.max(lastMicros, (nanoTime - startNanos) / 1_000);
+            writeVarint(micros - lastMicros);
+            lastMicros = micros;
+            Integer index = topics.get(topic);
+            if (index == null) {
+                index = topics.size();
+                topics.put(topic, index);
+                writeVarint(index);
+                byte[] name = topic.getBytes(StandardCharsets.UTF_8);
+                writeVarint(name.length);
+                out.write(name);
+            } else {
+                writeVarint(index);
+            }
+            writeVarint(length);
+            out.write(buffer, offset, length);
+            if (nanoTime - lastFlushNanos > FLUSH_INTERVAL_NANOS) {
+                out.flush();
+                lastFlushNanos = nanoTime;
+            }
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        /**
+         * Finishes the gzip stream and closes the file. Later lines are ignored.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * {@link NtfyConnection} that multiplexes topic subscriptions onto a small number
+ * of shared streams of the underlying connection.
+ * <p>
+ * ntfy accepts comma-separated topic lists ({@code /t1,t2,t3/json}), so every
+ * shared stream carries up to {@code maxTopicsPerStream} topics. Incoming
+ * messages are dispatched to subscribers by {@link NtfyMessageDto#topic()}.
+ * Subscribers are reference-counted per topic; when the topic set of a stream
+ * changes, a replacement stream is opened with {@code since=<last id>} of the old
+ * one, which is closed once the replacement has delivered its {@code open} event.
+ * Messages delivered by both during the hand-over are dispatched only once.
+ * <p>
+ * A subscriber that passes {@code since} gets the cached messages of its topic first:
+ * through a new stream opened with {@code since}, or, when the topic joins a stream
+ * that other topics share, through a poll, holding back live messages until the
+ * backlog has been delivered. When a shared stream ends without being retired by
+ * the hub, the subscriptions of all its topics end, so that a
+ * {@link ReconnectingSubscription} around each one resumes it.
+ */
+public class SubscriptionHub implements NtfyConnection {
+
+    /** Default number of topics carried by one shared stream. */
+    public static final int DEFAULT_TOPICS_PER_STREAM = 50;
+    /** Number of recently dispatched message ids remembered for hand-over deduplication. */
+    private static final int RECENT_IDS = 1024;
+
+    private final NtfyConnection connection;
+    private final int maxTopicsPerStream;
+
+    /** Subscribers per topic; a topic is present while it has at least one subscriber. */
+    private final Map<String, List<HubSubscription>> subscribers = new ConcurrentHashMap<>();
+    /** Shared streams currently carrying subscribed topics. Guarded by {@code this}. */
+    private final List<SharedStream> streams = new ArrayList<>();
+    /** Recently dispatched ids. */
+    private final MessageDeduplicator recentIds = new MessageDeduplicator(RECENT_IDS);
+
+    /**
+     * Creates a hub that packs up to {@value #DEFAULT_TOPICS_PER_STREAM} topics per stream.
+     *
+     * @param connection the connection that shared streams are opened on
+     */
+    public SubscriptionHub(NtfyConnection connection) {
+        this(connection, DEFAULT_TOPICS_PER_STREAM);
+    }
+
+    /**
+     * Creates a hub with an explicit stream size.
+     *
+     * @param connection         the connection that shared streams are opened on
+     * @param maxTopicsPerStream maximum number of topics carried by one stream
+     */
+    public SubscriptionHub(NtfyConnection connection, int maxTopicsPerStream) {
+        if (maxTopicsPerStream < 1) {
+            throw new IllegalArgumentException("maxTopicsPerStream must be positive");
+        }
+        this.connection = connection;
+        this.maxTopicsPerStream = maxTopicsPerStream;
+    }
+
+    /**
+     * Sends directly through the underlying connection.
+     */
+    @Override
+    public void send(String topic, String message) throws IOException {
+        connection.send(topic, message);
+    }
+
+    /**
+     * Sends directly through the underlying connection.
+     */
+    @Override
+    public CompletableFuture<Void> sendAsync(String topic, String message) {
+        return connection.sendAsync(topic, message);
+    }
+
+    /**
+     * Polls directly through the underlying connection.
+     */
+    @Override
+    public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+        return connection.poll(topic, since);
+    }
+
+    /**
+     * Adds a subscriber for the topic that receives only new messages.
+     */
+    @Override
+    public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+        return receive(topic, null, messageHandler);
+    }
+
+    /**
+     * Adds a subscriber for the topic. The first subscriber of a topic adds it
+     * to a shared stream; further subscribers reuse that stream. The cached
+     * messages after {@code since} are delivered first, as described above.
+     */
+    @Override
+    public synchronized Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+        HubSubscription subscription = new HubSubscription(topic, messageHandler);
+        List<HubSubscription> handlers = subscribers.get(topic);
+        boolean backfill = since != null;
+        if (handlers == null) {
+            handlers = new CopyOnWriteArrayList<>();
+            subscribers.put(topic, handlers);
+            handlers.add(subscription);
+            // A topic that gets a stream of its own resumes through that stream
+            if (addTopic(topic, since)) backfill = false;
+        } else {
+            handlers.add(subscription);
+        }
+        subscription.stream = streamOf(topic);
+        if (backfill) subscription.backfill(since);
+        return subscription;
+    }
+
+    /** @return number of shared streams currently open */
+    public synchronized int streamCount() {
+        return streams.size();
+    }
+
+    /** @return number of topics with at least one subscriber */
+    public int topicCount() {
+        return subscribers.size();
+    }
+
+    private synchronized void unsubscribe(HubSubscription subscription) {
+        List<HubSubscription> handlers = subscribers.get(subscription.topic);
+        if (handlers == null || !handlers.remove(subscription)) return;
+        if (handlers.isEmpty()) {
+            subscribers.remove(subscription.topic);
+            removeTopic(subscription.topic);
+        }
+    }
+
+    /** @return the stream carrying the topic, or {@code null} */
+    private synchronized SharedStream streamOf(String topic) {
+        for (SharedStream stream : streams) {
+            if (stream.topics.contains(topic)) return stream;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the topic to the first stream with room, or opens a new stream.
+     * Only the affected stream is re-opened.
+     *
+     * @return true if a new stream was opened for the topic with {@code since}
+     */
+    private boolean addTopic(String topic, String since) {
+        for (int i = 0; i < streams.size(); i++) {
+            SharedStream stream = streams.get(i);
+            if (stream.topics.size() < maxTopicsPerStream) {
+                Set<String> topics = new LinkedHashSet<>(stream.topics);
+                topics.add(topic);
+                replace(i, topics);
+                return false;
+            }
+        }
+        SharedStream stream = open(Set.of(topic), since);
+        streams.add(stream);
+        watch(stream);
+        return true;
+    }
+
+    /**
+     * Removes the topic from its stream, closing the stream if it becomes empty.
+     */
+    private void removeTopic(String topic) {
+        for (int i = 0; i < streams.size(); i++) {
+            SharedStream stream = streams.get(i);
+            if (stream.topics.contains(topic)) {
+                Set<String> topics = new LinkedHashSet<>(stream.topics);
+                topics.remove(topic);
+                if (topics.isEmpty()) {
+                    streams.remove(i);
+                    closeQuietly(stream.subscription);
+                } else {
+                    replace(i, topics);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Opens a stream for the new topic set, resuming after the last message of the old
+     * stream, and retires the old stream once the new one is open or has ended, so
+     * topics carried by both streams see no gap.
+     */
+    private void replace(int index, Set<String> topics) {
+        SharedStream old = streams.get(index);
+        SharedStream replacement = open(topics, old.lastId);
+        streams.set(index, replacement);
+        replacement.subscription.whenOpened()
+                .applyToEither(replacement.subscription.whenClosed(), v -> v)
+                .whenComplete((v, t) -> closeQuietly(old.subscription));
+        watch(replacement);
+    }
+
+    /**
+     * @param since id to resume after, or {@code null} for new messages only
+     */
+    private SharedStream open(Set<String> topics, String since) {
+        SharedStream stream = new SharedStream(Collections.unmodifiableSet(new LinkedHashSet<>(topics)));
+        stream.subscription = connection.receive(String.join(",", stream.topics), since, message -> {
+            if (message.id() != null) stream.lastId = message.id();
+            dispatch(message);
+        });
+        return stream;
+    }
+
+    /** Ends the subscribers of a stream that ends while it is still in use. */
+    private void watch(SharedStream stream) {
+        stream.subscription.whenClosed().whenComplete((v, t) -> streamEnded(stream));
+    }
+
+    private void streamEnded(SharedStream stream) {
+        List<HubSubscription> ended = new ArrayList<>();
+        synchronized (this) {
+            // Retired and emptied streams were removed before they were closed
+            if (!streams.remove(stream)) return;
+            for (String topic : stream.topics) {
+                List<HubSubscription> handlers = subscribers.remove(topic);
+                if (handlers != null) ended.addAll(handlers);
+            }
+        }
+        System.err.println("Shared stream of " + stream.topics.size() + " topics ended");
+        ended.forEach(HubSubscription::end);
+    }
+
+    /**
+     * Delivers a message to the subscribers of its topic, skipping ids that were
+     * already dispatched by an overlapping stream.
+     */
+    private void dispatch(NtfyMessageDto message) {
+        List<HubSubscription> handlers = subscribers.get(message.topic());
+        if (handlers == null) return;
+        if (recentIds.isDuplicate(message.id())) return;
+        for (HubSubscription handler : handlers) {
+            handler.accept(message);
+        }
+    }
+
+    private static void closeQuietly(Subscription subscription) {
+        try {
+            subscription.close();
+        } catch (IOException e) {
+            System.err.println("Error closing shared stream: " + e.getMessage());
+        }
+    }
+
+    /**
+     * One subscriber of a topic.
+     */
+    private final class HubSubscription implements Subscription {
+        private final String topic;
+        private final Consumer<NtfyMessageDto> messageHandler;
+        private final CompletableFuture<Void> closed = new CompletableFuture<>();
+        private volatile boolean active = true;
+        /** Stream that carried the topic when subscribing. */
+        private volatile SharedStream stream;
+        /** Live messages held back while the backlog is fetched, or {@code null}. Guarded by {@code this}. */
+        private List<NtfyMessageDto> held;
+        /**
+         * Ids of the delivered backlog, skipped when the stream delivers them too; dropped at
+         * the first live message after the backlog. Guarded by {@code this}.
+         */
+        private Set<String> backlogIds;
+
+        HubSubscription(String topic, Consumer<NtfyMessageDto> messageHandler) {
+            this.topic = topic;
+            this.messageHandler = messageHandler;
+        }
+
+        /** Polls the cached messages after {@code since} and delivers them before any live message. */
+        void backfill(String since) {
+            synchronized (this) {
+                held = new ArrayList<>();
+            }
+            connection.poll(topic, since).whenComplete((backlog, throwable) -> {
+                if (throwable != null) {
+                    System.err.println("Failed to fetch the backlog of " + topic + ": " + throwable.getMessage());
+                }
+                release(throwable == null ? backlog : List.of());
+            });
+        }
+
+        private synchronized void release(List<NtfyMessageDto> backlog) {
+            backlogIds = new HashSet<>();
+            for (NtfyMessageDto message : backlog) {
+                if (message.id() != null) backlogIds.add(message.id());
+                if (active) messageHandler.accept(message);
+            }
+            List<NtfyMessageDto> live = held;
+            held = null;
+            live.forEach(this::accept);
+        }
+
+        synchronized void accept(NtfyMessageDto message) {
+            if (!active) return;
+            if (held != null) {
+                held.add(message);
+                return;
+            }
+            if (backlogIds != null) {
+                if (backlogIds.contains(message.id())) return;
+                backlogIds = null;
+            }
+            messageHandler.accept(message);
+        }
+
+        /** Ends the subscriber after its shared stream ended. */
+        void end() {
+            active = false;
+            closed.complete(null);
+        }
+
+        /**
+         * Removes this subscriber; the topic leaves its stream once no subscribers remain.
+         */
+        @Override
+        public void close() {
+            if (active) {
+                active = false;
+                unsubscribe(this);
+            }
+            closed.complete(null);
+        }
+
+        /**
+         * Indicates whether the subscriber is registered and its stream is open.
+         */
+        @Override
+        public boolean isOpen() {
+            SharedStream current = streamOf(topic);
+            return active && current != null && current.subscription.isOpen();
+        }
+
+        /**
+         * Completes when this subscriber is closed or its shared stream ended.
+         */
+        @Override
+        public CompletableFuture<Void> whenClosed() {
+            return closed.copy();
+        }
+
+        /**
+         * Completes when the stream that carried the topic when subscribing is open.
+         */
+        @Override
+        public CompletableFuture<Void> whenOpened() {
+            SharedStream stream = this.stream;
+            return stream == null ? new CompletableFuture<>() : stream.subscription.whenOpened();
+        }
+    }
+
+    /**
+     * One stream of the underlying connection and the topics it carries.
+     */
+    private static final class SharedStream {
+        final Set<String> topics;
+        /** Set right after the stream is opened, before it is published to other threads. */
+        Subscription subscription;
+        /** Id of the last message delivered by this stream, where a replacement resumes. */
+        volatile String lastId;
+
+        SharedStream(Set<String> topics) {
+            this.topics = topics;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least-recently-used pool of per-topic channels.
+ * <p>
+ * Keeps the channels of the last {@code maxSize} topics open, so switching back to
+ * one of them is a map lookup instead of a new connection. When a topic is added
+ * beyond the limit, the channel used longest ago is evicted and closed. Channels
+ * are typically a subscription plus a bounded buffer of the messages received
+ * while the topic is not shown.
+ * <p>
+ * Not thread-safe; the model uses it on the JavaFX thread only.
+ *
+ * @param <C> the channel type
+ */
+public class SubscriptionPool<C extends Closeable> {
+
+    /** Default number of topics kept connected. */
+    public static final int DEFAULT_MAX_SIZE = 4;
+
+    /** Channels in access order, least recently used first. */
+    private final LinkedHashMap<String, C> channels = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxSize;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a pool of {@value #DEFAULT_MAX_SIZE} topics.
+     */
+    public SubscriptionPool() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize maximum number of open channels, at least 1
+     */
+    public SubscriptionPool(int maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Returns the channel of a topic and marks it as most recently used.
+     *
+     * @param topic the topic
+     * @return the pooled channel, or {@code null} if the topic is not pooled
+     */
+    public C get(String topic) {
+        C channel = channels.get(topic);
+        if (channel != null) hits++;
+        else misses++;
+        return channel;
+    }
+
+    /**
+     * Adds the channel of a topic as most recently used, closing a channel it replaces
+     * and evicting the least recently used channels beyond the size limit.
+     *
+     * @param topic   the topic
+     * @param channel the open channel
+     * @return the evicted channels, already closed
+     */
+    public List<C> put(String topic, C channel) {
+        C previous = channels.put(topic, channel);
+        List<C> evicted = new ArrayList<>();
+        if (previous != null && previous != channel) {
+            close(topic, previous);
+            evicted.add(previous);
+        }
+        evicted.addAll(evictBeyond(maxSize));
+        evictions += evicted.size();
+        return evicted;
+    }
+
+    /**
+     * Removes and closes the channel of a topic.
+     *
+     * @param topic the topic
+     * @return the removed channel, or {@code null} if the topic was not pooled
+     */
+    public C remove(String topic) {
+        C channel = channels.remove(topic);
+        if (channel != null) close(topic, channel);
+        return channel;
+    }
+
+    /**
+     * Closes and removes all channels.
+     */
+    public void clear() {
+        evictBeyond(0);
+    }
+
+    /** @return true if the topic has a pooled channel; does not change the access order */
+    public boolean contains(String topic) {
+        return channels.containsKey(topic);
+    }
+
+    /** @return number of pooled channels */
+    public int size() {
+        return channels.size();
+    }
+
+    /** @return pooled topics, least recently used first */
+    public List<String> topics() {
+        return List.copyOf(channels.keySet());
+    }
+
+    /** @return pooled channels, least recently used first; does not change the access order */
+    public List<C> channels() {
+        return List.copyOf(channels.values());
+    }
+
+    /** @return maximum number of open channels */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Changes the size limit; channels beyond it are evicted immediately.
+     *
+     * @param maxSize maximum number of open channels, at least 1
+     * @return the evicted channels, already closed
+     */
+    public List<C> setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        List<C> evicted = evictBeyond(maxSize);
+        evictions += evicted.size();
+        return evicted;
+    }
+
+    /**
+     * Returns lookup and eviction counts since the pool was created.
+     */
+    public Stats stats() {
+        return new Stats(hits, misses, evictions, channels.size());
+    }
+
+    private List<C> evictBeyond(int limit) {
+        List<C> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, C>> it = channels.entrySet().iterator();
+        while (channels.size() > limit && it.hasNext()) {
+            Map.Entry<String, C> eldest = it.next();
+            it.remove();
+            close(eldest.getKey(), eldest.getValue());
+            evicted.add(eldest.getValue());
+        }
+        return evicted;
+    }
+
+    private static void close(String topic, Closeable channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("Error closing subscription to " + topic + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Pool usage counters.
+     *
+     * @param hits      lookups that found a pooled channel
+     * @param misses    lookups of topics that were not pooled
+     * @param evictions channels closed to stay within the size limit or because they were replaced
+     * @param size      number of pooled channels
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+
+        /** @return fraction of lookups that found a pooled channel */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+}
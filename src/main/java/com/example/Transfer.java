@@ -0,0 +1,216 @@
+package com.example;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Progress and result of a file upload or download.
+ * <p>
+ * The number of transferred bytes is updated as the HTTP client hands buffers to or
+ * from the network, and an optional {@link Listener} is notified on the I/O thread.
+ * {@link #cancel()} aborts the HTTP exchange; the result then completes with a
+ * {@link java.util.concurrent.CancellationException}.
+ *
+ * @param <T> the result type, e.g. {@code Void} for uploads or the file for downloads
+ */
+public final class Transfer<T> {
+
+    /**
+     * Receives progress updates on the thread doing the I/O.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        /** Ignores progress. */
+        Listener NONE = (transferred, total) -> {
+        };
+
+        /**
+         * @param transferred bytes transferred so far
+         * @param total       total bytes, or -1 if unknown
+         */
+        void progress(long transferred, long total);
+    }
+
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final AtomicLong transferred = new AtomicLong();
+    private final Listener listener;
+    private volatile long total;
+    /** The HTTP exchange, cancelled together with {@link #result}. */
+    private volatile CompletableFuture<?> exchange;
+
+    /**
+     * @param total    expected total bytes, or -1 if unknown
+     * @param listener receives progress updates
+     */
+    public Transfer(long total, Listener listener) {
+        this.total = total;
+        this.listener = listener;
+        result.whenComplete((value, throwable) -> {
+            CompletableFuture<?> running = exchange;
+            if (result.isCancelled() && running != null) running.cancel(true);
+        });
+    }
+
+    /**
+     * @return a transfer that already completed with the given value
+     */
+    public static <T> Transfer<T> completed(T value, long size) {
+        Transfer<T> transfer = new Transfer<>(size, Listener.NONE);
+        transfer.transferred.set(Math.max(size, 0));
+        transfer.result.complete(value);
+        return transfer;
+    }
+
+    /**
+     * @return a transfer that already failed with the given cause
+     */
+    public static <T> Transfer<T> failed(Throwable cause) {
+        Transfer<T> transfer = new Transfer<>(-1, Listener.NONE);
+        transfer.result.completeExceptionally(cause);
+        return transfer;
+    }
+
+    /** @return a future completed with the result, exceptionally on failure or cancellation */
+    public CompletableFuture<T> result() {
+        return result;
+    }
+
+    /** @return bytes transferred so far */
+    public long transferred() {
+        return transferred.get();
+    }
+
+    /** @return total bytes, or -1 if unknown */
+    public long total() {
+        return total;
+    }
+
+    /** @return fraction of the bytes transferred, or -1 if the total is unknown */
+    public double progress() {
+        long size = total;
+        if (size < 0) return -1;
+        return size == 0 ? 1 : Math.min(1, (double) transferred.get() / size);
+    }
+
+    /**
+     * Aborts the transfer.
+     *
+     * @return true if the transfer was still running
+     */
+    public boolean cancel() {
+        return result.cancel(true);
+    }
+
+    /** @return true if the transfer was cancelled */
+    public boolean isCancelled() {
+        return result.isCancelled();
+    }
+
+    /**
+     * Attaches the running HTTP exchange, cancelling it right away if the transfer
+     * was already cancelled.
+     */
+    void attach(CompletableFuture<?> exchange) {
+        this.exchange = exchange;
+        if (result.isCancelled()) exchange.cancel(true);
+    }
+
+    void complete(T value) {
+        result.complete(value);
+    }
+
+    void fail(Throwable cause) {
+        result.completeExceptionally(cause);
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    private void add(long bytes) {
+        listener.progress(transferred.addAndGet(bytes), total);
+    }
+
+    /**
+     * Wraps a request body so that bytes handed to the network are counted.
+     */
+    HttpRequest.BodyPublisher counting(HttpRequest.BodyPublisher body) {
+        return new HttpRequest.BodyPublisher() {
+            @Override
+            public long contentLength() {
+                return body.contentLength();
+            }
+
+            @Override
+            public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+                body.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                    @Override
+                    public void onSubscribe(Flow.Subscription subscription) {
+                        subscriber.onSubscribe(subscription);
+                    }
+
+                    @Override
+                    public void onNext(ByteBuffer item) {
+                        int bytes = item.remaining();
+                        subscriber.onNext(item);
+                        add(bytes);
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                        subscriber.onError(throwable);
+                    }
+
+                    @Override
+                    public void onComplete() {
+                        subscriber.onComplete();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Wraps a response body subscriber so that bytes received from the network are counted.
+     */
+    <R> HttpResponse.BodySubscriber<R> counting(HttpResponse.BodySubscriber<R> body) {
+        return new HttpResponse.BodySubscriber<>() {
+            @Override
+            public CompletionStage<R> getBody() {
+                return body.getBody();
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                body.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(List<ByteBuffer> item) {
+                long bytes = 0;
+                for (ByteBuffer buffer : item) {
+                    bytes += buffer.remaining();
+                }
+                body.onNext(item);
+                add(bytes);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                body.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                body.onComplete();
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * How a connection receives messages from ntfy. Sends always use HTTP.
+ */
+public enum Transport {
+
+    /** A streaming {@code GET /<topic>/json} per subscription; see {@link NtfyConnectionImpl}. */
+    HTTP,
+
+    /** A WebSocket to {@code /<topic>/ws} per subscription; see {@link NtfyWebSocketConnection}. */
+    WEBSOCKET;
+
+    /**
+     * Parses a transport name, e.g. from the {@code TRANSPORT} variable of the {@code .env} file.
+     *
+     * @param name {@code http}, {@code websocket} or {@code ws}, in any case; {@code null} for the default
+     * @return the transport; {@link #HTTP} if {@code name} is {@code null}
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static Transport parse(String name) {
+        if (name == null) return HTTP;
+        return switch (name.trim().toLowerCase(Locale.ROOT)) {
+            case "http" -> HTTP;
+            case "websocket", "ws" -> WEBSOCKET;
+            default -> throw new IllegalArgumentException("Unknown transport: " + name);
+        };
+    }
+
+    /**
+     * Creates a connection using this transport. Several comma-separated base URLs
+     * create a {@link ClusterNtfyConnection} with one connection of this transport per node.
+     *
+     * @param hostName Base URL of the Ntfy server, or several separated by commas
+     * @param metrics  receives parse failures
+     * @return the connection
+     */
+    public NtfyConnection connect(String hostName, ChatMetrics metrics) {
+        return connect(hostName, metrics, null);
+    }
+
+    /**
+     * Creates a connection using this transport whose subscriptions are torn down and
+     * reopened when they go silent.
+     *
+     * @param hostName Base URL of the Ntfy server, or several separated by commas
+     * @param metrics  receives parse failures and stale streams
+     * @param liveness watches the subscriptions of every node, or {@code null} for none
+     * @return the connection
+     */
+    public NtfyConnection connect(String hostName, ChatMetrics metrics, LivenessMonitor liveness) {
+        List<String> hostNames = Arrays.stream(hostName.split(","))
+                .map(String::trim)
+                .filter(host -> !host.isEmpty())
+                .toList();
+        if (hostNames.size() > 1) {
+            return new ClusterNtfyConnection(hostNames, host -> connectNode(host, metrics, liveness),
+                    ClusterNtfyConnection.DEFAULT_PROBE_INTERVAL, null);
+        }
+        return connectNode(hostName.trim(), metrics, liveness);
+    }
+
+    private NtfyConnection connectNode(String hostName, ChatMetrics metrics, LivenessMonitor liveness) {
+        return switch (this) {
+            case HTTP -> {
+                NtfyConnectionImpl connection = new NtfyConnectionImpl(hostName);
+                connection.setMetrics(metrics);
+                connection.setLivenessMonitor(liveness);
+                yield connection;
+            }
+            case WEBSOCKET -> {
+                NtfyWebSocketConnection connection = new NtfyWebSocketConnection(hostName);
+                connection.setMetrics(metrics);
+                connection.setLivenessMonitor(liveness);
+                yield connection;
+            }
+        };
+    }
+}
@@ -3,6 +3,8 @@ module hellofx {
     requires javafx.fxml;
     requires io.github.cdimascio.dotenv.java;
     requires java.net.http;
+    requires jdk.jfr;
+    requires java.management;
     requires tools.jackson.databind;
 
     opens com.example to javafx.fxml;
@@ -0,0 +1,77 @@
+package com.example;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@WireMockTest
+class AttachmentCacheTest {
+
+    @TempDir
+    Path dir;
+
+    private static Attachment attachment(WireMockRuntimeInfo wm, String name, long size) {
+        return new Attachment(name, null, size, 0, "http://localhost:" + wm.getHttpPort() + "/file/" + name);
+    }
+
+    @Test
+    @DisplayName("GIVEN an attachment opened once WHEN opening it again THEN it is served from disk without a new request")
+    void repeatedOpenIsServedFromDisk(WireMockRuntimeInfo wm) throws Exception {
+        stubFor(get("/file/a.txt").willReturn(ok("Hello attachment")));
+        var cache = new AttachmentCache(dir, 1024);
+
+        Path first = cache.open(attachment(wm, "a.txt", 16), Transfer.Listener.NONE).result().get(5, TimeUnit.SECONDS);
+        Transfer<Path> second = cache.open(attachment(wm, "a.txt", 16), Transfer.Listener.NONE);
+
+        assertThat(second.result()).isCompletedWithValue(first);
+        assertThat(Files.readString(first)).isEqualTo("Hello attachment");
+        verify(1, getRequestedFor(urlEqualTo("/file/a.txt")));
+        assertThat(cache.stats().hits()).isEqualTo(1);
+        assertThat(new AttachmentCache(dir, 1024).cached(attachment(wm, "a.txt", 16))).isEqualTo(first);
+    }
+
+    @Test
+    @DisplayName("GIVEN a size cap WHEN downloads exceed it THEN the least recently opened files are evicted")
+    void leastRecentlyOpenedFilesAreEvicted(WireMockRuntimeInfo wm) throws Exception {
+        stubFor(get(urlPathMatching("/file/.*")).willReturn(ok("x".repeat(400))));
+        var cache = new AttachmentCache(dir, 1000);
+
+        cache.open(attachment(wm, "a", 400), Transfer.Listener.NONE).result().get(5, TimeUnit.SECONDS);
+        cache.open(attachment(wm, "b", 400), Transfer.Listener.NONE).result().get(5, TimeUnit.SECONDS);
+        cache.open(attachment(wm, "a", 400), Transfer.Listener.NONE);
+        cache.open(attachment(wm, "c", 400), Transfer.Listener.NONE).result().get(5, TimeUnit.SECONDS);
+
+        assertThat(cache.cached(attachment(wm, "b", 400))).isNull();
+        assertThat(cache.cached(attachment(wm, "a", 400))).isNotNull();
+        assertThat(cache.size()).isEqualTo(800);
+        assertThat(cache.fileCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("GIVEN a running download WHEN cancelling it THEN no file is left in the cache")
+    void cancelledDownloadLeavesNoFile(WireMockRuntimeInfo wm) throws Exception {
+        stubFor(get("/file/slow").willReturn(ok("late").withFixedDelay(2_000)));
+        var cache = new AttachmentCache(dir, 1024);
+
+        Transfer<Path> transfer = cache.open(attachment(wm, "slow", 4), Transfer.Listener.NONE);
+        assertThat(transfer.cancel()).isTrue();
+
+        assertThat(transfer.isCancelled()).isTrue();
+        for (int i = 0; i < 100 && Files.list(dir).findAny().isPresent(); i++) {
+            Thread.sleep(20);
+        }
+        assertThat(dir).isEmptyDirectory();
+        assertThat(cache.open(attachment(wm, "slow", 4), Transfer.Listener.NONE).result())
+                .succeedsWithin(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,150 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterNtfyConnectionTest {
+
+    private static ClusterNtfyConnection cluster(ClusterNtfyConnection.Hedging hedging, LocalNtfyServer... servers) {
+        List<String> hosts = Arrays.stream(servers).map(LocalNtfyServer::url).toList();
+        return new ClusterNtfyConnection(hosts, NtfyConnectionImpl::new, Duration.ofMinutes(1), hedging);
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        for (int i = 0; i < 250 && list.size() < size; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a slow and a fast node WHEN sending THEN the fast node is used until it goes down")
+    void sendsGoToFastestHealthyNode() throws Exception {
+        try (var slow = new LocalNtfyServer(); var fast = new LocalNtfyServer()) {
+            slow.setResponseDelay(Duration.ofMillis(100));
+            try (var cluster = cluster(null, slow, fast)) {
+                cluster.probe().get(5, TimeUnit.SECONDS);
+                for (int i = 0; i < 3; i++) {
+                    cluster.send("mytopic", "Message " + i);
+                }
+                assertThat(fast.publishedCount()).isEqualTo(3);
+                assertThat(slow.publishedCount()).isZero();
+
+                fast.close();
+                cluster.send("mytopic", "After failure");
+
+                assertThat(slow.publishedCount()).isEqualTo(1);
+                assertThat(cluster.status()).extracting(ClusterNtfyConnection.NodeStatus::healthy)
+                        .containsExactly(true, false);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a subscription on one node WHEN that node shuts down THEN it resumes on the next node after the last id")
+    void subscriptionFailsOverWithResume() throws Exception {
+        try (var first = new LocalNtfyServer(); var second = new LocalNtfyServer()) {
+            second.setResponseDelay(Duration.ofMillis(50));
+            var firstConnection = new NtfyConnectionImpl(first.url());
+            var secondConnection = new NtfyConnectionImpl(second.url());
+            // Published on both, so the nodes assign the same ids like replicas would
+            firstConnection.send("mytopic", "One");
+            secondConnection.send("mytopic", "One");
+            try (var cluster = cluster(null, first, second)) {
+                cluster.probe().get(5, TimeUnit.SECONDS);
+                List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+                var subscription = cluster.receive("mytopic", "all", received::add);
+                awaitSize(received, 1);
+                secondConnection.send("mytopic", "Two");
+
+                first.close();
+                awaitSize(received, 2);
+                secondConnection.send("mytopic", "Three");
+                awaitSize(received, 3);
+
+                assertThat(subscription.isOpen()).isTrue();
+                assertThat(received).extracting(NtfyMessageDto::message).containsExactly("One", "Two", "Three");
+                subscription.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN healthy nodes whose streams end right away WHEN subscribing THEN the subscription ends after trying each node once")
+    void endlessFailoverEndsSubscription() throws Exception {
+        try (var first = new LocalNtfyServer(); var second = new LocalNtfyServer()) {
+            AtomicInteger streams = new AtomicInteger();
+            Function<String, NtfyConnection> connector = hostName -> new NtfyConnection() {
+                @Override
+                public void send(String topic, String message) {
+                }
+
+                @Override
+                public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+                    streams.incrementAndGet();
+                    return new Subscription() {
+                        @Override
+                        public void close() {
+                        }
+
+                        @Override
+                        public boolean isOpen() {
+                            return false;
+                        }
+
+                        @Override
+                        public CompletableFuture<Void> whenClosed() {
+                            return CompletableFuture.completedFuture(null);
+                        }
+                    };
+                }
+            };
+            try (var cluster = new ClusterNtfyConnection(List.of(first.url(), second.url()), connector,
+                    Duration.ofMinutes(1), null)) {
+                cluster.probe().get(5, TimeUnit.SECONDS);
+
+                var subscription = cluster.receive("mytopic", "all", message -> { });
+
+                assertThat(subscription.whenClosed()).succeedsWithin(Duration.ofSeconds(5));
+                assertThat(streams).hasValue(2);
+                assertThat(cluster.status()).extracting(ClusterNtfyConnection.NodeStatus::healthy)
+                        .containsExactly(true, true);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN hedging WHEN the chosen node stalls THEN the send is also started on the next node and completes early")
+    void slowSendIsHedged() throws Exception {
+        try (var primary = new LocalNtfyServer(); var secondary = new LocalNtfyServer()) {
+            secondary.setResponseDelay(Duration.ofMillis(30));
+            try (var cluster = cluster(ClusterNtfyConnection.Hedging.P95, primary, secondary)) {
+                cluster.probe().get(5, TimeUnit.SECONDS);
+                for (int i = 0; i < 25; i++) {
+                    cluster.send("mytopic", "Warm-up " + i);
+                }
+                // Let warm-up sends that were hedged themselves land first
+                Thread.sleep(200);
+                long hedgedBefore = secondary.publishedCount();
+
+                primary.setResponseDelay(Duration.ofSeconds(2));
+                long start = System.nanoTime();
+                cluster.sendAsync("mytopic", "Hedged").get(5, TimeUnit.SECONDS);
+
+                assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(1000));
+                assertThat(secondary.publishedCount()).isEqualTo(hedgedBefore + 1);
+            }
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.example;
 
 import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import javafx.collections.MapChangeListener;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -35,12 +39,79 @@ class HelloModelTest {
         model.setMessageToSend("Hello World");
         stubFor(post("/mytopic").willReturn(ok()));
 
-        model.sendMessage();
+        model.sendMessage().join();
 
         verify(postRequestedFor(urlEqualTo("/mytopic"))
                 .withRequestBody(matching("Hello World")));
     }
 
+    @Test
+    @DisplayName("GIVEN an edited topic field without reconnecting WHEN sending THEN the message goes to the shown topic")
+    void sendGoesToShownTopicWhileFieldIsEdited() {
+        var spy = new NtfyConnectionSpy();
+        var model = new HelloModel(spy);
+        model.connectToTopic();
+        model.setTopic("other");
+        model.setMessageToSend("Hello World");
+
+        model.sendMessage().join();
+
+        assertThat(spy.topic).isEqualTo("mytopic");
+        assertThat(model.getMessages()).singleElement()
+                .satisfies(echo -> assertThat(echo.topic()).isEqualTo("mytopic"));
+    }
+
+    @Test
+    @DisplayName("GIVEN a sent message WHEN the server's copy arrives THEN it replaces the local echo")
+    void sentMessageIsEchoedAndReplacedByServerCopy() {
+        var stub = new NtfyConnectionStub();
+        var model = new HelloModel(stub);
+        model.connectToTopic();
+        model.setMessageToSend("Hello World");
+
+        model.sendMessage().join();
+
+        NtfyMessageDto echo = model.getMessages().getFirst();
+        assertThat(echo.id()).startsWith("local-");
+        assertThat(model.getDeliveryStatus(echo)).isEqualTo(DeliveryStatus.DELIVERED);
+
+        stub.simulateIncomingMessage(new NtfyMessageDto("srv1", 1, "message", "mytopic", "Hello World"));
+
+        assertThat(model.getMessages()).extracting(NtfyMessageDto::id).containsExactly("srv1");
+        assertThat(model.getDeliveryStatuses()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("GIVEN a listener on the delivery statuses WHEN a garbage collection runs before sending THEN it is still notified")
+    void deliveryStatusListenerSurvivesGarbageCollection() {
+        var model = new HelloModel(new NtfyConnectionStub());
+        model.connectToTopic();
+        List<String> changed = new ArrayList<>();
+        model.getDeliveryStatuses().addListener(
+                (MapChangeListener<String, DeliveryStatus>) change -> changed.add(change.getKey()));
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        model.setMessageToSend("Hello World");
+
+        model.sendMessage().join();
+
+        assertThat(changed).isNotEmpty();
+    }
+
+    @Test
+    @DisplayName("GIVEN a server rejecting messages WHEN sending THEN the echo is marked as failed")
+    void rejectedSendMarksEchoAsFailed(WireMockRuntimeInfo wmRuntimeInfo) {
+        var model = new HelloModel(new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort()));
+        model.setMessageToSend("Hello World");
+        stubFor(post("/mytopic").willReturn(serverError()));
+
+        assertThat(model.sendMessage()).failsWithin(Duration.ofSeconds(5));
+
+        assertThat(model.getMessages()).singleElement()
+                .satisfies(echo -> assertThat(model.getDeliveryStatus(echo)).isEqualTo(DeliveryStatus.FAILED));
+    }
+
     @Test
     @DisplayName("GIVEN a stubbed connection WHEN receiving message THEN it should appear in the model's messages list")
     void receiveMessageAddsMessagesToList() throws InterruptedException {
@@ -57,6 +128,137 @@ class HelloModelTest {
                 .containsExactly("Hello world");
     }
 
+    @Test
+    @DisplayName("GIVEN a fake Ntfy server streaming NDJSON WHEN connecting THEN only message events are added to the list")
+    void receiveFromFakeServerSkipsNonMessageEvents(WireMockRuntimeInfo wmRuntimeInfo) throws InterruptedException {
+        stubFor(get("/mytopic/json").willReturn(ok("""
+                {"id":"o1","time":1,"event":"open","topic":"mytopic"}
+                {"id":"m1","time":2,"event":"message","topic":"mytopic","message":"First"}
+                {"id":"k1","time":3,"event":"keepalive","topic":"mytopic"}
+                not json
+                {"id":"m2","time":4,"event":"message","topic":"mytopic","message":"Second"}
+                """)));
+        var model = new HelloModel(new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort()));
+
+        model.connectToTopic();
+        for (int i = 0; i < 100 && model.getMessages().size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        model.disconnect();
+
+        assertThat(model.getMessages())
+                .extracting(NtfyMessageDto::message)
+                .containsExactly("First", "Second");
+    }
+
+    @Test
+    @DisplayName("GIVEN a stream that ends WHEN the model reconnects THEN it resumes after the last received message id")
+    void lostStreamReconnectsWithSinceLastId(WireMockRuntimeInfo wmRuntimeInfo) throws InterruptedException {
+        stubFor(get("/mytopic/json").willReturn(ok("""
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"Before"}
+                """)));
+        stubFor(get("/mytopic/json?since=m1").willReturn(ok("""
+                {"id":"m2","time":2,"event":"message","topic":"mytopic","message":"After"}
+                """)));
+        var model = new HelloModel(new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort()));
+        model.setReconnectBackoff(new Backoff(Duration.ofMillis(10), Duration.ofMillis(50), 2.0, 0.0));
+
+        model.connectToTopic();
+        for (int i = 0; i < 100 && model.getMessages().size() < 2; i++) {
+            Thread.sleep(50);
+        }
+        model.disconnect();
+
+        assertThat(model.getMessages())
+                .extracting(NtfyMessageDto::message)
+                .containsExactly("Before", "After");
+        verify(getRequestedFor(urlEqualTo("/mytopic/json?since=m1")));
+    }
+
+    @Test
+    @DisplayName("GIVEN cached history on the server WHEN connecting THEN it is backfilled and the live stream resumes after it")
+    void backfillIsMergedBeforeLiveStream(WireMockRuntimeInfo wmRuntimeInfo) throws InterruptedException {
+        stubFor(get("/mytopic/json?poll=1&since=all").willReturn(ok("""
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"First"}
+                {"id":"m2","time":2,"event":"message","topic":"mytopic","message":"Second"}
+                """)));
+        stubFor(get("/mytopic/json?since=m2").willReturn(ok("""
+                {"id":"m2","time":2,"event":"message","topic":"mytopic","message":"Second"}
+                {"id":"m3","time":3,"event":"message","topic":"mytopic","message":"Live"}
+                """)));
+        var model = new HelloModel(new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort()));
+
+        model.connectToTopic();
+        for (int i = 0; i < 100 && model.getMessages().size() < 3; i++) {
+            Thread.sleep(50);
+        }
+        model.disconnect();
+
+        assertThat(model.getMessages())
+                .extracting(NtfyMessageDto::message)
+                .containsExactly("First", "Second", "Live");
+    }
+
+    @Test
+    @DisplayName("GIVEN a topic shown before WHEN reconnecting after disconnect THEN its history is backfilled again")
+    void reconnectAfterDisconnectShowsHistory() throws Exception {
+        try (var server = new LocalNtfyServer()) {
+            var connection = new NtfyConnectionImpl(server.url());
+            connection.send("mytopic", "First");
+            connection.send("mytopic", "Second");
+            var model = new HelloModel(connection);
+            model.connectToTopic();
+            for (int i = 0; i < 100 && model.getMessages().size() < 2; i++) {
+                Thread.sleep(50);
+            }
+            model.disconnect();
+
+            model.connectToTopic();
+            for (int i = 0; i < 100 && model.getMessages().size() < 2; i++) {
+                Thread.sleep(50);
+            }
+            connection.send("mytopic", "Live");
+            for (int i = 0; i < 100 && model.getMessages().size() < 3; i++) {
+                Thread.sleep(50);
+            }
+            model.disconnect();
+
+            assertThat(model.getMessages())
+                    .extracting(NtfyMessageDto::message)
+                    .containsExactly("First", "Second", "Live");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a message already received WHEN it arrives again THEN it is added only once")
+    void duplicateMessagesAreDropped() {
+        var stub = new NtfyConnectionStub();
+        var model = new HelloModel(stub);
+        model.connectToTopic();
+
+        stub.simulateIncomingMessage(new NtfyMessageDto("1", 1, "message", "mytopic", "Hello"));
+        stub.simulateIncomingMessage(new NtfyMessageDto("1", 1, "message", "mytopic", "Hello"));
+
+        assertThat(model.getMessages()).hasSize(1);
+        assertThat(model.getDeduplicationStats().duplicates()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN a search query WHEN messages arrive THEN only matching ones appear in the search results")
+    void searchResultsFollowIncomingMessages() {
+        var stub = new NtfyConnectionStub();
+        var model = new HelloModel(stub);
+        model.connectToTopic();
+        stub.simulateIncomingMessage(new NtfyMessageDto("1", 1, "message", "mytopic", "Disk full on db-1"));
+
+        model.setSearchQuery("disk f");
+        stub.simulateIncomingMessage(new NtfyMessageDto("2", 2, "message", "mytopic", "CPU high on db-1"));
+        stub.simulateIncomingMessage(new NtfyMessageDto("3", 3, "message", "mytopic", "Disk fine again"));
+
+        assertThat(model.isSearching()).isTrue();
+        assertThat(model.getSearchResults()).extracting(NtfyMessageDto::id).containsExactly("1", "3");
+    }
+
     @Test
     @DisplayName("GIVEN a model with messages WHEN connecting to a new topic THEN old messages are cleared")
     void connectToTopicClearsMessages() {
@@ -74,6 +276,27 @@ class HelloModelTest {
         assertThat(model.getMessages()).isEmpty();
     }
 
+    @Test
+    @DisplayName("GIVEN a pooled topic WHEN switching back to it THEN messages received in the background are shown without resubscribing")
+    void switchingBackToPooledTopicKeepsBackgroundMessages() {
+        var stub = new NtfyConnectionStub();
+        var model = new HelloModel(stub);
+        model.connectToTopic();
+        model.setTopic("other");
+        model.connectToTopic();
+
+        stub.simulateIncomingMessage("mytopic", new NtfyMessageDto("1", 1, "message", "mytopic", "While away"));
+        assertThat(model.getMessages()).isEmpty();
+
+        model.setTopic("mytopic");
+        model.connectToTopic();
+
+        assertThat(model.getMessages()).extracting(NtfyMessageDto::message).containsExactly("While away");
+        assertThat(model.isConnected()).isTrue();
+        assertThat(stub.receiveCount).isEqualTo(2);
+        assertThat(model.getPooledTopics()).containsExactly("other", "mytopic");
+    }
+
     @Test
     @DisplayName("GIVEN an active subscription WHEN disconnecting THEN subscription should be closed")
     void disconnectClosesSubscription() {
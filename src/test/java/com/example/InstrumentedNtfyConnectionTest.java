@@ -0,0 +1,62 @@
+package com.example;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+class InstrumentedNtfyConnectionTest {
+
+    @Test
+    @DisplayName("GIVEN an instrumented connection WHEN sending and receiving THEN latency and per-topic counts are recorded")
+    void recordsSendLatencyAndReceivedMessages() throws Exception {
+        var stub = new NtfyConnectionStub();
+        var metrics = new InMemoryChatMetrics();
+        var connection = new InstrumentedNtfyConnection(stub, metrics);
+
+        connection.sendAsync("mytopic", "Hello").join();
+        connection.send("mytopic", "Hello again");
+        try (var subscription = connection.receive("mytopic", m -> {
+        })) {
+            long now = Instant.now().getEpochSecond();
+            stub.simulateIncomingMessage(new NtfyMessageDto("1", now, "message", "mytopic", "Hi"));
+            stub.simulateIncomingMessage(new NtfyMessageDto("2", now - 2, "message", "mytopic", "Hi"));
+        }
+
+        assertThat(metrics.sendLatency().count()).isEqualTo(2);
+        assertThat(metrics.failedSends()).isZero();
+        assertThat(metrics.receivedPerTopic()).containsEntry("mytopic", 2L);
+        assertThat(metrics.endToEndLatency().percentileNanos(100)).isGreaterThanOrEqualTo(2_000_000_000L);
+    }
+
+    @Test
+    @DisplayName("GIVEN a running JFR recording WHEN metrics are reported THEN custom chat events are recorded")
+    void jfrMetricsEmitEvents(@TempDir Path dir) throws Exception {
+        var metrics = new JfrChatMetrics();
+        Path file = dir.resolve("chat.jfr");
+
+        try (var recording = new Recording()) {
+            recording.enable("com.example.MessageSent");
+            recording.enable("com.example.Reconnect");
+            recording.start();
+            metrics.sendCompleted("mytopic", 1_000_000, true);
+            metrics.reconnecting("mytopic");
+            recording.stop();
+            recording.dump(file);
+        }
+
+        assertThat(RecordingFile.readAllEvents(file))
+                .extracting(e -> e.getEventType().getName(), (RecordedEvent e) -> e.getString("topic"))
+                .contains(
+                        tuple("com.example.MessageSent", "mytopic"),
+                        tuple("com.example.Reconnect", "mytopic"));
+    }
+}
@@ -0,0 +1,65 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LazyNtfyConnectionTest {
+
+    @Test
+    @DisplayName("GIVEN a subscription opened before the connection is ready WHEN it becomes ready THEN messages are streamed")
+    void subscriptionStartsWhenConnectionIsReady() {
+        var stub = new NtfyConnectionStub();
+        var pending = new CompletableFuture<NtfyConnectionStub>();
+        var lazy = new LazyNtfyConnection(pending);
+        List<String> received = new ArrayList<>();
+
+        var subscription = lazy.receive("mytopic", message -> received.add(message.message()));
+        assertThat(subscription.isOpen()).isTrue();
+        assertThat(stub.receiveCount).isZero();
+
+        pending.complete(stub);
+        stub.simulateIncomingMessage("mytopic", new NtfyMessageDto("1", 1, "message", "mytopic", "Hello"));
+
+        assertThat(received).containsExactly("Hello");
+    }
+
+    @Test
+    @DisplayName("GIVEN a subscription closed before the connection is ready WHEN it becomes ready THEN the real subscription is closed")
+    void closedSubscriptionIsNotStarted() throws IOException {
+        var stub = new NtfyConnectionStub();
+        var pending = new CompletableFuture<NtfyConnectionStub>();
+        var lazy = new LazyNtfyConnection(pending);
+        List<String> received = new ArrayList<>();
+
+        var subscription = lazy.receive("mytopic", message -> received.add(message.message()));
+        subscription.close();
+        pending.complete(stub);
+        stub.simulateIncomingMessage("mytopic", new NtfyMessageDto("1", 1, "message", "mytopic", "Hello"));
+
+        assertThat(subscription.whenClosed()).isDone();
+        assertThat(received).isEmpty();
+    }
+
+    @Test
+    @DisplayName("GIVEN a connection that fails to initialize WHEN using it THEN sends fail and subscriptions end")
+    void failedConnectionFailsSendsAndEndsSubscriptions() {
+        var lazy = new LazyNtfyConnection(CompletableFuture.failedFuture(new IllegalStateException("no HOST_NAME")));
+
+        assertThat(lazy.sendAsync("mytopic", "Hello")).isCompletedExceptionally();
+        assertThatThrownBy(() -> lazy.send("mytopic", "Hello"))
+                .isInstanceOf(IOException.class)
+                .hasRootCauseMessage("no HOST_NAME");
+        var subscription = lazy.receive("mytopic", message -> {
+        });
+        assertThat(subscription.isOpen()).isFalse();
+        assertThat(subscription.whenClosed()).isDone();
+    }
+}
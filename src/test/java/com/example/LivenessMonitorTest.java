@@ -0,0 +1,101 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LivenessMonitorTest {
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 250 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN watched streams WHEN only some receive events THEN just the silent one is flagged, once")
+    void flagsOnlySilentStreams() throws InterruptedException {
+        try (var monitor = new LivenessMonitor(Duration.ofMillis(100), 3)) {
+            List<Duration> silences = new CopyOnWriteArrayList<>();
+            AtomicInteger touchedStale = new AtomicInteger();
+            AtomicInteger cancelledStale = new AtomicInteger();
+            monitor.watch(silences::add);
+            var touched = monitor.watch(silence -> touchedStale.incrementAndGet());
+            monitor.watch(silence -> cancelledStale.incrementAndGet()).cancel();
+
+            for (int i = 0; i < 30; i++) {
+                touched.touch();
+                Thread.sleep(20);
+            }
+
+            assertThat(silences).singleElement()
+                    .satisfies(silence -> assertThat(silence).isGreaterThanOrEqualTo(monitor.timeout()));
+            assertThat(touchedStale).hasValue(0);
+            assertThat(cancelledStale).hasValue(0);
+            assertThat(monitor.staleCount()).isEqualTo(1);
+            assertThat(monitor.watchedCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN thousands of watched streams WHEN half go silent THEN exactly those are flagged")
+    void scalesToThousandsOfStreams() throws InterruptedException {
+        try (var monitor = new LivenessMonitor(Duration.ofMillis(100), 3)) {
+            AtomicInteger stale = new AtomicInteger();
+            List<LivenessMonitor.Handle> handles = new ArrayList<>();
+            for (int i = 0; i < 10_000; i++) {
+                handles.add(monitor.watch(silence -> stale.incrementAndGet()));
+            }
+
+            for (int round = 0; round < 8; round++) {
+                Thread.sleep(50);
+                for (int i = 0; i < handles.size(); i += 2) {
+                    handles.get(i).touch();
+                }
+            }
+            await(() -> stale.get() >= 5_000);
+
+            assertThat(stale).hasValue(5_000);
+            assertThat(monitor.watchedCount()).isEqualTo(5_000);
+            handles.forEach(LivenessMonitor.Handle::cancel);
+            assertThat(monitor.watchedCount()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a subscribed model WHEN the stream stalls without closing THEN it reconnects and resumes the missed messages")
+    void stalledStreamIsReopened() throws Exception {
+        try (var server = new LocalNtfyServer(0, Duration.ofMillis(50));
+             var monitor = new LivenessMonitor(Duration.ofMillis(50), 3)) {
+            var metrics = new InMemoryChatMetrics();
+            var connection = new NtfyConnectionImpl(server.url());
+            connection.setMetrics(metrics);
+            connection.setLivenessMonitor(monitor);
+            var model = new HelloModel(connection);
+            model.setReconnectBackoff(new Backoff(Duration.ofMillis(10), Duration.ofMillis(50), 2.0, 0.0));
+            List<ConnectionState> states = new CopyOnWriteArrayList<>();
+            model.connectionStateProperty().addListener((observable, oldState, newState) -> states.add(newState));
+            model.connectToTopic();
+            connection.send("mytopic", "Before");
+            await(() -> model.getMessages().size() == 1);
+
+            server.setStreamsStalled(true);
+            connection.send("mytopic", "While stalled");
+            await(() -> model.getMessages().size() == 2);
+            model.disconnect();
+
+            assertThat(model.getMessages()).extracting(NtfyMessageDto::message)
+                    .containsExactly("Before", "While stalled");
+            assertThat(states).contains(ConnectionState.RECONNECTING);
+            assertThat(metrics.staleStreams()).isPositive();
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.example;
+
+import javafx.collections.ListChangeListener;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator and soak test for the client.
+ * <p>
+ * Starts {@code clients} {@link HelloModel} instances, each with its own
+ * {@link NtfyConnectionImpl} subscribed to one of {@code topics} topics, and
+ * publishes to those topics at a target rate. Every message carries its sequence
+ * number and send time, so receivers measure end-to-end latency exactly. Every
+ * report interval a line with throughput, latency percentiles and heap use is
+ * printed; at the end, messages that were accepted by the server but never
+ * received count as lost.
+ * <p>
+ * Without {@code --host}, a {@link LocalNtfyServer} is started in-process, so the
+ * test needs no network. Options ({@code --name=value} or {@code --name value}):
+ * <pre>
+ *   --host      server URL                          (default: in-process server)
+ *   --clients   number of subscribing models        (default: 10)
+ *   --topics    number of topics                    (default: 5)
+ *   --rate      messages published per second       (default: 100)
+ *   --duration  run time, e.g. 90s, 30m, 4h         (default: 60s)
+ *   --report    report interval                     (default: 10s)
+ *   --max-loss  tolerated fraction of lost messages (default: 0)
+ * </pre>
+ * Exits with status 1 if more messages than {@code --max-loss} were lost.
+ */
+public final class LoadGenerator {
+
+    /** Prefix of message bodies published by the load generator. */
+    private static final String BODY_PREFIX = "loadgen ";
+    private static final Duration WARMUP = Duration.ofSeconds(2);
+    private static final Duration DRAIN = Duration.ofSeconds(10);
+    /** Flush interval of the models, roughly one JavaFX pulse. */
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(16);
+
+    private final Options options;
+    private final PrintStream out;
+    private final InMemoryChatMetrics.LatencyHistogram totalLatency = new InMemoryChatMetrics.LatencyHistogram();
+    private final AtomicReference<InMemoryChatMetrics.LatencyHistogram> intervalLatency =
+            new AtomicReference<>(new InMemoryChatMetrics.LatencyHistogram());
+    private final LongAdder received = new LongAdder();
+    private final LongAdder expected = new LongAdder();
+    private final LongAdder failedSends = new LongAdder();
+    private final LongAdder acknowledged = new LongAdder();
+    private final AtomicLong sent = new AtomicLong();
+    private int[] subscribersPerTopic;
+
+    private LoadGenerator(Options options, PrintStream out) {
+        this.options = options;
+        this.out = out;
+    }
+
+    /**
+     * Runs a load test with the given command line options.
+     */
+    public static void main(String[] args) throws Exception {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+            return;
+        }
+        Result result = run(options, System.out);
+        System.exit(result.lossRatio() > options.maxLoss() ? 1 : 0);
+    }
+
+    /**
+     * Runs a load test and prints progress to {@code out}.
+     *
+     * @param options the test parameters
+     * @param out     receives the periodic reports and the summary
+     * @return the final numbers
+     * @throws IOException if the in-process server cannot be started
+     */
+    public static Result run(Options options, PrintStream out) throws IOException, InterruptedException {
+        return new LoadGenerator(options, out).run();
+    }
+
+    private Result run() throws IOException, InterruptedException {
+        LocalNtfyServer server = options.host() == null ? new LocalNtfyServer() : null;
+        String host = server != null ? server.url() : options.host();
+        String runId = UUID.randomUUID().toString().substring(0, 8);
+        out.printf(Locale.ROOT, "Load test against %s: %d clients, %d topics, %.1f msg/s for %s%n",
+                host, options.clients(), options.topics(), options.rate(), options.duration());
+
+        subscribersPerTopic = new int[options.topics()];
+        List<HelloModel> models = new ArrayList<>();
+        for (int i = 0; i < options.clients(); i++) {
+            int topic = i % options.topics();
+            subscribersPerTopic[topic]++;
+            HelloModel model = new HelloModel(new NtfyConnectionImpl(host), FLUSH_INTERVAL, 1000);
+            model.setTopic(topicName(runId, topic));
+            model.connectToTopic();
+            model.getMessages().addListener((ListChangeListener<NtfyMessageDto>) change -> {
+                while (change.next()) {
+                    if (change.wasAdded()) change.getAddedSubList().forEach(this::received);
+                }
+            });
+            models.add(model);
+        }
+        Thread.sleep(WARMUP.toMillis());
+
+        long startHeap = liveHeap();
+        long startNanos = System.nanoTime();
+        NtfyConnectionImpl publisher = new NtfyConnectionImpl(host, 64);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, Thread.ofPlatform()
+                .name("loadgen-", 0).daemon(true).factory());
+        scheduler.scheduleAtFixedRate(() -> publish(publisher, runId, startNanos), 0, 10, TimeUnit.MILLISECONDS);
+        long reportMillis = options.report().toMillis();
+        scheduler.scheduleAtFixedRate(() -> report(startNanos), reportMillis, reportMillis, TimeUnit.MILLISECONDS);
+
+        Thread.sleep(options.duration().toMillis());
+        scheduler.shutdownNow();
+        scheduler.awaitTermination(5, TimeUnit.SECONDS);
+
+        // Let in-flight sends and deliveries finish
+        long drainUntil = System.nanoTime() + DRAIN.toNanos();
+        while (System.nanoTime() < drainUntil
+                && (pendingSends() > 0 || expected.sum() > received.sum())) {
+            Thread.sleep(50);
+        }
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        models.forEach(HelloModel::disconnect);
+        if (server != null) server.close();
+
+        Result result = new Result(sent.get(), failedSends.sum(), expected.sum(), received.sum(),
+                totalLatency, seconds, startHeap, liveHeap());
+        out.println(result.summary());
+        return result;
+    }
+
+    private long pendingSends() {
+        return sent.get() - failedSends.sum() - acknowledged.sum();
+    }
+
+    /**
+     * Publishes the messages due by now, round-robin across topics.
+     */
+    private void publish(NtfyConnection publisher, String runId, long startNanos) {
+        long due = (long) ((System.nanoTime() - startNanos) / 1e9 * options.rate());
+        for (long seq = sent.get(); seq < due; seq = sent.incrementAndGet()) {
+            int topic = (int) (seq % options.topics());
+            String body = BODY_PREFIX + seq + " " + System.currentTimeMillis();
+            publisher.sendAsync(topicName(runId, topic), body).whenComplete((v, throwable) -> {
+                if (throwable != null) {
+                    failedSends.increment();
+                } else {
+                    expected.add(subscribersPerTopic[topic]);
+                    acknowledged.increment();
+                }
+            });
+        }
+    }
+
+    private void received(NtfyMessageDto message) {
+        String body = message.message();
+        if (body == null || !body.startsWith(BODY_PREFIX)) return;
+        int space = body.lastIndexOf(' ');
+        long sentMillis = Long.parseLong(body, space + 1, body.length(), 10);
+        long latency = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - sentMillis);
+        totalLatency.record(latency);
+        intervalLatency.get().record(latency);
+        received.increment();
+    }
+
+    private void report(long startNanos) {
+        InMemoryChatMetrics.LatencyHistogram interval = intervalLatency.getAndSet(new InMemoryChatMetrics.LatencyHistogram());
+        long elapsed = (System.nanoTime() - startNanos) / 1_000_000_000;
+        out.printf(Locale.ROOT, "[%6ds] sent %d (failed %d, in flight %d) received %d (%.0f msg/s) latency ms p50 %.1f p95 %.1f p99 %.1f max %.1f heap %d MiB (%d MiB after GC)%n",
+                elapsed, sent.get(), failedSends.sum(), pendingSends(), received.sum(),
+                interval.count() / (double) options.report().toSeconds(),
+                millis(interval.percentileNanos(50)), millis(interval.percentileNanos(95)),
+                millis(interval.percentileNanos(99)), millis(interval.maxNanos()),
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() >> 20, heapAfterGc() >> 20);
+    }
+
+    private static String topicName(String runId, int topic) {
+        return "loadtest-" + runId + "-" + topic;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /** Heap in use right after a full collection. */
+    private static long liveHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Heap in use after the most recent collection of each heap pool, which unlike the
+     * current usage does not include garbage and so shows real growth over a long run.
+     */
+    private static long heapAfterGc() {
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getCollectionUsage() != null) {
+                used += pool.getCollectionUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Load test parameters.
+     *
+     * @param host     server URL, or {@code null} to start a {@link LocalNtfyServer}
+     * @param clients  number of subscribing models
+     * @param topics   number of topics
+     * @param rate     messages published per second
+     * @param duration publishing time
+     * @param report   interval between progress reports
+     * @param maxLoss  tolerated fraction of lost messages
+     */
+    public record Options(String host, int clients, int topics, double rate, Duration duration,
+                          Duration report, double maxLoss) {
+
+        public Options {
+            if (clients < 1 || topics < 1 || rate <= 0) {
+                throw new IllegalArgumentException("clients, topics and rate must be positive");
+            }
+        }
+
+        /**
+         * Parses command line options; unknown options are rejected.
+         *
+         * @throws IllegalArgumentException with a usage message on invalid input
+         */
+        public static Options parse(String[] args) {
+            String host = null;
+            int clients = 10;
+            int topics = 5;
+            double rate = 100;
+            Duration duration = Duration.ofSeconds(60);
+            Duration report = Duration.ofSeconds(10);
+            double maxLoss = 0;
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                int eq = arg.indexOf('=');
+                String name = eq < 0 ? arg : arg.substring(0, eq);
+                String value;
+                if (eq >= 0) {
+                    value = arg.substring(eq + 1);
+                } else if (i + 1 < args.length) {
+                    value = args[++i];
+                } else {
+                    throw new IllegalArgumentException("Missing value for " + name);
+                }
+                try {
+                    switch (name) {
+                        case "--host" -> host = value;
+                        case "--clients" -> clients = Integer.parseInt(value);
+                        case "--topics" -> topics = Integer.parseInt(value);
+                        case "--rate" -> rate = Double.parseDouble(value);
+                        case "--duration" -> duration = duration(value);
+                        case "--report" -> report = duration(value);
+                        case "--max-loss" -> maxLoss = Double.parseDouble(value);
+                        default -> throw new IllegalArgumentException("Unknown option " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid value for " + name + ": " + value);
+                }
+            }
+            return new Options(host, clients, topics, rate, duration, report, maxLoss);
+        }
+
+        /** Parses {@code 90s}, {@code 30m}, {@code 4h} or a plain number of seconds. */
+        static Duration duration(String value) {
+            char unit = value.charAt(value.length() - 1);
+            if (Character.isDigit(unit)) return Duration.ofSeconds(Long.parseLong(value));
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            return switch (unit) {
+                case 's' -> Duration.ofSeconds(amount);
+                case 'm' -> Duration.ofMinutes(amount);
+                case 'h' -> Duration.ofHours(amount);
+                default -> throw new NumberFormatException("Unknown unit " + unit);
+            };
+        }
+    }
+
+    /**
+     * Final numbers of a load test.
+     *
+     * @param sent          messages published
+     * @param failedSends   publishes the server did not accept
+     * @param expected      deliveries expected from accepted publishes, one per subscriber
+     * @param received      deliveries observed by the models
+     * @param latency       end-to-end latency of all deliveries
+     * @param seconds       run time including the drain period
+     * @param heapBefore    heap after GC at the start, in bytes
+     * @param heapAfter     heap after GC at the end, in bytes
+     */
+    public record Result(long sent, long failedSends, long expected, long received,
+                         InMemoryChatMetrics.LatencyHistogram latency, double seconds,
+                         long heapBefore, long heapAfter) {
+
+        /** @return deliveries that were expected but not observed */
+        public long lost() {
+            return Math.max(0, expected - received);
+        }
+
+        /** @return fraction of expected deliveries that were lost */
+        public double lossRatio() {
+            return expected == 0 ? 0 : (double) lost() / expected;
+        }
+
+        /** @return a human-readable summary */
+        public String summary() {
+            return String.format(Locale.ROOT,
+                    "Summary: sent %d (failed %d), received %d of %d expected, lost %d (%.3f%%), %.0f msg/s%n"
+                            + "  latency ms p50 %.1f p90 %.1f p99 %.1f p99.9 %.1f max %.1f%n"
+                            + "  live heap %d MiB -> %d MiB (%+d MiB)",
+                    sent, failedSends, received, expected, lost(), lossRatio() * 100, received / seconds,
+                    millis(latency.percentileNanos(50)), millis(latency.percentileNanos(90)),
+                    millis(latency.percentileNanos(99)), millis(latency.percentileNanos(99.9)),
+                    millis(latency.maxNanos()),
+                    heapBefore >> 20, heapAfter >> 20, (heapAfter - heapBefore) >> 20);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadGeneratorTest {
+
+    @Test
+    @DisplayName("GIVEN a local server WHEN publishing THEN subscribers receive the backlog since an id and live messages")
+    void localServerReplaysBacklogAndStreamsLiveMessages() throws Exception {
+        try (var server = new LocalNtfyServer()) {
+            var connection = new NtfyConnectionImpl(server.url());
+            connection.send("mytopic", "First");
+            connection.send("mytopic", "Second");
+            List<NtfyMessageDto> all = new CopyOnWriteArrayList<>();
+            var backlog = connection.receive("mytopic", "all", all::add);
+            for (int i = 0; i < 100 && all.size() < 2; i++) {
+                Thread.sleep(20);
+            }
+            backlog.close();
+
+            List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+            var subscription = connection.receive("mytopic", all.getFirst().id(), received::add);
+            connection.send("mytopic", "Third");
+            for (int i = 0; i < 100 && received.size() < 2; i++) {
+                Thread.sleep(20);
+            }
+            subscription.close();
+
+            assertThat(received).extracting(NtfyMessageDto::message).containsExactly("Second", "Third");
+            assertThat(server.publishedCount()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a short load test against the in-process server WHEN it completes THEN no message is lost")
+    void shortLoadTestLosesNoMessages() throws Exception {
+        var output = new ByteArrayOutputStream();
+        var options = new LoadGenerator.Options(null, 4, 2, 50, Duration.ofSeconds(1), Duration.ofMillis(500), 0);
+
+        LoadGenerator.Result result = LoadGenerator.run(options, new PrintStream(output, true, StandardCharsets.UTF_8));
+
+        assertThat(result.sent()).isGreaterThan(0);
+        assertThat(result.failedSends()).isZero();
+        assertThat(result.expected()).isEqualTo(result.sent() * 2);
+        assertThat(result.lost()).isZero();
+        assertThat(output.toString(StandardCharsets.UTF_8)).contains("Summary:");
+    }
+}
@@ -0,0 +1,492 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process stand-in for a ntfy server, for soak tests and benchmarks
+ * on machines without network access.
+ * <p>
+ * Implements the parts of the ntfy API this client uses:
+ * <ul>
+ *     <li>{@code POST /<topic>} publishes the request body as a message</li>
+ *     <li>{@code GET /<topic>[,<topic>...]/json} streams NDJSON: an {@code open} event,
+ *     cached messages selected by {@code since=<id|unix time|duration|all>}, then live
+ *     messages and periodic {@code keepalive} events; with {@code poll=1} only the
+ *     cached messages are returned, all of them unless {@code since} is given</li>
+ *     <li>{@code GET /v1/health} reports {@code {"healthy":true}}</li>
+ *     <li>{@code GET /<topic>[,<topic>...]/ws} on {@link #webSocketUrl()} streams the same
+ *     events as {@code /json}, one WebSocket text message each</li>
+ * </ul>
+ * The JDK's HTTP server cannot upgrade connections, so WebSockets are served by a
+ * minimal RFC 6455 endpoint on a second port.
+ * Each request and WebSocket runs on its own virtual thread. The last {@value #CACHE_SIZE} messages
+ * of every topic are cached for {@code since=}.
+ */
+public class LocalNtfyServer implements Closeable {
+
+    /** Number of messages cached per topic. */
+    public static final int CACHE_SIZE = 10_000;
+    private static final Duration DEFAULT_KEEPALIVE = Duration.ofSeconds(45);
+    /** Queued to a subscriber to end its stream. */
+    private static final String END_OF_STREAM = "";
+    /** Appended to the client's key to compute {@code Sec-WebSocket-Accept}. */
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ServerSocket webSockets;
+    private final Duration keepalive;
+    private final Map<String, Deque<NtfyMessageDto>> cache = new ConcurrentHashMap<>();
+    private final Map<String, List<BlockingQueue<String>>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private volatile Duration responseDelay = Duration.ZERO;
+    private volatile boolean streamsStalled;
+
+    static {
+        // Without TCP_NODELAY, Nagle's algorithm and delayed ACKs add ~40 ms to every response.
+        // Read once by the JDK server, so it must be set before the first server is created.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    /**
+     * Starts a server on a free port.
+     *
+     * @throws IOException if the server socket cannot be opened
+     */
+    public LocalNtfyServer() throws IOException {
+        this(0, DEFAULT_KEEPALIVE);
+    }
+
+    /**
+     * Starts a server.
+     *
+     * @param port      port to listen on, or 0 for a free port
+     * @param keepalive interval of keepalive events on idle subscription streams
+     * @throws IOException if the server socket cannot be opened
+     */
+    public LocalNtfyServer(int port, Duration keepalive) throws IOException {
+        this.keepalive = keepalive;
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/", this::handle);
+        server.start();
+        webSockets = new ServerSocket();
+        webSockets.bind(new InetSocketAddress("localhost", 0));
+        Thread.ofVirtual().name("local-ntfy-websockets").start(this::acceptWebSockets);
+    }
+
+    /**
+     * Runs a server until the process is stopped.
+     *
+     * @param args optional port, default 8080
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        LocalNtfyServer server = new LocalNtfyServer(port, DEFAULT_KEEPALIVE);
+        System.out.println("Local ntfy server listening on " + server.url());
+    }
+
+    /** @return base URL of the server, e.g. {@code http://localhost:12345} */
+    public String url() {
+        return "http://localhost:" + port();
+    }
+
+    /** @return base URL of the WebSocket endpoint, e.g. {@code ws://localhost:12346} */
+    public String webSocketUrl() {
+        return "ws://localhost:" + webSockets.getLocalPort();
+    }
+
+    /** @return the port the server listens on */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** @return number of messages published so far */
+    public long publishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Delays every following HTTP request before it is handled, to stand in for a slow node.
+     *
+     * @param delay the delay, or {@link Duration#ZERO} for none
+     */
+    public void setResponseDelay(Duration delay) {
+        this.responseDelay = delay;
+    }
+
+    /**
+     * Stalls or resumes all subscription streams. A stalled stream stays open but
+     * silently drops its messages and keepalives, like a half-open connection.
+     *
+     * @param stalled whether streams are stalled
+     */
+    public void setStreamsStalled(boolean stalled) {
+        this.streamsStalled = stalled;
+    }
+
+    /**
+     * Ends all subscription streams and stops the server.
+     */
+    @Override
+    public void close() {
+        subscribers.values().forEach(queues -> queues.forEach(queue -> queue.offer(END_OF_STREAM)));
+        server.stop(0);
+        try {
+            webSockets.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Duration delay = responseDelay;
+            if (!delay.isZero()) Thread.sleep(delay);
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals("/v1/health")) {
+                respond(exchange, 200, "{\"healthy\":true}\n");
+            } else if (method.equals("POST") || method.equals("PUT")) {
+                publish(exchange, path.substring(1));
+            } else if (method.equals("GET") && path.endsWith("/json") && path.length() > 6) {
+                subscribe(exchange, path.substring(1, path.length() - 5).split(","));
+            } else {
+                respond(exchange, 404, "{\"error\":\"not found\"}\n");
+            }
+        } catch (IOException e) {
+            // Client went away; nothing to clean up beyond the exchange itself
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void publish(HttpExchange exchange, String topic) throws IOException {
+        if (topic.isEmpty() || topic.contains("/")) {
+            respond(exchange, 404, "{\"error\":\"not found\"}\n");
+            return;
+        }
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        NtfyMessageDto message = new NtfyMessageDto(nextId(),
+                Instant.now().getEpochSecond(), "message", topic, body);
+        String line = mapper.writeValueAsString(message);
+        Deque<NtfyMessageDto> topicCache = cache.computeIfAbsent(topic, t -> new ArrayDeque<>());
+        synchronized (topicCache) {
+            topicCache.addLast(message);
+            if (topicCache.size() > CACHE_SIZE) topicCache.removeFirst();
+            // Queued while holding the cache lock, so a new subscriber sees each message exactly once
+            for (BlockingQueue<String> queue : subscribers.getOrDefault(topic, List.of())) {
+                queue.offer(line);
+            }
+        }
+        published.incrementAndGet();
+        respond(exchange, 200, line + "\n");
+    }
+
+    private void subscribe(HttpExchange exchange, String[] topics) throws IOException {
+        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+        boolean poll = "1".equals(query.get("poll")) || "true".equals(query.get("poll"));
+        // Polling without since returns everything cached, like ntfy
+        String since = query.getOrDefault("since", poll ? "all" : null);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        stream(topics, since, poll, new LinkedBlockingQueue<>(), new LineSink() {
+            @Override
+            public void write(String line) throws IOException {
+                writeLine(out, line);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        });
+    }
+
+    /**
+     * Writes an {@code open} event and the cached messages selected by {@code since},
+     * then, unless polling, live messages and keepalives until the queue receives
+     * {@link #END_OF_STREAM} or writing fails.
+     */
+    private void stream(String[] topics, String since, boolean poll, BlockingQueue<String> queue, LineSink out)
+            throws IOException {
+        List<String> backlog = new ArrayList<>();
+        for (String topic : topics) {
+            Deque<NtfyMessageDto> topicCache = cache.computeIfAbsent(topic, t -> new ArrayDeque<>());
+            synchronized (topicCache) {
+                for (NtfyMessageDto message : cached(topicCache, since)) {
+                    backlog.add(mapper.writeValueAsString(message));
+                }
+                if (!poll) subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>()).add(queue);
+            }
+        }
+
+        try {
+            if (!poll) {
+                out.write(event("open", String.join(",", topics)));
+            }
+            for (String line : backlog) {
+                out.write(line);
+            }
+            out.flush();
+            while (!poll) {
+                String line = queue.poll(keepalive.toMillis(), TimeUnit.MILLISECONDS);
+                if (line == END_OF_STREAM) break;
+                if (streamsStalled) continue;
+                out.write(line != null ? line : event("keepalive", String.join(",", topics)));
+                // Write everything already queued before flushing
+                while ((line = queue.poll()) != null && line != END_OF_STREAM) {
+                    out.write(line);
+                }
+                out.flush();
+                if (line == END_OF_STREAM) break;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (String topic : topics) {
+                List<BlockingQueue<String>> queues = subscribers.get(topic);
+                if (queues != null) queues.remove(queue);
+            }
+        }
+    }
+
+    private void acceptWebSockets() {
+        while (!webSockets.isClosed()) {
+            try {
+                Socket socket = webSockets.accept();
+                Thread.ofVirtual().start(() -> serveWebSocket(socket));
+            } catch (IOException e) {
+                // Closed by close()
+            }
+        }
+    }
+
+    /**
+     * Performs the opening handshake of a {@code GET /<topics>/ws} request and streams
+     * events as text messages until either side closes.
+     */
+    private void serveWebSocket(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String[] requestLine = readHeaderLine(in).split(" ");
+            Map<String, String> headers = new HashMap<>();
+            for (String line = readHeaderLine(in); !line.isEmpty(); line = readHeaderLine(in)) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT), line.substring(colon + 1).trim());
+                }
+            }
+            URI uri = URI.create(requestLine.length > 1 ? requestLine[1] : "/");
+            String path = uri.getRawPath();
+            String key = headers.get("sec-websocket-key");
+            if (!requestLine[0].equals("GET") || key == null || !path.endsWith("/ws") || path.length() <= 4) {
+                out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return;
+            }
+            String accept = Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1")
+                    .digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII)));
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+            Thread.ofVirtual().start(() -> readUntilClose(in, queue));
+            stream(path.substring(1, path.length() - 3).split(","), query(uri.getRawQuery()).get("since"), false,
+                    queue, new LineSink() {
+                        @Override
+                        public void write(String line) throws IOException {
+                            writeFrame(out, 0x1, line.getBytes(StandardCharsets.UTF_8));
+                        }
+
+                        @Override
+                        public void flush() throws IOException {
+                            out.flush();
+                        }
+                    });
+            writeFrame(out, 0x8, new byte[0]);
+            out.flush();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            // Client went away
+        }
+    }
+
+    /**
+     * Reads the client's frames, which only matter for noticing a close, and ends the stream then.
+     */
+    private static void readUntilClose(InputStream in, BlockingQueue<String> queue) {
+        try {
+            while (true) {
+                int first = in.read();
+                int second = in.read();
+                if (first < 0 || second < 0) break;
+                long length = second & 0x7F;
+                int extendedBytes = length == 126 ? 2 : length == 127 ? 8 : 0;
+                if (extendedBytes > 0) {
+                    length = 0;
+                    for (int i = 0; i < extendedBytes; i++) length = length << 8 | in.read();
+                }
+                // Client frames are masked with a 4-byte key
+                in.skipNBytes(length + ((second & 0x80) != 0 ? 4 : 0));
+                if ((first & 0x0F) == 0x8) break;
+            }
+        } catch (IOException e) {
+            // Connection lost
+        }
+        queue.offer(END_OF_STREAM);
+    }
+
+    /**
+     * Writes an unmasked, unfragmented frame, as sent by a server.
+     */
+    private static void writeFrame(OutputStream out, int opcode, byte[] payload) throws IOException {
+        out.write(0x80 | opcode);
+        if (payload.length < 126) {
+            out.write(payload.length);
+        } else if (payload.length < 65_536) {
+            out.write(126);
+            out.write(payload.length >>> 8);
+            out.write(payload.length & 0xFF);
+        } else {
+            out.write(127);
+            for (int shift = 56; shift >= 0; shift -= 8) out.write((int) ((long) payload.length >>> shift) & 0xFF);
+        }
+        out.write(payload);
+    }
+
+    private static String readHeaderLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') line.append((char) b);
+        }
+        if (b < 0 && line.isEmpty()) throw new EOFException("Connection closed during handshake");
+        return line.toString();
+    }
+
+    /**
+     * Selects the cached messages after {@code since}: an id, a Unix timestamp,
+     * a duration such as {@code 10m}, or {@code all}. Without {@code since}, none.
+     */
+    private static List<NtfyMessageDto> cached(Deque<NtfyMessageDto> topicCache, String since) {
+        if (since == null || since.isEmpty()) return List.of();
+        List<NtfyMessageDto> all = new ArrayList<>(topicCache);
+        if (since.equals("all")) return all;
+        long minTime = -1;
+        if (since.chars().allMatch(Character::isDigit)) {
+            minTime = Long.parseLong(since);
+        } else if (since.matches("\\d+[smhd]")) {
+            long amount = Long.parseLong(since.substring(0, since.length() - 1));
+            Duration duration = switch (since.charAt(since.length() - 1)) {
+                case 's' -> Duration.ofSeconds(amount);
+                case 'm' -> Duration.ofMinutes(amount);
+                case 'h' -> Duration.ofHours(amount);
+                default -> Duration.ofDays(amount);
+            };
+            minTime = Instant.now().minus(duration).getEpochSecond();
+        }
+        if (minTime >= 0) {
+            long min = minTime;
+            return all.stream().filter(m -> m.time() >= min).toList();
+        }
+        for (int i = 0; i < all.size(); i++) {
+            if (since.equals(all.get(i).id())) return all.subList(i + 1, all.size());
+        }
+        // Unknown id: like ntfy, return everything that is cached
+        return all;
+    }
+
+    private String event(String event, String topic) {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("id", nextId());
+        json.put("time", Instant.now().getEpochSecond());
+        json.put("event", event);
+        json.put("topic", topic);
+        return mapper.writeValueAsString(json);
+    }
+
+    /** Message ids are never all digits, so {@code since} can tell them apart from timestamps. */
+    private String nextId() {
+        return "m" + Long.toString(nextId.incrementAndGet(), 36);
+    }
+
+    private static void writeLine(OutputStream out, String line) throws IOException {
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (rawQuery == null) return params;
+        Arrays.stream(rawQuery.split("&")).forEach(pair -> {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        });
+        return params;
+    }
+
+    /**
+     * Destination of a subscription stream: NDJSON lines or WebSocket messages.
+     */
+    private interface LineSink {
+
+        void write(String line) throws IOException;
+
+        void flush() throws IOException;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageBatcherTest {
+
+    /** Executor that only runs tasks when the test pumps it, like a JavaFX pulse. */
+    private final Queue<Runnable> pulse = new ConcurrentLinkedQueue<>();
+    private final List<List<String>> batches = new ArrayList<>();
+
+    private void runPulse() {
+        Runnable task;
+        while ((task = pulse.poll()) != null) task.run();
+    }
+
+    @Test
+    @DisplayName("GIVEN several items added before a pulse WHEN the pulse runs THEN they are delivered in one batch")
+    void itemsAddedBeforePulseAreDeliveredTogether() {
+        var batcher = new MessageBatcher<String>(batches::add, pulse::add);
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+
+        assertThat(pulse).hasSize(1);
+        runPulse();
+
+        assertThat(batches).containsExactly(List.of("a", "b", "c"));
+        assertThat(batcher.stats().flushes()).isEqualTo(1);
+        assertThat(batcher.stats().delivered()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("GIVEN a max batch size WHEN more items are queued THEN they are split across flushes")
+    void largeBacklogIsSplitByMaxBatchSize() {
+        var batcher = new MessageBatcher<String>(batches::add, pulse::add, Duration.ZERO, 2);
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+        runPulse();
+
+        assertThat(batches).containsExactly(List.of("a", "b"), List.of("c"));
+        assertThat(batcher.stats().largestBatch()).isEqualTo(2);
+        assertThat(batcher.stats().averageBatchSize()).isEqualTo(1.5);
+    }
+
+    @Test
+    @DisplayName("GIVEN queued items WHEN clearing THEN nothing is delivered")
+    void clearDiscardsPendingItems() {
+        var batcher = new MessageBatcher<String>(batches::add, pulse::add);
+
+        batcher.add("a");
+        batcher.clear();
+        runPulse();
+
+        assertThat(batches).isEmpty();
+        assertThat(batcher.stats().pending()).isZero();
+    }
+
+    @Test
+    @DisplayName("GIVEN a full queue dropping the oldest WHEN another item arrives THEN the oldest is discarded")
+    void dropOldestDiscardsOldestItem() {
+        var batcher = new MessageBatcher<String>(batches::add, pulse::add, Duration.ZERO, 10,
+                2, OverflowPolicy.DROP_OLDEST, null);
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+        runPulse();
+
+        assertThat(batches).containsExactly(List.of("b", "c"));
+        assertThat(batcher.stats().overflows()).isEqualTo(1);
+        assertThat(batcher.stats().dropped()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN a full collapsing queue WHEN items keep arriving THEN they are replaced by one skipped marker")
+    void collapseReplacesSkippedItemsWithMarker() {
+        var batcher = new MessageBatcher<String>(batches::add, pulse::add, Duration.ZERO, 10,
+                2, OverflowPolicy.COLLAPSE, count -> count + " skipped");
+
+        batcher.add("a");
+        batcher.add("b");
+        batcher.add("c");
+        batcher.add("d");
+        runPulse();
+        batcher.add("e");
+        runPulse();
+
+        assertThat(batches).containsExactly(List.of("a", "b", "2 skipped"), List.of("e"));
+        assertThat(batcher.stats().dropped()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("GIVEN a full blocking queue WHEN another item arrives THEN the producer waits until a flush makes room")
+    void blockWaitsForRoom() throws InterruptedException {
+        var batcher = new MessageBatcher<String>(batches::add, pulse::add, Duration.ZERO, 10,
+                1, OverflowPolicy.BLOCK, null);
+        batcher.add("a");
+
+        Thread producer = Thread.ofPlatform().start(() -> batcher.add("b"));
+        while (producer.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        assertThat(batcher.stats().pending()).isEqualTo(1);
+
+        runPulse();
+        producer.join(5_000);
+        runPulse();
+
+        assertThat(batches).containsExactly(List.of("a"), List.of("b"));
+        assertThat(batcher.stats().overflows()).isEqualTo(1);
+        assertThat(batcher.stats().dropped()).isZero();
+        assertThat(batcher.stats().blockedNanos()).isPositive();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDeduplicatorTest {
+
+    /** Clock that only moves when told to. */
+    private static final class ManualClock extends Clock {
+        private Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN seen ids WHEN checking them again THEN they are duplicates and the hit rate reflects it")
+    void repeatedIdsAreDuplicates() {
+        var dedup = new MessageDeduplicator(16);
+
+        assertThat(dedup.isDuplicate("a")).isFalse();
+        assertThat(dedup.isDuplicate("b")).isFalse();
+        assertThat(dedup.isDuplicate("a")).isTrue();
+        assertThat(dedup.isDuplicate(null)).isFalse();
+
+        assertThat(dedup.stats().hitRate()).isEqualTo(1.0 / 3);
+    }
+
+    @Test
+    @DisplayName("GIVEN a full deduplicator WHEN more ids arrive THEN the oldest ones are forgotten first")
+    void oldestIdsAreEvictedWhenFull() {
+        var dedup = new MessageDeduplicator(100);
+        for (int i = 0; i < 1_000; i++) {
+            dedup.isDuplicate("m" + i);
+        }
+
+        assertThat(dedup.stats().size()).isEqualTo(100);
+        for (int i = 900; i < 1_000; i++) {
+            assertThat(dedup.isDuplicate("m" + i)).as("m" + i).isTrue();
+        }
+        assertThat(dedup.isDuplicate("m899")).isFalse();
+    }
+
+    @Test
+    @DisplayName("GIVEN a time window WHEN an id is older than the window THEN it is no longer a duplicate")
+    void idsExpireAfterWindow() {
+        var clock = new ManualClock();
+        var dedup = new MessageDeduplicator(16, Duration.ofMinutes(1), clock);
+        dedup.isDuplicate("a");
+        clock.advance(Duration.ofSeconds(30));
+        dedup.isDuplicate("b");
+
+        clock.advance(Duration.ofSeconds(31));
+
+        assertThat(dedup.isDuplicate("b")).isTrue();
+        assertThat(dedup.isDuplicate("a")).isFalse();
+    }
+}
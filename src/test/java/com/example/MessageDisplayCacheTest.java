@@ -0,0 +1,74 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageDisplayCacheTest {
+
+    @Test
+    @DisplayName("GIVEN a message WHEN displaying it twice THEN the same cached display form is returned")
+    void displayFormIsComputedOnce() {
+        var cache = new MessageDisplayCache(16, ZoneOffset.UTC);
+        var message = new NtfyMessageDto("m1", 3_723, "message", "alerts", "Line one\nLine two");
+
+        var first = cache.get(message);
+        var second = cache.get(message);
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.time()).isEqualTo("01:02:03");
+        assertThat(first.topic()).isEqualTo("alerts");
+        assertThat(first.body()).isEqualTo("Line one Line two");
+        assertThat(cache.hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("GIVEN a history that decodes a new record per access WHEN displaying a message twice THEN the cached form is reused")
+    void equalMessageFromHistoryHitsCache() {
+        var cache = new MessageDisplayCache(16, ZoneOffset.UTC);
+        var history = new MessageHistory(RetentionPolicy.ofCount(10));
+        history.add(new NtfyMessageDto("m1", 0, "message", "alerts", "Hello"));
+
+        var first = cache.get(history.getFirst());
+        var second = cache.get(history.getFirst());
+
+        assertThat(second).isSameAs(first);
+        assertThat(cache.hitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("GIVEN a message WHEN it is replaced by an edited one with the same id THEN it is formatted again")
+    void changedMessageIsFormattedAgain() {
+        var cache = new MessageDisplayCache(16, ZoneOffset.UTC);
+        cache.get(new NtfyMessageDto("m1", 0, "message", "alerts", "Hello"));
+
+        var display = cache.get(new NtfyMessageDto("m1", 0, "message", "alerts", "Edited"));
+
+        assertThat(display.body()).isEqualTo("Edited");
+    }
+
+    @Test
+    @DisplayName("GIVEN a long body WHEN displaying it THEN it is truncated with an ellipsis")
+    void longBodiesAreTruncated() {
+        var cache = new MessageDisplayCache(16, ZoneOffset.UTC);
+
+        var display = cache.get(new NtfyMessageDto("m1", 0, "message", "alerts", "x".repeat(1_000)));
+
+        assertThat(display.body()).hasSize(MessageDisplayCache.MAX_BODY_LENGTH).endsWith("…");
+    }
+
+    @Test
+    @DisplayName("GIVEN a full cache WHEN displaying more messages THEN the least recently used forms are evicted")
+    void cacheIsBounded() {
+        var cache = new MessageDisplayCache(2, ZoneOffset.UTC);
+
+        for (int i = 0; i < 10; i++) {
+            cache.get(new NtfyMessageDto("m" + i, i, "message", "alerts", "Hello"));
+        }
+
+        assertThat(cache.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageHistoryTest {
+
+    private static NtfyMessageDto message(int n) {
+        return new NtfyMessageDto(String.valueOf(n), 1_000 + n, "message", "mytopic", "Message " + n);
+    }
+
+    private static List<NtfyMessageDto> messages(int from, int to) {
+        return IntStream.range(from, to).mapToObj(MessageHistoryTest::message).toList();
+    }
+
+    @Test
+    @DisplayName("GIVEN a count limit WHEN a batch overflows it THEN the oldest messages are evicted in one change event")
+    void countLimitEvictsHeadInSingleChange() {
+        var history = new MessageHistory(RetentionPolicy.ofCount(3));
+        history.addAll(messages(0, 2));
+        var changes = new ArrayList<ListChangeListener.Change<? extends NtfyMessageDto>>();
+        history.addListener((ListChangeListener<NtfyMessageDto>) changes::add);
+
+        history.addAll(messages(2, 6));
+
+        assertThat(history).extracting(NtfyMessageDto::id).containsExactly("3", "4", "5");
+        assertThat(changes).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN a ring that has wrapped around WHEN reading by index THEN messages stay in arrival order")
+    void wrappedRingKeepsOrder() {
+        var history = new MessageHistory(RetentionPolicy.ofCount(16));
+
+        for (int i = 0; i < 100; i++) {
+            history.add(message(i));
+        }
+
+        assertThat(history).hasSize(16);
+        assertThat(history).extracting(NtfyMessageDto::id)
+                .containsExactlyElementsOf(messages(84, 100).stream().map(NtfyMessageDto::id).toList());
+    }
+
+    @Test
+    @DisplayName("GIVEN a byte limit WHEN messages exceed it THEN retained bytes stay within the limit")
+    void byteLimitBoundsRetainedBytes() {
+        long limit = 10 * RetentionPolicy.estimateSize(message(10));
+        var history = new MessageHistory(RetentionPolicy.UNBOUNDED.withMaxBytes(limit));
+
+        history.addAll(messages(10, 60));
+
+        assertThat(history.getRetainedBytes()).isLessThanOrEqualTo(limit);
+        assertThat(history).hasSize(10);
+        assertThat(history.getLast().id()).isEqualTo("59");
+    }
+
+    @Test
+    @DisplayName("GIVEN an age limit WHEN trimming THEN messages older than the limit are evicted")
+    void ageLimitEvictsOldMessages() {
+        var clock = Clock.fixed(Instant.ofEpochSecond(1_050), ZoneOffset.UTC);
+        var history = new MessageHistory(RetentionPolicy.UNBOUNDED, clock);
+        history.addAll(messages(0, 50));
+
+        history.setPolicy(RetentionPolicy.UNBOUNDED.withMaxAge(Duration.ofSeconds(10)));
+
+        assertThat(history).extracting(NtfyMessageDto::time).allMatch(t -> t >= 1_040);
+        assertThat(history).hasSize(10);
+    }
+
+    @Test
+    @DisplayName("GIVEN messages with nulls, non-ASCII text and attachments WHEN stored compactly THEN they are decoded unchanged")
+    void compactStorageRoundTrips() {
+        var history = new MessageHistory(RetentionPolicy.UNBOUNDED);
+        var attachment = new Attachment("photo.jpg", "image/jpeg", 1234, 0, "https://example.com/photo.jpg");
+        List<NtfyMessageDto> stored = List.of(
+                new NtfyMessageDto("a", 1, "message", "mytopic", "Grüße 👋 " + "x".repeat(300)),
+                new NtfyMessageDto(null, 2, null, null, null),
+                new NtfyMessageDto("b", 3, "message", "other", "", attachment));
+
+        history.addAll(stored);
+        history.add(1, message(7));
+
+        assertThat(history).containsExactly(stored.get(0), message(7), stored.get(1), stored.get(2));
+    }
+
+    @Test
+    @DisplayName("GIVEN a history WHEN looking up an id THEN the index of its latest message is returned")
+    void lastIndexOfIdFindsLatest() {
+        var history = new MessageHistory(RetentionPolicy.UNBOUNDED);
+        history.addAll(messages(0, 20));
+        history.add(message(5));
+
+        assertThat(history.lastIndexOfId("5")).isEqualTo(20);
+        assertThat(history.lastIndexOfId("12")).isEqualTo(12);
+        assertThat(history.lastIndexOfId("missing")).isEqualTo(-1);
+    }
+
+    @Test
+    @DisplayName("GIVEN ids with multi-byte headers WHEN looking them up THEN they are found and decoded")
+    void lastIndexOfIdFindsLongIds() {
+        var history = new MessageHistory(RetentionPolicy.UNBOUNDED);
+        String longId = "x".repeat(63);
+        String longerId = "é".repeat(200);
+        history.add(new NtfyMessageDto(longId, 1, "message", "mytopic", "Long"));
+        history.add(new NtfyMessageDto(longerId, 2, "message", "mytopic", null));
+        history.add(message(3));
+
+        assertThat(history.lastIndexOfId(longId)).isEqualTo(0);
+        assertThat(history.lastIndexOfId(longerId)).isEqualTo(1);
+        assertThat(history.lastIndexOfId("x".repeat(62))).isEqualTo(-1);
+        assertThat(history.get(1).id()).isEqualTo(longerId);
+        assertThat(history.get(1).message()).isNull();
+    }
+
+    @Test
+    @DisplayName("GIVEN more distinct topics than fit in 16-bit codes WHEN adding messages THEN all of them keep their topic")
+    void nameTableOverflowKeepsRawNames() {
+        var history = new MessageHistory(RetentionPolicy.ofCount(70_000));
+
+        for (int i = 0; i < 70_000; i++) {
+            history.add(new NtfyMessageDto("m" + i, i, "message", "topic-" + i, "Hello"));
+        }
+        history.remove(0);
+        history.set(1, new NtfyMessageDto("edited", 1, "message", "topic-new", "Edited"));
+
+        assertThat(history.get(0).topic()).isEqualTo("topic-1");
+        assertThat(history.get(1).topic()).isEqualTo("topic-new");
+        assertThat(history.getLast()).isEqualTo(new NtfyMessageDto("m69999", 69_999, "message", "topic-69999", "Hello"));
+
+        history.clear();
+        history.add(message(1));
+
+        assertThat(history.getFirst()).isEqualTo(message(1));
+    }
+}
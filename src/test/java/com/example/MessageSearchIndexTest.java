@@ -0,0 +1,92 @@
+package com.example;
+
+import javafx.collections.FXCollections;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageSearchIndexTest {
+
+    private static NtfyMessageDto message(String id, String topic, String text) {
+        return new NtfyMessageDto(id, 1, "message", topic, text);
+    }
+
+    @Test
+    @DisplayName("GIVEN indexed messages WHEN searching words, prefixes and topics THEN matching messages are returned in arrival order")
+    void searchesTermsPrefixesAndTopics() {
+        var messages = FXCollections.observableArrayList(
+                message("1", "alerts", "Disk usage on db-1 reached 91%"),
+                message("2", "builds", "Build 512 failed on main"),
+                message("3", "alerts", "Disk usage back to normal on DB-1"));
+        var index = new MessageSearchIndex(messages);
+
+        assertThat(index.search("disk db")).extracting(NtfyMessageDto::id).containsExactly("1", "3");
+        assertThat(index.search("usage reach")).extracting(NtfyMessageDto::id).containsExactly("1");
+        assertThat(index.search("on topic:builds")).extracting(NtfyMessageDto::id).containsExactly("2");
+        assertThat(index.search("fail* main")).extracting(NtfyMessageDto::id).containsExactly("2");
+        assertThat(index.search("nothing")).isEmpty();
+        assertThat(index.search("   ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("GIVEN a retention-bounded history WHEN old messages are evicted THEN they disappear from the index")
+    void evictedMessagesAreRemovedFromIndex() {
+        var history = new MessageHistory(RetentionPolicy.ofCount(2));
+        var index = new MessageSearchIndex(history);
+
+        history.add(message("1", "alerts", "Disk full"));
+        history.add(message("2", "alerts", "Disk ok"));
+        history.add(message("3", "alerts", "CPU high"));
+
+        assertThat(index.search("disk")).extracting(NtfyMessageDto::id).containsExactly("2");
+        assertThat(index.size()).isEqualTo(2);
+
+        history.clear();
+
+        assertThat(index.size()).isZero();
+        assertThat(index.termCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("GIVEN a bounded history WHEN many batches are ingested and replaced THEN the index stays correct and bounded")
+    void followsLongRunningHistory() {
+        var history = new MessageHistory(RetentionPolicy.ofCount(100));
+        var index = new MessageSearchIndex(history);
+
+        for (int batch = 0; batch < 100; batch++) {
+            var messages = new ArrayList<NtfyMessageDto>();
+            for (int i = 0; i < 37; i++) {
+                int n = batch * 37 + i;
+                messages.add(message("m" + n, "alerts", "Reading " + n + (n % 10 == 0 ? " peak" : "")));
+            }
+            history.addAll(messages);
+        }
+        history.set(50, message("edited", "alerts", "Replaced peak"));
+
+        assertThat(index.search("peak")).extracting(NtfyMessageDto::id)
+                .containsExactlyElementsOf(history.stream().filter(m -> m.message().contains("peak"))
+                        .map(NtfyMessageDto::id).toList());
+        assertThat(index.search("reading 3660")).extracting(NtfyMessageDto::id).containsExactly("m3660");
+        assertThat(index.search("reading 100")).isEmpty();
+        // Unique numbers of evicted messages are swept out with their postings
+        assertThat(index.termCount()).isLessThan(1_300);
+
+        history.setAll(message("new", "builds", "Fresh start"));
+
+        assertThat(index.search("fresh")).extracting(NtfyMessageDto::id).containsExactly("new");
+        assertThat(index.search("peak")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("GIVEN a query WHEN matching a single message THEN the result agrees with the index")
+    void singleMessageMatchingAgreesWithIndex() {
+        var query = MessageSearchIndex.parse("disk topic:alerts");
+
+        assertThat(MessageSearchIndex.matches(message("1", "alerts", "Disk full"), query)).isTrue();
+        assertThat(MessageSearchIndex.matches(message("2", "builds", "Disk full"), query)).isFalse();
+        assertThat(MessageSearchIndex.matches(message("3", "alerts", "CPU high"), query)).isFalse();
+    }
+}
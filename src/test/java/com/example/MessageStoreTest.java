@@ -0,0 +1,157 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+class MessageStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static NtfyMessageDto message(String id, String text) {
+        return new NtfyMessageDto(id, Instant.now().getEpochSecond(), "message", "mytopic", text);
+    }
+
+    @Test
+    @DisplayName("GIVEN stored messages WHEN reopening the store THEN the most recent messages and last id are read back")
+    void storedMessagesSurviveReopen() throws IOException {
+        try (var store = new MessageStore(dir)) {
+            store.append(message("m1", "First"));
+            store.append(message("m2", null));
+            store.append(message("m3", "Third åäö"));
+        }
+
+        try (var store = new MessageStore(dir)) {
+            assertThat(store.recent("mytopic", 2))
+                    .extracting(NtfyMessageDto::id, NtfyMessageDto::message)
+                    .containsExactly(
+                            tuple("m2", null),
+                            tuple("m3", "Third åäö"));
+            assertThat(store.lastId("mytopic")).isEqualTo("m3");
+            assertThat(store.lastId("othertopic")).isNull();
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a message with an attachment WHEN reading it back THEN the attachment metadata is kept")
+    void attachmentSurvivesRoundTrip() throws IOException {
+        var attachment = new Attachment("screen.png", "image/png", 15398, 1700000000, "https://ntfy.sh/file/m1.png");
+        try (var store = new MessageStore(dir)) {
+            store.append(new NtfyMessageDto("m1", Instant.now().getEpochSecond(), "message", "mytopic", null, attachment));
+            store.append(message("m2", "Plain"));
+
+            assertThat(store.recent("mytopic", 2))
+                    .extracting(NtfyMessageDto::attachment)
+                    .containsExactly(attachment, null);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a log with a torn last record WHEN opening the store THEN the torn record is dropped")
+    void tornTailIsTruncatedOnOpen() throws IOException {
+        try (var store = new MessageStore(dir)) {
+            store.append(message("m1", "Complete"));
+        }
+        try (FileChannel log = FileChannel.open(dir.resolve("mytopic.log"), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.allocate(6).putInt(100).putShort((short) 1).flip(), log.size());
+        }
+
+        try (var store = new MessageStore(dir)) {
+            assertThat(store.count("mytopic")).isEqualTo(1);
+            store.append(message("m2", "Next"));
+            assertThat(store.recent("mytopic", 10))
+                    .extracting(NtfyMessageDto::id)
+                    .containsExactly("m1", "m2");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a size cap WHEN the log grows beyond it THEN it is compacted to the newest messages")
+    void logIsCompactedWhenExceedingSizeCap() throws IOException {
+        try (var store = new MessageStore(dir, 4_096, Duration.ofDays(1))) {
+            for (int i = 0; i < 500; i++) {
+                store.append(message("m" + i, "Message number " + i));
+            }
+
+            assertThat(store.count("mytopic")).isBetween(1L, 499L);
+            assertThat(store.lastId("mytopic")).isEqualTo("m499");
+            assertThat(dir.resolve("mytopic.log").toFile().length()).isLessThanOrEqualTo(4_096);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a compacted log next to its old index WHEN opening the store THEN the index is rebuilt from the log")
+    void staleIndexIsRebuiltFromLog() throws IOException {
+        long now = Instant.now().getEpochSecond();
+        try (var store = new MessageStore(dir)) {
+            // Records of 40, 80 and then 40 bytes: old offsets 0, 40, 120, 160, ... all fall
+            // on record starts of the compacted log 0, 40, 80, 120, ... but skip one
+            store.append(new NtfyMessageDto("m0", 0, "message", "mytopic", "x".repeat(18)));
+            store.append(new NtfyMessageDto("m1", 0, "message", "mytopic", "x".repeat(58)));
+            for (int i = 2; i < 10; i++) {
+                store.append(new NtfyMessageDto("m" + i, now, "message", "mytopic", "x".repeat(18)));
+            }
+        }
+        Path index = dir.resolve("mytopic.idx");
+        byte[] oldIndex = Files.readAllBytes(index);
+        try (var store = new MessageStore(dir)) {
+            store.compact("mytopic");
+        }
+        // As if the process died after moving the compacted log but before moving its index
+        Files.write(index, oldIndex);
+
+        try (var store = new MessageStore(dir)) {
+            assertThat(store.recent("mytopic", 100)).extracting(NtfyMessageDto::id)
+                    .containsExactly("m2", "m3", "m4", "m5", "m6", "m7", "m8", "m9");
+            store.append(message("m10", "After recovery"));
+            assertThat(store.lastId("mytopic")).isEqualTo("m10");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a quiet topic with expired messages WHEN reading or reopening it THEN only messages within the age limit remain")
+    void expiredMessagesAgeOutOfQuietTopics() throws IOException {
+        long now = Instant.now().getEpochSecond();
+        try (var store = new MessageStore(dir)) {
+            store.append(new NtfyMessageDto("old", now - Duration.ofDays(40).toSeconds(), "message", "mytopic", "Old"));
+            store.append(message("new", "New"));
+
+            assertThat(store.recent("mytopic", 10)).extracting(NtfyMessageDto::id).containsExactly("new");
+        }
+
+        try (var store = new MessageStore(dir)) {
+            assertThat(store.count("mytopic")).isEqualTo(1);
+            assertThat(store.lastId("mytopic")).isEqualTo("new");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN more topics than may stay open WHEN using them THEN the least recently used are closed and reopen on demand")
+    void idleTopicsAreClosed() throws IOException {
+        try (var store = new MessageStore(dir, MessageStore.DEFAULT_MAX_BYTES_PER_TOPIC, Duration.ofDays(1), 2)) {
+            for (String topic : List.of("a", "b", "c")) {
+                store.append(new NtfyMessageDto("m-" + topic, Instant.now().getEpochSecond(), "message", topic, topic));
+            }
+
+            assertThat(store.openTopicCount()).isEqualTo(2);
+            assertThat(store.lastId("a")).isEqualTo("m-a");
+            store.append(new NtfyMessageDto("m-a2", Instant.now().getEpochSecond(), "message", "a", "again"));
+            assertThat(store.recent("a", 10)).extracting(NtfyMessageDto::id).containsExactly("m-a", "m-a2");
+            assertThat(store.openTopicCount()).isEqualTo(2);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NdjsonDecoderTest {
+
+    @Test
+    @DisplayName("GIVEN a large response WHEN decoding it in parallel chunks THEN all messages are returned in order")
+    void decodeAllKeepsOrderAcrossChunks() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            body.append("{\"id\":\"m").append(i).append("\",\"time\":").append(i)
+                    .append(",\"event\":\"message\",\"topic\":\"mytopic\",\"message\":\"Message ").append(i).append("\"}\n");
+            if (i == 10_000) body.append("not json\n");
+        }
+        var failures = new AtomicInteger();
+
+        try (var executor = Executors.newFixedThreadPool(4)) {
+            var messages = NdjsonDecoder.decodeAll(body.toString().getBytes(StandardCharsets.UTF_8),
+                    executor, 4, failures::incrementAndGet).join();
+
+            assertThat(messages).extracting(NtfyMessageDto::id)
+                    .containsExactlyElementsOf(IntStream.range(0, 20_000).mapToObj(i -> "m" + i).toList());
+        }
+        assertThat(failures).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN a stream with a truncated line WHEN decoding THEN only that line fails and the next messages arrive")
+    void truncatedLineDoesNotSwallowFollowingLines() throws Exception {
+        String stream = """
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"One"}
+                {"id":"m2","time":
+                {"id":"m3","time":3,"event":"message","topic":"mytopic","message":"Three"}
+                {"id":"m4","time":4,"event":"message","topic":"mytopic","message":"Four"}
+                """;
+        var messages = new ArrayList<NtfyMessageDto>();
+        var failures = new AtomicInteger();
+
+        new NdjsonDecoder(messages::add, failures::incrementAndGet)
+                .decode(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(messages).extracting(NtfyMessageDto::id).containsExactly("m1", "m3", "m4");
+        assertThat(failures).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN a stream starting with an open event WHEN decoding THEN the open listener runs once and only messages are delivered")
+    void openEventIsReported() throws Exception {
+        String stream = """
+                {"id":"o1","time":1,"event":"open","topic":"mytopic"}
+                {"id":"k1","time":2,"event":"keepalive","topic":"mytopic"}
+                {"id":"m1","time":3,"event":"message","topic":"mytopic","message":"One"}
+                """;
+        var messages = new ArrayList<NtfyMessageDto>();
+        var opens = new AtomicInteger();
+
+        new NdjsonDecoder(messages::add, () -> { }, opens::incrementAndGet)
+                .decode(new ByteArrayInputStream(stream.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(opens).hasValue(1);
+        assertThat(messages).extracting(NtfyMessageDto::id).containsExactly("m1");
+    }
+
+    @Test
+    @DisplayName("GIVEN a handler that throws an IllegalArgumentException WHEN decoding THEN it propagates and is not counted as a parse failure")
+    void handlerExceptionIsNotAParseFailure() {
+        String line = """
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"One"}
+                """;
+        var failures = new AtomicInteger();
+        var decoder = new NdjsonDecoder(message -> {
+            throw new IllegalArgumentException("Rejected by handler");
+        }, failures::incrementAndGet);
+
+        assertThatThrownBy(() -> decoder.decodeText(line)).hasMessage("Rejected by handler");
+        assertThatThrownBy(() -> decoder.decode(new ByteArrayInputStream(line.getBytes(StandardCharsets.UTF_8))))
+                .hasMessage("Rejected by handler");
+        assertThat(failures).hasValue(0);
+        assertThat(decoder.failureCount()).isZero();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@WireMockTest
+class NtfyConnectionImplTest {
+
+    @Test
+    @DisplayName("GIVEN the default executor strategy WHEN receiving THEN the handler runs on a virtual thread")
+    void handlerRunsOnVirtualSubscriptionThread(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(get("/mytopic/json").willReturn(ok("""
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"Hello"}
+                """)));
+        var con = new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort());
+        var handlerThread = new CompletableFuture<Thread>();
+
+        try (var subscription = con.receive("mytopic", m -> handlerThread.complete(Thread.currentThread()))) {
+            Thread thread = handlerThread.get(5, TimeUnit.SECONDS);
+
+            assertThat(thread.isVirtual()).isTrue();
+            assertThat(thread.getName()).startsWith("ntfy-subscription-");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a platform-thread executor strategy WHEN receiving THEN the handler runs off the HTTP client's threads")
+    void handlerRunsOnInjectedSubscriptionExecutor(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(get("/mytopic/json").willReturn(ok("""
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"Hello"}
+                """)));
+        var con = new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort(),
+                NtfyConnectionImpl.DEFAULT_MAX_CONCURRENT_SENDS, ExecutorStrategy.platformThreads());
+        var handlerThread = new CompletableFuture<Thread>();
+
+        try (var subscription = con.receive("mytopic", m -> handlerThread.complete(Thread.currentThread()))) {
+            Thread thread = handlerThread.get(5, TimeUnit.SECONDS);
+
+            assertThat(thread.isVirtual()).isFalse();
+            assertThat(thread.getName()).startsWith("ntfy-subscription-");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a file WHEN sending it as attachment THEN it is PUT with its name and progress reaches its size")
+    void sendFileStreamsFileWithFilename(WireMockRuntimeInfo wmRuntimeInfo, @TempDir Path dir) throws Exception {
+        stubFor(put(urlPathEqualTo("/mytopic")).willReturn(ok()));
+        Path file = Files.write(dir.resolve("report.log"), new byte[100_000]);
+        var con = new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort());
+        var transferred = new AtomicLong();
+
+        Transfer<Void> transfer = con.sendFile("mytopic", file, "Nightly logs", (bytes, total) -> transferred.set(bytes));
+        transfer.result().get(5, TimeUnit.SECONDS);
+
+        verify(putRequestedFor(urlPathEqualTo("/mytopic"))
+                .withQueryParam("filename", equalTo("report.log"))
+                .withQueryParam("message", equalTo("Nightly logs"))
+                .withHeader("Content-Length", equalTo("100000")));
+        assertThat(transferred).hasValue(100_000);
+        assertThat(transfer.progress()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("GIVEN a message with an attachment WHEN receiving THEN the attachment metadata is decoded")
+    void attachmentMetadataIsDecoded(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(get("/mytopic/json").willReturn(ok("""
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"Screenshot","attachment":{"name":"screen.png","type":"image/png","size":15398,"expires":1700000000,"url":"https://ntfy.sh/file/m1.png"}}
+                """)));
+        var con = new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort());
+        var received = new CompletableFuture<NtfyMessageDto>();
+
+        try (var subscription = con.receive("mytopic", received::complete)) {
+            NtfyMessageDto message = received.get(5, TimeUnit.SECONDS);
+
+            assertThat(message.message()).isEqualTo("Screenshot");
+            assertThat(message.attachment())
+                    .isEqualTo(new Attachment("screen.png", "image/png", 15398, 1700000000, "https://ntfy.sh/file/m1.png"));
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN cached messages on the server WHEN polling THEN they are returned in order without non-message events")
+    void pollReturnsCachedMessagesInOrder(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(get(urlPathEqualTo("/mytopic/json")).withQueryParam("poll", equalTo("1")).willReturn(ok("""
+                {"id":"m1","time":1,"event":"message","topic":"mytopic","message":"First"}
+                {"id":"k1","time":2,"event":"keepalive","topic":"mytopic"}
+                {"id":"m2","time":3,"event":"message","topic":"mytopic","message":"Second"}
+                """)));
+        var con = new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort());
+
+        var messages = con.poll("mytopic", "10m").get(5, TimeUnit.SECONDS);
+
+        assertThat(messages).extracting(NtfyMessageDto::message).containsExactly("First", "Second");
+        verify(getRequestedFor(urlEqualTo("/mytopic/json?poll=1&since=10m")));
+    }
+
+    @Test
+    @DisplayName("GIVEN a rate-limiting server WHEN sending blocking THEN the status and Retry-After are reported")
+    void blockingSendReportsHttpStatus(WireMockRuntimeInfo wmRuntimeInfo) {
+        stubFor(post("/mytopic").willReturn(status(429).withHeader("Retry-After", "30")));
+        var con = new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort());
+
+        assertThatThrownBy(() -> con.send("mytopic", "Hello"))
+                .isInstanceOfSatisfying(NtfyHttpException.class, e -> {
+                    assertThat(e.statusCode()).isEqualTo(429);
+                    assertThat(e.retryAfter()).isEqualTo(Duration.ofSeconds(30));
+                    assertThat(e.isRetryable()).isTrue();
+                })
+                .hasMessage("Failed to send message: HTTP 429");
+    }
+}
@@ -1,5 +1,7 @@
 package com.example;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Consumer;
 
 /**
@@ -12,6 +14,11 @@ public class NtfyConnectionStub implements NtfyConnection {
     private Consumer<NtfyMessageDto> messageHandler;
     /** Flag indicating if the subscription is active. */
     private boolean subscriptionActive = false;
+    /** Latest handler and open flag per topic. */
+    private final Map<String, Consumer<NtfyMessageDto>> topicHandlers = new HashMap<>();
+    private final Map<String, boolean[]> topicActive = new HashMap<>();
+    /** Number of subscriptions opened. */
+    public int receiveCount;
 
     /**
      * Does nothing in this stub; included for interface completeness.
@@ -35,6 +42,10 @@ public class NtfyConnectionStub implements NtfyConnection {
     public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
         this.messageHandler = messageHandler;
         subscriptionActive = true;
+        receiveCount++;
+        boolean[] active = {true};
+        topicHandlers.put(topic, messageHandler);
+        topicActive.put(topic, active);
 
         return new Subscription() {
             /**
@@ -43,6 +54,7 @@ public class NtfyConnectionStub implements NtfyConnection {
             @Override
             public void close() {
                 subscriptionActive = false;
+                active[0] = false;
             }
 
             /**
@@ -68,4 +80,17 @@ public class NtfyConnectionStub implements NtfyConnection {
             messageHandler.accept(message);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Simulates an incoming message on the latest subscription to a topic, if it is open.
+     *
+     * @param topic   the subscribed topic
+     * @param message the message to simulate
+     */
+    public void simulateIncomingMessage(String topic, NtfyMessageDto message) {
+        boolean[] active = topicActive.get(topic);
+        if (active != null && active[0]) {
+            topicHandlers.get(topic).accept(message);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class NtfyWebSocketConnectionTest {
+
+    private static NtfyWebSocketConnection connection(LocalNtfyServer server) {
+        return new NtfyWebSocketConnection(new NtfyConnectionImpl(server.url()), server.webSocketUrl());
+    }
+
+    private static void awaitSize(List<?> list, int size) throws InterruptedException {
+        for (int i = 0; i < 250 && list.size() < size; i++) {
+            Thread.sleep(20);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a WebSocket subscription since an id WHEN publishing over HTTP THEN the backlog and live messages arrive in order")
+    void receivesBacklogAndLiveMessages() throws Exception {
+        try (var server = new LocalNtfyServer()) {
+            var connection = connection(server);
+            connection.send("mytopic", "First");
+            connection.send("mytopic", "Second");
+            String firstId = connection.poll("mytopic", "all").get(5, TimeUnit.SECONDS).getFirst().id();
+
+            List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+            try (var subscription = connection.receive("mytopic", firstId, received::add)) {
+                awaitSize(received, 1);
+                connection.sendAsync("mytopic", "Third").get(5, TimeUnit.SECONDS);
+                awaitSize(received, 2);
+
+                assertThat(subscription.isOpen()).isTrue();
+            }
+
+            assertThat(received).extracting(NtfyMessageDto::event).containsOnly("message");
+            assertThat(received).extracting(NtfyMessageDto::message).containsExactly("Second", "Third");
+            assertThat(received).extracting(NtfyMessageDto::topic).containsOnly("mytopic");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a handler that fails on a message WHEN more messages are published THEN they are still delivered")
+    void handlerFailureDoesNotStallStream() throws Exception {
+        try (var server = new LocalNtfyServer()) {
+            var connection = connection(server);
+            List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+            connection.send("mytopic", "Poison");
+            try (var subscription = connection.receive("mytopic", "all", message -> {
+                if (message.message().equals("Poison")) throw new IllegalStateException("Cannot handle");
+                received.add(message);
+            })) {
+                connection.send("mytopic", "After");
+                awaitSize(received, 1);
+
+                assertThat(subscription.isOpen()).isTrue();
+            }
+
+            assertThat(received).extracting(NtfyMessageDto::message).containsExactly("After");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a closed WebSocket subscription WHEN publishing THEN nothing more is delivered")
+    void closedSubscriptionStopsDelivery() throws Exception {
+        try (var server = new LocalNtfyServer()) {
+            var connection = connection(server);
+            List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+            connection.send("mytopic", "Before");
+            var subscription = connection.receive("mytopic", "all", received::add);
+            awaitSize(received, 1);
+
+            subscription.close();
+            subscription.whenClosed().get(5, TimeUnit.SECONDS);
+            connection.send("mytopic", "After");
+            Thread.sleep(200);
+
+            assertThat(subscription.isOpen()).isFalse();
+            assertThat(received).extracting(NtfyMessageDto::message).containsExactly("Before");
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN an open WebSocket subscription WHEN the server shuts down THEN the subscription ends")
+    void serverShutdownEndsSubscription() throws Exception {
+        var server = new LocalNtfyServer();
+        var connection = connection(server);
+        var subscription = connection.receive("mytopic", message -> { });
+        connection.send("mytopic", "Hello");
+        Thread.sleep(200);
+
+        server.close();
+
+        subscription.whenClosed().get(5, TimeUnit.SECONDS);
+        assertThat(subscription.isOpen()).isFalse();
+    }
+
+    @Test
+    @DisplayName("GIVEN transport names WHEN parsing THEN known names map to transports and unknown ones fail")
+    void parsesTransportNames() {
+        assertThat(Transport.parse(null)).isEqualTo(Transport.HTTP);
+        assertThat(Transport.parse(" WebSocket ")).isEqualTo(Transport.WEBSOCKET);
+        assertThat(Transport.parse("ws")).isEqualTo(Transport.WEBSOCKET);
+        assertThat(NtfyWebSocketConnection.webSocketUrl("https://ntfy.sh")).isEqualTo("wss://ntfy.sh");
+        assertThat(NtfyWebSocketConnection.webSocketUrl("http://localhost:8080")).isEqualTo("ws://localhost:8080");
+        assertThatThrownBy(() -> Transport.parse("sse")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("GIVEN a monitored WebSocket subscription WHEN the server stops sending keepalives THEN the subscription ends as stale")
+    void stalledWebSocketEndsSubscription() throws Exception {
+        try (var server = new LocalNtfyServer(0, Duration.ofMillis(50));
+             var monitor = new LivenessMonitor(Duration.ofMillis(50), 3)) {
+            var metrics = new InMemoryChatMetrics();
+            var connection = connection(server);
+            connection.setMetrics(metrics);
+            connection.setLivenessMonitor(monitor);
+            var subscription = connection.receive("mytopic", message -> { });
+            Thread.sleep(300);
+            assertThat(subscription.isOpen()).isTrue();
+
+            server.setStreamsStalled(true);
+
+            subscription.whenClosed().get(5, TimeUnit.SECONDS);
+            assertThat(subscription.isOpen()).isFalse();
+            assertThat(metrics.staleStreams()).isEqualTo(1);
+            assertThat(monitor.watchedCount()).isZero();
+        }
+    }
+}
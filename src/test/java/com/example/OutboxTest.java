@@ -0,0 +1,161 @@
+package com.example;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockRuntimeInfo;
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import com.github.tomakehurst.wiremock.verification.LoggedRequest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@WireMockTest
+class OutboxTest {
+
+    private static final Backoff SLOW = new Backoff(Duration.ofMinutes(1), Duration.ofMinutes(1), 1.0, 0.0);
+
+    @TempDir
+    Path dir;
+
+    private static NtfyConnectionImpl connection(WireMockRuntimeInfo wmRuntimeInfo) {
+        return new NtfyConnectionImpl("http://localhost:" + wmRuntimeInfo.getHttpPort());
+    }
+
+    @Test
+    @DisplayName("GIVEN messages queued while the server is unreachable WHEN the outbox is reopened THEN they are sent in order")
+    void queuedMessagesSurviveRestart(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(post(urlPathMatching("/(mytopic|other)")).willReturn(ok()));
+        int closedPort;
+        try (var socket = new ServerSocket(0)) {
+            closedPort = socket.getLocalPort();
+        }
+        try (var offline = new Outbox(dir, new NtfyConnectionImpl("http://localhost:" + closedPort),
+                RateLimit.UNLIMITED, SLOW)) {
+            offline.enqueue("mytopic", "One");
+            offline.enqueue("other", "Elsewhere");
+            offline.enqueue("mytopic", "Two");
+            offline.enqueue("mytopic", "Three");
+        }
+
+        try (var outbox = new Outbox(dir, connection(wmRuntimeInfo))) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (outbox.pending() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertThat(outbox.stats().sent()).isEqualTo(4);
+        }
+        List<String> mytopic = new ArrayList<>(findAll(postRequestedFor(urlPathEqualTo("/mytopic"))).stream()
+                .map(LoggedRequest::getBodyAsString).toList());
+        assertThat(mytopic).containsExactly("One", "Two", "Three");
+        verify(1, postRequestedFor(urlPathEqualTo("/other")).withRequestBody(equalTo("Elsewhere")));
+        try (var reopened = new Outbox(dir, connection(wmRuntimeInfo))) {
+            assertThat(reopened.pending()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a 429 with Retry-After WHEN sending THEN the outbox waits that long and sends again")
+    void rateLimitedSendWaitsForRetryAfter(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(post("/mytopic").inScenario("limit").whenScenarioStateIs(STARTED)
+                .willReturn(status(429).withHeader("Retry-After", "1"))
+                .willSetStateTo("allowed"));
+        stubFor(post("/mytopic").inScenario("limit").whenScenarioStateIs("allowed").willReturn(ok()));
+
+        try (var outbox = new Outbox(dir, connection(wmRuntimeInfo), RateLimit.UNLIMITED, Backoff.DEFAULT)) {
+            long start = System.nanoTime();
+            outbox.enqueue("mytopic", "Hello").get(5, TimeUnit.SECONDS);
+
+            assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(950));
+            assertThat(outbox.stats()).extracting(Outbox.Stats::sent, Outbox.Stats::rateLimited, Outbox.Stats::pending)
+                    .containsExactly(1L, 1L, 0);
+        }
+        verify(2, postRequestedFor(urlEqualTo("/mytopic")));
+    }
+
+    @Test
+    @DisplayName("GIVEN a rate limit WHEN draining more messages than the burst THEN sends are paced by the limit")
+    void drainIsPacedByTokenBucket(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(post("/mytopic").willReturn(ok()));
+
+        try (var outbox = new Outbox(dir, connection(wmRuntimeInfo), new RateLimit(2, Duration.ofMillis(100)), SLOW)) {
+            long start = System.nanoTime();
+            List<CompletableFuture<Void>> sends = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                sends.add(outbox.enqueue("mytopic", "Message " + i));
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+            // Two sends from the burst, then one per 100 ms
+            assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(390));
+            assertThat(outbox.stats().sent()).isEqualTo(6);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a message the server rejects WHEN sending THEN it fails with the status and is not retried")
+    void rejectedMessageIsDropped(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(post("/mytopic").willReturn(status(413)));
+
+        try (var outbox = new Outbox(dir, connection(wmRuntimeInfo), RateLimit.UNLIMITED, SLOW)) {
+            assertThatThrownBy(() -> outbox.enqueue("mytopic", "Too long").get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class)
+                    .cause()
+                    .isInstanceOfSatisfying(NtfyHttpException.class, e -> assertThat(e.statusCode()).isEqualTo(413));
+            assertThat(outbox.stats()).extracting(Outbox.Stats::pending, Outbox.Stats::rejected).containsExactly(0, 1L);
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a topic no request can be built for WHEN sending THEN its messages fail without holding up other topics")
+    void invalidTopicIsRejectedWithoutBlocking(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(post("/mytopic").willReturn(ok()));
+
+        try (var outbox = new Outbox(dir, connection(wmRuntimeInfo), RateLimit.UNLIMITED, SLOW)) {
+            var invalid = outbox.enqueue("my topic", "Never sent");
+            var again = outbox.enqueue("my topic", "Not stuck either");
+            outbox.enqueue("mytopic", "Hello").get(5, TimeUnit.SECONDS);
+
+            assertThatThrownBy(() -> invalid.get(5, TimeUnit.SECONDS))
+                    .cause().isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> again.get(5, TimeUnit.SECONDS))
+                    .cause().isInstanceOf(IllegalArgumentException.class);
+            assertThat(outbox.stats()).extracting(Outbox.Stats::pending, Outbox.Stats::rejected).containsExactly(0, 2L);
+        }
+        try (var reopened = new Outbox(dir, connection(wmRuntimeInfo))) {
+            assertThat(reopened.pending()).isZero();
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a 429 without Retry-After WHEN a subscription reconnects THEN the rate-limit pause is kept")
+    void rateLimitPauseSurvivesRetryNow(WireMockRuntimeInfo wmRuntimeInfo) throws Exception {
+        stubFor(post("/mytopic").willReturn(status(429)));
+        var backoff = new Backoff(Duration.ofSeconds(1), Duration.ofSeconds(1), 1.0, 0.0);
+
+        try (var outbox = new Outbox(dir, connection(wmRuntimeInfo), RateLimit.UNLIMITED, backoff)) {
+            outbox.enqueue("mytopic", "Hello");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (outbox.stats().rateLimited() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            outbox.retryNow();
+            Thread.sleep(300);
+
+            assertThat(outbox.stats().pending()).isEqualTo(1);
+        }
+        verify(1, postRequestedFor(urlEqualTo("/mytopic")));
+    }
+}
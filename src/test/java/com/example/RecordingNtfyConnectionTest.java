@@ -0,0 +1,71 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecordingNtfyConnectionTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("GIVEN a recording connection WHEN a subscription receives messages and keepalives THEN every raw line is recorded in order")
+    void recordsRawStreamWithTimestamps() throws Exception {
+        Path file = dir.resolve("capture.ntfyrec");
+        try (var server = new LocalNtfyServer(0, Duration.ofMillis(100))) {
+            List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+            try (var connection = new RecordingNtfyConnection(new NtfyConnectionImpl(server.url()), file)) {
+                var subscription = connection.receive("mytopic", "all", received::add);
+                connection.send("mytopic", "One");
+                connection.send("mytopic", "Two");
+                for (int i = 0; i < 100 && received.size() < 2; i++) {
+                    Thread.sleep(20);
+                }
+                // Long enough for at least one keepalive
+                Thread.sleep(250);
+                subscription.close();
+            }
+
+            List<StreamRecording.Line> lines = StreamRecording.read(file);
+
+            assertThat(received).extracting(NtfyMessageDto::message).containsExactly("One", "Two");
+            assertThat(lines).extracting(StreamRecording.Line::topic).containsOnly("mytopic");
+            assertThat(lines.getFirst().text()).contains("\"event\":\"open\"");
+            assertThat(lines).filteredOn(line -> line.text().contains("\"event\":\"message\""))
+                    .extracting(StreamRecording.Line::text)
+                    .satisfiesExactly(one -> assertThat(one).contains("\"One\""), two -> assertThat(two).contains("\"Two\""));
+            assertThat(lines).anySatisfy(line -> assertThat(line.text()).contains("\"event\":\"keepalive\""));
+            assertThat(lines).extracting(StreamRecording.Line::offsetNanos).isSorted();
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN lines of several streams WHEN written and read back THEN bytes, topics and timing are preserved")
+    void writerRoundTripsLines() throws Exception {
+        Path file = dir.resolve("lines.ntfyrec");
+        byte[] malformed = "{\"event\":\"message\",".getBytes(StandardCharsets.UTF_8);
+        try (var writer = new StreamRecording.Writer(file)) {
+            long start = System.nanoTime();
+            writer.write("a", start, "{\"x\":1}".getBytes(StandardCharsets.UTF_8), 0, 7);
+            writer.write("b,c", start + 5_000_000, malformed, 0, malformed.length);
+            writer.write("a", start + 2_000_000_000L, "tail".getBytes(StandardCharsets.UTF_8), 0, 4);
+        }
+
+        List<StreamRecording.Line> lines = StreamRecording.read(file);
+
+        assertThat(lines).extracting(StreamRecording.Line::topic).containsExactly("a", "b,c", "a");
+        assertThat(lines).extracting(StreamRecording.Line::text)
+                .containsExactly("{\"x\":1}", "{\"event\":\"message\",", "tail");
+        assertThat(lines.get(2).offsetNanos() - lines.get(1).offsetNanos())
+                .isBetween(1_994_000_000L, 1_996_000_000L);
+    }
+}
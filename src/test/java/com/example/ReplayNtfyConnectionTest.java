@@ -0,0 +1,68 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayNtfyConnectionTest {
+
+    private static StreamRecording.Line line(long offsetMillis, String text) {
+        return new StreamRecording.Line(TimeUnit.MILLISECONDS.toNanos(offsetMillis), "mytopic",
+                text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final List<StreamRecording.Line> CAPTURE = List.of(
+            line(0, "{\"id\":\"o1\",\"time\":1700000000,\"event\":\"open\",\"topic\":\"mytopic\"}"),
+            line(10, "{\"id\":\"m1\",\"time\":1700000001,\"event\":\"message\",\"topic\":\"mytopic\",\"message\":\"One\"}"),
+            line(20, "{\"id\":\"m2\",\"time\":1700000002,\"event\":\"message\",\"topic\":\"mytopic\",\"message\":\"Two\"}"),
+            line(30, "{\"id\":\"m3\",\"time\":"),
+            line(200, "{\"id\":\"k1\",\"time\":1700000003,\"event\":\"keepalive\",\"topic\":\"mytopic\"}"),
+            line(400, "{\"id\":\"m4\",\"time\":1700000004,\"event\":\"message\",\"topic\":\"mytopic\",\"message\":\"Four\"}"),
+            new StreamRecording.Line(0, "other", "{\"id\":\"x\",\"event\":\"message\",\"message\":\"Elsewhere\"}"
+                    .getBytes(StandardCharsets.UTF_8)));
+
+    @Test
+    @DisplayName("GIVEN a capture with a malformed line WHEN replayed into the model THEN the messages arrive and the failure is reported")
+    void replayFeedsModelThroughDecoder() throws Exception {
+        var metrics = new InMemoryChatMetrics();
+        var replay = new ReplayNtfyConnection(CAPTURE, ReplayNtfyConnection.AS_FAST_AS_POSSIBLE,
+                Executors.newVirtualThreadPerTaskExecutor());
+        replay.setMetrics(metrics);
+        var model = new HelloModel(replay);
+
+        model.connectToTopic();
+        replay.whenReplayed("mytopic").get(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 100 && model.getMessages().size() < 3; i++) {
+            Thread.sleep(20);
+        }
+
+        assertThat(model.getMessages()).extracting(NtfyMessageDto::message).containsExactly("One", "Two", "Four");
+        assertThat(metrics.parseFailures()).isEqualTo(1);
+        model.disconnect();
+    }
+
+    @Test
+    @DisplayName("GIVEN a replay at double speed WHEN subscribing THEN lines are released at half their recorded offsets")
+    void replayKeepsScaledTiming() throws Exception {
+        var replay = new ReplayNtfyConnection(CAPTURE, 2.0, Executors.newVirtualThreadPerTaskExecutor());
+        List<NtfyMessageDto> received = new CopyOnWriteArrayList<>();
+
+        long start = System.nanoTime();
+        var subscription = replay.receive("mytopic", received::add);
+        replay.whenReplayed("mytopic").get(5, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        assertThat(elapsed).isBetween(TimeUnit.MILLISECONDS.toNanos(190), TimeUnit.MILLISECONDS.toNanos(390));
+        assertThat(received).extracting(NtfyMessageDto::id).containsExactly("m1", "m2", "m4");
+        assertThat(subscription.isOpen()).isTrue();
+        subscription.close();
+        assertThat(subscription.whenClosed()).isCompleted();
+    }
+}
@@ -0,0 +1,236 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionHubTest {
+
+    /** Connection that records every stream opened on it; tests complete their open events and end them. */
+    static class RecordingConnection implements NtfyConnection {
+        final List<String> openedTopics = new CopyOnWriteArrayList<>();
+        final List<String> since = new CopyOnWriteArrayList<>();
+        final List<Consumer<NtfyMessageDto>> handlers = new CopyOnWriteArrayList<>();
+        final List<Boolean> open = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<Void>> opened = new CopyOnWriteArrayList<>();
+        final List<CompletableFuture<Void>> closed = new CopyOnWriteArrayList<>();
+        /** Returned by every poll. */
+        List<NtfyMessageDto> backlog = List.of();
+
+        @Override
+        public void send(String topic, String message) {
+        }
+
+        @Override
+        public Subscription receive(String topic, Consumer<NtfyMessageDto> messageHandler) {
+            return receive(topic, null, messageHandler);
+        }
+
+        @Override
+        public Subscription receive(String topic, String since, Consumer<NtfyMessageDto> messageHandler) {
+            int index = openedTopics.size();
+            openedTopics.add(topic);
+            this.since.add(since);
+            handlers.add(messageHandler);
+            open.add(true);
+            opened.add(new CompletableFuture<>());
+            closed.add(new CompletableFuture<>());
+            return new Subscription() {
+                @Override
+                public void close() {
+                    open.set(index, false);
+                    closed.get(index).complete(null);
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return open.get(index);
+                }
+
+                @Override
+                public CompletableFuture<Void> whenOpened() {
+                    return opened.get(index);
+                }
+
+                @Override
+                public CompletableFuture<Void> whenClosed() {
+                    return closed.get(index).copy();
+                }
+            };
+        }
+
+        @Override
+        public CompletableFuture<List<NtfyMessageDto>> poll(String topic, String since) {
+            return CompletableFuture.completedFuture(backlog);
+        }
+
+        /** Ends a stream as if the server had dropped it. */
+        void kill(int index) {
+            open.set(index, false);
+            closed.get(index).complete(null);
+        }
+
+        void deliver(NtfyMessageDto message) {
+            for (int i = 0; i < handlers.size(); i++) {
+                if (open.get(i)) handlers.get(i).accept(message);
+            }
+        }
+    }
+
+    private static NtfyMessageDto message(String id, String topic) {
+        return new NtfyMessageDto(id, 1, "message", topic, "Hello " + topic);
+    }
+
+    @Test
+    @DisplayName("GIVEN several topics WHEN subscribing through the hub THEN they share one stream and are demultiplexed")
+    void topicsShareOneStream() {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+        var a = new ArrayList<NtfyMessageDto>();
+        var b = new ArrayList<NtfyMessageDto>();
+
+        hub.receive("a", a::add);
+        hub.receive("b", b::add);
+        connection.deliver(message("1", "a"));
+        connection.deliver(message("2", "b"));
+
+        assertThat(hub.streamCount()).isEqualTo(1);
+        assertThat(connection.openedTopics).last().isEqualTo("a,b");
+        assertThat(a).extracting(NtfyMessageDto::id).containsExactly("1");
+        assertThat(b).extracting(NtfyMessageDto::id).containsExactly("2");
+    }
+
+    @Test
+    @DisplayName("GIVEN a replaced stream still open WHEN both streams deliver a message THEN it is dispatched once")
+    void handoverDoesNotDuplicateMessages() {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+        var a = new ArrayList<NtfyMessageDto>();
+
+        hub.receive("a", a::add);
+        hub.receive("b", m -> { });
+        connection.deliver(message("1", "a"));
+
+        assertThat(connection.open).containsExactly(true, true);
+        assertThat(a).hasSize(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN a stream that delivered a message WHEN its topics change THEN the replacement resumes after it and the old stream closes once the new one is open")
+    void replacementResumesAndWaitsForOpen() {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+
+        hub.receive("a", m -> { });
+        connection.deliver(message("1", "a"));
+        hub.receive("b", m -> { });
+
+        assertThat(connection.openedTopics).containsExactly("a", "a,b");
+        assertThat(connection.since).containsExactly(null, "1");
+        assertThat(connection.open).containsExactly(true, true);
+
+        connection.opened.get(1).complete(null);
+
+        assertThat(connection.open).containsExactly(false, true);
+    }
+
+    @Test
+    @DisplayName("GIVEN two subscribers of a topic WHEN one closes THEN the topic stays subscribed until the last one closes")
+    void topicsAreReferenceCounted() throws Exception {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+
+        var first = hub.receive("a", m -> { });
+        var second = hub.receive("a", m -> { });
+        first.close();
+
+        assertThat(hub.topicCount()).isEqualTo(1);
+        assertThat(second.isOpen()).isTrue();
+
+        second.close();
+
+        assertThat(hub.topicCount()).isZero();
+        assertThat(hub.streamCount()).isZero();
+        assertThat(connection.openedTopics).containsExactly("a");
+    }
+
+    @Test
+    @DisplayName("GIVEN a stream size limit WHEN subscribing to more topics THEN additional streams are opened")
+    void topicsAreSpreadAcrossStreams() {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection, 2);
+
+        hub.receive("a", m -> { });
+        hub.receive("b", m -> { });
+        hub.receive("c", m -> { });
+
+        assertThat(hub.streamCount()).isEqualTo(2);
+        assertThat(connection.openedTopics).containsExactly("a", "a,b", "c");
+    }
+
+    @Test
+    @DisplayName("GIVEN subscribers of a shared stream WHEN the underlying stream dies THEN every subscription on it ends")
+    void deadStreamEndsItsSubscriptions() {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+        var a = hub.receive("a", m -> { });
+        var b = hub.receive("b", m -> { });
+        connection.opened.get(1).complete(null);
+
+        connection.kill(1);
+
+        assertThat(a.whenClosed()).isDone();
+        assertThat(b.whenClosed()).isDone();
+        assertThat(a.isOpen()).isFalse();
+        assertThat(hub.streamCount()).isZero();
+        assertThat(hub.topicCount()).isZero();
+    }
+
+    @Test
+    @DisplayName("GIVEN a reconnecting subscription through the hub WHEN its stream dies THEN it resubscribes after the last id")
+    void reconnectingSubscriptionResumesThroughHub() throws Exception {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+        var received = new CopyOnWriteArrayList<NtfyMessageDto>();
+        var backoff = new Backoff(Duration.ofMillis(10), Duration.ofMillis(10), 2.0, 0.0);
+        try (var subscription = new ReconnectingSubscription(hub, "a", null, received::add, state -> { }, backoff)) {
+            connection.deliver(message("1", "a"));
+
+            connection.kill(0);
+            for (int i = 0; i < 100 && connection.openedTopics.size() < 2; i++) {
+                Thread.sleep(20);
+            }
+            connection.deliver(message("2", "a"));
+
+            assertThat(connection.openedTopics).containsExactly("a", "a");
+            assertThat(connection.since).containsExactly(null, "1");
+            assertThat(received).extracting(NtfyMessageDto::id).containsExactly("1", "2");
+            assertThat(subscription.isOpen()).isTrue();
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a topic joining a shared stream since an id WHEN subscribing THEN its backlog is polled and delivered before live messages")
+    void joiningTopicIsBackfilled() {
+        var connection = new RecordingConnection();
+        var hub = new SubscriptionHub(connection);
+        var b = new ArrayList<NtfyMessageDto>();
+        connection.backlog = List.of(message("5", "b"), message("6", "b"));
+        hub.receive("a", m -> { });
+
+        hub.receive("b", "4", b::add);
+        connection.deliver(message("6", "b"));
+        connection.deliver(message("7", "b"));
+
+        assertThat(connection.since).containsExactly(null, null);
+        assertThat(b).extracting(NtfyMessageDto::id).containsExactly("5", "6", "7");
+    }
+}
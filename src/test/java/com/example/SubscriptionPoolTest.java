@@ -0,0 +1,62 @@
+package com.example;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionPoolTest {
+
+    /** Channel that records whether it was closed. */
+    private static final class FakeChannel implements Closeable {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    @DisplayName("GIVEN a full pool WHEN adding a topic THEN the least recently used channel is closed and evicted")
+    void leastRecentlyUsedChannelIsEvicted() {
+        var pool = new SubscriptionPool<FakeChannel>(2);
+        var a = new FakeChannel();
+        var b = new FakeChannel();
+        var c = new FakeChannel();
+        pool.put("a", a);
+        pool.put("b", b);
+        pool.get("a");
+
+        assertThat(pool.put("c", c)).containsExactly(b);
+
+        assertThat(b.closed).isTrue();
+        assertThat(a.closed).isFalse();
+        assertThat(pool.topics()).containsExactly("a", "c");
+        assertThat(pool.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("GIVEN pooled channels WHEN shrinking the pool or clearing it THEN channels are closed oldest first")
+    void shrinkingAndClearingCloseChannels() {
+        var pool = new SubscriptionPool<FakeChannel>(3);
+        var a = new FakeChannel();
+        var b = new FakeChannel();
+        var c = new FakeChannel();
+        pool.put("a", a);
+        pool.put("b", b);
+        pool.put("c", c);
+
+        assertThat(pool.setMaxSize(1)).containsExactly(a, b);
+        assertThat(pool.get("c")).isSameAs(c);
+        assertThat(pool.get("a")).isNull();
+        assertThat(pool.stats().hitRate()).isEqualTo(0.5);
+
+        pool.clear();
+
+        assertThat(c.closed).isTrue();
+        assertThat(pool.size()).isZero();
+    }
+}